@@ -8,10 +8,19 @@ import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 @Service
 public class ImageSearchTool {
@@ -22,6 +31,16 @@ public class ImageSearchTool {
     // Pexels 常规搜索接口（请以文档为准）
     private static final String API_URL = "https://api.pexels.com/v1/search";
 
+    /**
+     * 共享的 HTTP 客户端：复用连接池与 keep-alive，可用时协商 HTTP/2，避免每次搜索重新握手
+     */
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(30);
+
     @Tool(description = "search image from web")
     public String searchImage(@ToolParam(description = "Search query keyword") String query) {
         try {
@@ -47,11 +66,7 @@ public class ImageSearchTool {
         params.put("query", query);
 
         // 发送 GET 请求
-        String response = HttpUtil.createGet(API_URL)
-                .addHeaders(headers)
-                .form(params)
-                .execute()
-                .body();
+        String response = get(HttpUtil.urlWithForm(API_URL, params, StandardCharsets.UTF_8, true), headers);
 
         // 解析响应JSON（假设响应结构包含"photos"数组，每个元素包含"medium"字段）
         return JSONUtil.parseObj(response)
@@ -63,4 +78,33 @@ public class ImageSearchTool {
                 .filter(StrUtil::isNotBlank)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * 通过共享客户端发送 GET 请求，支持 gzip 压缩的响应
+     */
+    private String get(String url, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(READ_TIMEOUT)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        headers.forEach(builder::header);
+        try {
+            HttpResponse<InputStream> response = HTTP_CLIENT.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            boolean gzip = response.headers().firstValue("Content-Encoding")
+                    .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                    .orElse(false);
+            try (InputStream body = gzip ? new GZIPInputStream(response.body()) : response.body()) {
+                String text = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                if (response.statusCode() >= 400) {
+                    throw new IllegalStateException("HTTP " + response.statusCode() + ": " + text);
+                }
+                return text;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("请求失败: " + url, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("请求被中断: " + url, e);
+        }
+    }
 }
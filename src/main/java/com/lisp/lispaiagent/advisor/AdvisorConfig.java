@@ -0,0 +1,81 @@
+package com.lisp.lispaiagent.advisor;
+
+import com.lisp.lispaiagent.chatmemory.FileBasedChatMemory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * 应用内共享的 Advisor 配置：日志（共享后台日志线程）、链路追踪、token 预算和会话记忆
+ */
+@Configuration
+class AdvisorConfig {
+
+    @Value("${lisp.ai.logging.sample-rate:0.1}")
+    private double sampleRate;
+
+    @Value("${lisp.ai.logging.max-text-length:200}")
+    private int maxTextLength;
+
+    @Value("${lisp.ai.logging.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @Value("${lisp.ai.token-budget.max-prompt-tokens:6000}")
+    private int maxPromptTokens;
+
+    @Value("${lisp.ai.memory.top-k:4}")
+    private int memoryTopK;
+
+    @Value("${lisp.ai.memory.recent-turns:3}")
+    private int memoryRecentTurns;
+
+    @Value("${lisp.ai.memory.min-similarity:0.5}")
+    private double memoryMinSimilarity;
+
+    @Value("${lisp.ai.memory.max-conversations:1000}")
+    private int memoryMaxConversations;
+
+    /**
+     * 脱敏正则按 YAML 列表逐项绑定，不按逗号拆分，正则中可以使用 {m,n} 这类量词
+     */
+    @Bean
+    public MyLoggerAdvisor myLoggerAdvisor(Environment environment) {
+        List<String> redactPatterns = Binder.get(environment)
+                .bind("lisp.ai.logging.redact-patterns", Bindable.listOf(String.class))
+                .orElse(List.of());
+        return new MyLoggerAdvisor(sampleRate, maxTextLength, redactPatterns, queueCapacity);
+    }
+
+    /**
+     * 使用 Actuator 自动配置的观测与指标注册表
+     */
+    @Bean
+    public AdvisorTracing advisorTracing(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        return new AdvisorTracing(observationRegistry, meterRegistry);
+    }
+
+    @Bean
+    public TokenBudgetAdvisor tokenBudgetAdvisor() {
+        return new TokenBudgetAdvisor(maxPromptTokens);
+    }
+
+    /**
+     * LoveApp 的会话记忆：基于文件持久化，按相关性召回历史轮次
+     */
+    @Bean
+    public RelevantChatMemoryAdvisor loveAppChatMemoryAdvisor(
+            @Qualifier("cachingEmbeddingModel") EmbeddingModel cachingEmbeddingModel) {
+        String fileDir = System.getProperty("user.dir") + "/tmp/chat-memory";
+        return new RelevantChatMemoryAdvisor(new FileBasedChatMemory(fileDir), cachingEmbeddingModel,
+                memoryTopK, memoryRecentTurns, memoryMinSimilarity, memoryMaxConversations);
+    }
+}
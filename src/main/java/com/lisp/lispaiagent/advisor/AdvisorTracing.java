@@ -0,0 +1,95 @@
+package com.lisp.lispaiagent.advisor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 为 ChatClient 的 Advisor 链添加追踪。
+ * 用 {@link #trace(Advisor)} 包装链上的每个 Advisor，并在链末尾加入 {@link #modelStage()}，
+ * 单独统计模型调用本身的耗时和 token 用量。指标通过 Actuator 的 /actuator/metrics 查看。
+ */
+public class AdvisorTracing {
+
+    /**
+     * 模型阶段在名称中使用的标识
+     */
+    public static final String MODEL_STAGE = "ChatModel";
+
+    private final ObservationRegistry observationRegistry;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TracingAdvisor modelStage;
+
+    public AdvisorTracing(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        this.modelStage = new TracingAdvisor(new PassThroughAdvisor(), observationRegistry, meterRegistry, true);
+    }
+
+    /**
+     * 链路观测所用的注册表，可传给 ChatClient.builder 作为 Advisor span 的父 span
+     */
+    public ObservationRegistry getObservationRegistry() {
+        return observationRegistry;
+    }
+
+    /**
+     * 包装单个 Advisor，保持其名称和顺序
+     */
+    public Advisor trace(Advisor advisor) {
+        if (advisor instanceof TracingAdvisor) {
+            return advisor;
+        }
+        return new TracingAdvisor(advisor, observationRegistry, meterRegistry, false);
+    }
+
+    /**
+     * 批量包装 Advisor
+     */
+    public List<Advisor> trace(Advisor... advisors) {
+        return Arrays.stream(advisors).map(this::trace).toList();
+    }
+
+    /**
+     * 模型阶段 Advisor：位于所有自定义 Advisor 之后，其耗时即模型调用（含对冲请求）的耗时
+     */
+    public Advisor modelStage() {
+        return modelStage;
+    }
+
+    /**
+     * 不做任何处理的 Advisor，仅用于在模型调用前后打点
+     */
+    private static class PassThroughAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+        @Override
+        public String getName() {
+            return MODEL_STAGE;
+        }
+
+        /**
+         * 在对冲 Advisor（LOWEST_PRECEDENCE - 1）之前执行，对冲请求计入模型耗时
+         */
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE - 2;
+        }
+
+        @Override
+        public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+            return chain.nextAroundCall(advisedRequest);
+        }
+
+        @Override
+        public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+            return chain.nextAroundStream(advisedRequest);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.lisp.lispaiagent.advisor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 异步日志写入器。
+ * 请求线程只把事件放入有界环形队列，由后台守护线程负责格式化和输出；
+ * 队列满时丢弃最旧的事件，保证请求线程永远不会因为日志而阻塞。
+ * 关闭时停止后台线程，并在调用线程上输出队列中剩余的事件。
+ *
+ * @param <E> 事件类型
+ */
+@Slf4j
+class AsyncLogWriter<E> implements AutoCloseable {
+
+    private final BlockingQueue<E> queue;
+
+    private final Consumer<E> sink;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread worker;
+
+    AsyncLogWriter(String name, int capacity, Consumer<E> sink) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.sink = sink;
+        this.worker = new Thread(this::drain, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 提交一个事件，队列已满时丢弃最旧的事件
+     */
+    void submit(E event) {
+        while (!queue.offer(event)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 因队列已满而被丢弃的事件数
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                sink.accept(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("日志事件输出失败", e);
+            }
+        }
+    }
+
+    /**
+     * 停止后台线程；线程在等待时间内退出后，剩余事件由调用线程输出
+     */
+    @Override
+    public void close() {
+        worker.interrupt();
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (worker.isAlive()) {
+            return;
+        }
+        E event;
+        while ((event = queue.poll()) != null) {
+            try {
+                sink.accept(event);
+            } catch (RuntimeException e) {
+                log.warn("日志事件输出失败", e);
+            }
+        }
+    }
+}
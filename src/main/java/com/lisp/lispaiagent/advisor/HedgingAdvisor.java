@@ -0,0 +1,232 @@
+package com.lisp.lispaiagent.advisor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.core.Ordered;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 对冲请求 Advisor，用于降低模型调用的尾延迟。
+ * 主请求在动态阈值（最近调用延迟的 p95）内没有返回时，再向同一模型或备用模型发起一次请求，
+ * 先成功返回的结果胜出，另一个请求被取消。对冲请求数量受预算限制，不超过总请求数的固定比例。
+ *
+ * 该 Advisor 紧挨着模型调用执行，只对冲模型调用本身，会话记忆等前置 Advisor 只执行一次。
+ * 延迟窗口只记录主请求的耗时；对冲胜出时主请求被取消，记入取消时已等待的时长（真实耗时不低于该值），
+ * 避免只记录胜出者的耗时使分位数越来越低、对冲越来越频繁。
+ */
+@Slf4j
+public class HedgingAdvisor implements CallAroundAdvisor, AutoCloseable {
+
+    private final boolean enabled;
+
+    /**
+     * 对冲请求发往的模型，为 null 时使用主请求的同一模型
+     */
+    private final ChatModel hedgeChatModel;
+
+    private final LatencyWindow latencyWindow;
+
+    private final HedgeBudget budget;
+
+    private final double percentile;
+
+    private final long minDelayMillis;
+
+    private final long initialDelayMillis;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public HedgingAdvisor(boolean enabled, ChatModel hedgeChatModel, double percentile, long minDelayMillis,
+                          long initialDelayMillis, double budgetRatio, int windowSize) {
+        this.enabled = enabled;
+        this.hedgeChatModel = hedgeChatModel;
+        this.percentile = percentile;
+        this.minDelayMillis = minDelayMillis;
+        this.initialDelayMillis = initialDelayMillis;
+        this.latencyWindow = new LatencyWindow(windowSize);
+        this.budget = new HedgeBudget(budgetRatio, 10);
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    /**
+     * 在其他 Advisor 之后、实际模型调用之前执行
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        if (!enabled) {
+            return chain.nextAroundCall(advisedRequest);
+        }
+        budget.deposit();
+        long start = System.currentTimeMillis();
+        CompletableFuture<AdvisedResponse> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger();
+        AtomicBoolean primaryRecorded = new AtomicBoolean();
+        Future<?> primary = submit(() -> {
+            AdvisedResponse response = chain.nextAroundCall(advisedRequest);
+            if (primaryRecorded.compareAndSet(false, true)) {
+                latencyWindow.record(System.currentTimeMillis() - start);
+            }
+            return response;
+        }, winner, pending);
+        Future<?> hedge = null;
+        try {
+            long delay = hedgeDelayMillis();
+            try {
+                return winner.get(delay, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (!budget.tryWithdraw()) {
+                    log.debug("对冲预算不足，继续等待主请求");
+                    return winner.get();
+                }
+            }
+            log.info("模型调用超过 {}ms 未返回，发起对冲请求", delay);
+            ChatModel chatModel = hedgeChatModel != null ? hedgeChatModel : advisedRequest.chatModel();
+            hedge = submit(() -> new AdvisedResponse(chatModel.call(advisedRequest.toPrompt()),
+                    Collections.unmodifiableMap(advisedRequest.adviseContext())), winner, pending);
+            return winner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("对冲请求被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // 主请求仍未返回时记入截断样本：其真实耗时至少为当前已等待的时长
+            if (!primary.isDone() && primaryRecorded.compareAndSet(false, true)) {
+                latencyWindow.record(System.currentTimeMillis() - start);
+            }
+            // 已完成的任务取消无副作用，仍在进行的请求被中断
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 当前的对冲等待时间：样本不足时使用初始值，否则取延迟分位数，且不低于下限
+     */
+    long hedgeDelayMillis() {
+        long observed = latencyWindow.percentile(percentile);
+        return observed < 0 ? initialDelayMillis : Math.max(minDelayMillis, observed);
+    }
+
+    /**
+     * 停止执行请求的虚拟线程，仍在进行的请求被中断
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交一个请求，成功时尝试成为胜出结果；已提交的请求全部失败时以最后一个异常结束
+     */
+    private Future<?> submit(Supplier<AdvisedResponse> call, CompletableFuture<AdvisedResponse> winner,
+                             AtomicInteger pending) {
+        pending.incrementAndGet();
+        return executor.submit(() -> {
+            try {
+                winner.complete(call.get());
+            } catch (RuntimeException e) {
+                if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(e);
+                } else {
+                    log.warn("对冲中的一个请求失败: {}", e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 固定容量的延迟环形缓冲区，用于计算最近请求的延迟分位数
+     */
+    static class LatencyWindow {
+
+        private final long[] samples;
+
+        private int next;
+
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long latencyMillis) {
+            samples[next] = latencyMillis;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * 计算分位数，样本少于 20 个时返回 -1
+         */
+        synchronized long percentile(double percentile) {
+            if (size < 20) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))];
+        }
+    }
+
+    /**
+     * 对冲预算（令牌桶）：每个请求存入 ratio 个令牌，每次对冲消耗一个，
+     * 使对冲带来的额外负载长期不超过请求量的 ratio 倍
+     */
+    static class HedgeBudget {
+
+        private final double ratio;
+
+        private final double maxTokens;
+
+        private double tokens;
+
+        HedgeBudget(double ratio, double maxTokens) {
+            this.ratio = ratio;
+            this.maxTokens = maxTokens;
+        }
+
+        synchronized void deposit() {
+            tokens = Math.min(maxTokens, tokens + ratio);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
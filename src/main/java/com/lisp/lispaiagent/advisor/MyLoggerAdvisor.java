@@ -1,20 +1,79 @@
 package com.lisp.lispaiagent.advisor;
 
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.MessageAggregator;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import reactor.core.publisher.Flux;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
+
 /**
  * 自定义日志 Advisor
- * 用于在 AI 请求和响应过程中打印 info 级别日志，仅输出单次用户提示词和 AI 回复的文本。
+ * 每次调用生成一条结构化日志事件（耗时、token 用量、模型、会话 ID、截断后的提示词和回复），
+ * 事件经有界环形队列交给后台线程脱敏、截断并以 JSON 输出，请求线程上只做必要的字段收集。
+ * 按采样率抽取部分请求输出完整的提示词和回复，其余请求只输出截断后的文本。
+ * 队列容量不大于 0 时不启动后台线程，直接在请求线程上输出。
  * 实现了 CallAroundAdvisor 和 StreamAroundAdvisor 接口，分别处理普通调用和流式调用的日志记录。
  */
 @Slf4j
-public class MyLoggerAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+public class MyLoggerAdvisor implements CallAroundAdvisor, StreamAroundAdvisor, AutoCloseable {
+
+    private static final String REDACTED = "***";
+
+    /**
+     * 输出完整文本的请求比例，取值 0 ~ 1
+     */
+    private final double sampleRate;
+
+    /**
+     * 未被采样的请求中，提示词和回复保留的最大字符数
+     */
+    private final int maxTextLength;
+
+    /**
+     * 需要脱敏的文本模式，匹配部分替换为 ***
+     */
+    private final List<Pattern> redactPatterns;
+
+    /**
+     * 后台日志写入器，同步输出时为 null
+     */
+    private final AsyncLogWriter<LogEvent> writer;
+
+    /**
+     * 使用默认配置：不采样完整文本，文本截断为 200 个字符，不脱敏，在请求线程上同步输出
+     */
+    public MyLoggerAdvisor() {
+        this(0, 200, List.of(), 0);
+    }
+
+    /**
+     * @param sampleRate 输出完整文本的请求比例
+     * @param maxTextLength 未采样请求的文本截断长度
+     * @param redactPatterns 需要脱敏的正则表达式
+     * @param queueCapacity 日志队列容量，不大于 0 时同步输出
+     */
+    public MyLoggerAdvisor(double sampleRate, int maxTextLength, List<String> redactPatterns, int queueCapacity) {
+        this.sampleRate = sampleRate;
+        this.maxTextLength = maxTextLength;
+        this.redactPatterns = redactPatterns.stream()
+                .filter(StrUtil::isNotBlank)
+                .map(Pattern::compile)
+                .toList();
+        this.writer = queueCapacity > 0 ? new AsyncLogWriter<>("ai-log-writer", queueCapacity, this::write) : null;
+    }
 
-    PromptTemplate promptTemplate;
     /**
      * 获取当前 Advisor 的名称，使用类的简单名称作为标识。
      *
@@ -36,55 +95,154 @@ public class MyLoggerAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
     }
 
     /**
-     * 在请求处理前执行的方法，用于记录用户的提示词日志。
-     *
-     * @param request 包含用户提示词的请求对象
-     * @return 原始请求对象
-     */
-    private AdvisedRequest before(AdvisedRequest request) {
-        log.info("AI Request: {}", request.userText());
-        return request;
-    }
-
-    /**
-     * 在请求处理后执行的方法，用于记录 AI 回复的文本日志。
-     *
-     * @param advisedResponse 包含 AI 响应信息的对象
-     */
-    private void observeAfter(AdvisedResponse advisedResponse) {
-        log.info("AI Response: {}", advisedResponse.response().getResult().getOutput().getText());
-    }
-
-    /**
-     * 拦截普通调用请求，在请求处理前后记录日志。
+     * 拦截普通调用请求，记录耗时和响应信息。
      *
      * @param advisedRequest 包含用户提示词的请求对象
      * @param chain 用于调用下一个 Advisor 的链对象
      * @return 包含 AI 响应信息的对象
      */
     public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
-        // 在请求处理前记录用户提示词日志
-        advisedRequest = this.before(advisedRequest);
-        // 调用链中的下一个 Advisor 处理请求
-        AdvisedResponse advisedResponse = chain.nextAroundCall(advisedRequest);
-        // 在请求处理后记录 AI 回复日志
-        this.observeAfter(advisedResponse);
-        return advisedResponse;
+        long start = System.nanoTime();
+        try {
+            AdvisedResponse advisedResponse = chain.nextAroundCall(advisedRequest);
+            this.observeAfter("call", advisedRequest, advisedResponse, start);
+            return advisedResponse;
+        } catch (RuntimeException e) {
+            this.observeError("call", advisedRequest, e, start);
+            throw e;
+        }
     }
 
     /**
-     * 拦截流式调用请求，在请求处理前后记录日志。
+     * 拦截流式调用请求，在响应流聚合完成后记录日志。
      *
      * @param advisedRequest 包含用户提示词的请求对象
      * @param chain 用于调用下一个 Advisor 的链对象
      * @return 包含 AI 响应信息的响应流
      */
     public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
-        // 在请求处理前记录用户提示词日志
-        advisedRequest = this.before(advisedRequest);
-        // 调用链中的下一个 Advisor 处理流式请求
-        Flux<AdvisedResponse> advisedResponses = chain.nextAroundStream(advisedRequest);
-        // 使用 MessageAggregator 聚合响应流，并在聚合过程中记录 AI 回复日志
-        return (new MessageAggregator()).aggregateAdvisedResponse(advisedResponses, this::observeAfter);
+        long start = System.nanoTime();
+        Flux<AdvisedResponse> advisedResponses = chain.nextAroundStream(advisedRequest)
+                .doOnError(e -> this.observeError("stream", advisedRequest, e, start));
+        // 使用 MessageAggregator 聚合响应流，聚合完成后记录日志
+        return (new MessageAggregator()).aggregateAdvisedResponse(advisedResponses,
+                advisedResponse -> this.observeAfter("stream", advisedRequest, advisedResponse, start));
+    }
+
+    /**
+     * 因队列已满而丢弃的日志事件数
+     */
+    public long getDroppedEvents() {
+        return writer != null ? writer.getDropped() : 0;
+    }
+
+    /**
+     * 停止后台日志线程并输出队列中剩余的事件
+     */
+    @Override
+    public void close() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private void submit(LogEvent event) {
+        if (writer != null) {
+            writer.submit(event);
+        } else {
+            write(event);
+        }
+    }
+
+    /**
+     * 收集日志字段并提交到队列，文本的脱敏、截断和序列化都在后台线程完成
+     */
+    private void observeAfter(String type, AdvisedRequest request, AdvisedResponse advisedResponse, long start) {
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
+        ChatResponse response = advisedResponse.response();
+        String model = request.chatOptions() != null ? request.chatOptions().getModel() : null;
+        Usage usage = null;
+        String text = null;
+        if (response != null) {
+            ChatResponseMetadata metadata = response.getMetadata();
+            if (metadata != null) {
+                usage = metadata.getUsage();
+                if (StrUtil.isNotBlank(metadata.getModel())) {
+                    model = metadata.getModel();
+                }
+            }
+            if (response.getResult() != null && response.getResult().getOutput() != null) {
+                text = response.getResult().getOutput().getText();
+            }
+        }
+        submit(new LogEvent(type, conversationId(request), model, latencyMillis,
+                usage != null ? usage.getPromptTokens() : null,
+                usage != null ? usage.getCompletionTokens() : null,
+                usage != null ? usage.getTotalTokens() : null,
+                sampled(), request.userText(), text, null));
+    }
+
+    private void observeError(String type, AdvisedRequest request, Throwable error, long start) {
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
+        String model = request.chatOptions() != null ? request.chatOptions().getModel() : null;
+        submit(new LogEvent(type, conversationId(request), model, latencyMillis, null, null, null,
+                sampled(), request.userText(), null, String.valueOf(error)));
+    }
+
+    private boolean sampled() {
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private static String conversationId(AdvisedRequest request) {
+        Object conversationId = request.adviseContext().get(CHAT_MEMORY_CONVERSATION_ID_KEY);
+        return conversationId != null ? conversationId.toString() : null;
+    }
+
+    /**
+     * 后台线程中输出一条事件
+     */
+    private void write(LogEvent event) {
+        if (log.isInfoEnabled()) {
+            log.info("AI {}: {}", event.type(), format(event));
+        }
+    }
+
+    String format(LogEvent event) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("conversationId", event.conversationId());
+        fields.put("model", event.model());
+        fields.put("latencyMillis", event.latencyMillis());
+        fields.put("promptTokens", event.promptTokens());
+        fields.put("completionTokens", event.completionTokens());
+        fields.put("totalTokens", event.totalTokens());
+        fields.put("sampled", event.sampled());
+        fields.put("request", prepare(event.request(), event.sampled()));
+        fields.put("response", prepare(event.response(), event.sampled()));
+        fields.put("error", event.error());
+        return JSONUtil.toJsonStr(fields);
+    }
+
+    /**
+     * 脱敏，未被采样的请求再截断
+     */
+    private String prepare(String text, boolean sampled) {
+        if (text == null) {
+            return null;
+        }
+        for (Pattern pattern : redactPatterns) {
+            text = pattern.matcher(text).replaceAll(REDACTED);
+        }
+        if (!sampled && text.length() > maxTextLength) {
+            text = text.substring(0, maxTextLength) + "...(" + text.length() + " chars)";
+        }
+        return text;
+    }
+
+    /**
+     * 一次模型调用的日志事件
+     */
+    record LogEvent(String type, String conversationId, String model, long latencyMillis,
+                    Integer promptTokens, Integer completionTokens, Integer totalTokens,
+                    boolean sampled, String request, String response, String error) {
     }
 }
@@ -15,6 +15,16 @@ import java.util.Map;
  */
 public class ReReadingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
 
+    /**
+     * 保存原始用户文本的参数名
+     */
+    public static final String INPUT_QUERY_PARAM = "re2_input_query";
+
+    /**
+     * 重复提问的提示行
+     */
+    public static final String RE_READ_LINE = "Read the question again: {" + INPUT_QUERY_PARAM + "}";
+
     /**
      * 在请求处理前对请求进行修改，添加重新阅读问题的提示。
      * 将原始用户文本存储到用户参数中，并修改用户文本以包含重新阅读问题的提示。
@@ -26,7 +36,7 @@ public class ReReadingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor
         // 复制原始的用户参数，避免修改原始对象
         Map<String, Object> advisedUserParams = new HashMap<>(advisedRequest.userParams());
         // 将原始用户文本存储到用户参数中，键为 "re2_input_query"
-        advisedUserParams.put("re2_input_query", advisedRequest.userText());
+        advisedUserParams.put(INPUT_QUERY_PARAM, advisedRequest.userText());
 
         // 基于原始请求对象创建新的请求对象，修改用户文本以包含重新阅读问题的提示
         return AdvisedRequest.from(advisedRequest)
@@ -0,0 +1,211 @@
+package com.lisp.lispaiagent.advisor;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.ai.embedding.EmbeddingModel;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 基于相关性的会话记忆 Advisor，替代固定取最近 N 条消息的 MessageChatMemoryAdvisor。
+ * 会话按轮次（一条用户消息及其后的回复）切分，最近几轮始终带上；
+ * 更早的轮次写入按会话划分的轻量向量索引，每次只取与当前问题最相关的 top-k 轮，按时间顺序拼回提示词。
+ * 向量索引只在轮次移出最近窗口时增量计算，会话较短时不调用嵌入模型。
+ */
+@Slf4j
+public class RelevantChatMemoryAdvisor extends AbstractChatMemoryAdvisor<ChatMemory> {
+
+    /**
+     * 单轮文本参与嵌入的最大长度
+     */
+    private static final int MAX_TURN_TEXT_LENGTH = 2000;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final int topK;
+
+    private final int recentTurns;
+
+    private final double minSimilarity;
+
+    /**
+     * 每个会话的向量索引，按最近使用淘汰，淘汰后下次访问时重建
+     */
+    private final LRUCache<String, ConversationIndex> indexes;
+
+    /**
+     * @param chatMemory 会话记忆存储
+     * @param embeddingModel 嵌入模型
+     * @param topK 最多召回的历史轮次数
+     * @param recentTurns 始终保留的最近轮次数
+     * @param minSimilarity 召回的最低余弦相似度
+     * @param maxConversations 内存中保留索引的会话数上限
+     */
+    public RelevantChatMemoryAdvisor(ChatMemory chatMemory, EmbeddingModel embeddingModel, int topK, int recentTurns,
+                                     double minSimilarity, int maxConversations) {
+        super(chatMemory, DEFAULT_CHAT_MEMORY_CONVERSATION_ID, DEFAULT_CHAT_MEMORY_RESPONSE_SIZE, true,
+                Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER);
+        this.embeddingModel = embeddingModel;
+        this.topK = topK;
+        this.recentTurns = recentTurns;
+        this.minSimilarity = minSimilarity;
+        this.indexes = CacheUtil.newLRUCache(maxConversations);
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        advisedRequest = this.before(advisedRequest);
+        AdvisedResponse advisedResponse = chain.nextAroundCall(advisedRequest);
+        this.observeAfter(advisedResponse);
+        return advisedResponse;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        Flux<AdvisedResponse> advisedResponses = this.doNextWithProtectFromBlockingBefore(advisedRequest, chain,
+                this::before);
+        return new MessageAggregator().aggregateAdvisedResponse(advisedResponses, this::observeAfter);
+    }
+
+    private AdvisedRequest before(AdvisedRequest request) {
+        String conversationId = this.doGetConversationId(request.adviseContext());
+        List<Message> memoryMessages = this.recall(conversationId, request.userText());
+
+        List<Message> advisedMessages = new ArrayList<>(request.messages());
+        advisedMessages.addAll(memoryMessages);
+        AdvisedRequest advisedRequest = AdvisedRequest.from(request).messages(advisedMessages).build();
+
+        this.getChatMemoryStore().add(conversationId, new UserMessage(request.userText(), request.media()));
+        return advisedRequest;
+    }
+
+    private void observeAfter(AdvisedResponse advisedResponse) {
+        List<Message> assistantMessages = advisedResponse.response()
+                .getResults()
+                .stream()
+                .map(generation -> (Message) generation.getOutput())
+                .toList();
+        this.getChatMemoryStore().add(this.doGetConversationId(advisedResponse.adviseContext()), assistantMessages);
+    }
+
+    /**
+     * 取出与当前问题相关的历史轮次和最近几轮，按时间顺序返回
+     */
+    List<Message> recall(String conversationId, String query) {
+        List<Message> history = this.getChatMemoryStore().get(conversationId, Integer.MAX_VALUE);
+        List<List<Message>> turns = splitTurns(history);
+        if (turns.size() <= recentTurns) {
+            return history;
+        }
+        List<List<Message>> olderTurns = turns.subList(0, turns.size() - recentTurns);
+        List<Message> recalled = new ArrayList<>();
+        if (topK > 0 && query != null && !query.isBlank()) {
+            List<float[]> vectors = indexFor(conversationId).sync(olderTurns);
+            float[] queryVector = embeddingModel.embed(query);
+            List<Integer> selected = IntStream.range(0, vectors.size())
+                    .boxed()
+                    .map(i -> new ScoredTurn(i, cosine(queryVector, vectors.get(i))))
+                    .filter(scored -> scored.score() >= minSimilarity)
+                    .sorted(Comparator.comparingDouble(ScoredTurn::score).reversed())
+                    .limit(topK)
+                    .map(ScoredTurn::index)
+                    .sorted()
+                    .toList();
+            selected.forEach(i -> recalled.addAll(olderTurns.get(i)));
+            log.debug("会话 {} 共 {} 轮，召回历史轮次 {}", conversationId, turns.size(), selected);
+        }
+        turns.subList(turns.size() - recentTurns, turns.size()).forEach(recalled::addAll);
+        return recalled;
+    }
+
+    private ConversationIndex indexFor(String conversationId) {
+        synchronized (indexes) {
+            ConversationIndex index = indexes.get(conversationId);
+            if (index == null) {
+                index = new ConversationIndex();
+                indexes.put(conversationId, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * 按用户消息切分轮次，第一条用户消息之前的消息单独成一轮
+     */
+    static List<List<Message>> splitTurns(List<Message> messages) {
+        List<List<Message>> turns = new ArrayList<>();
+        List<Message> current = null;
+        for (Message message : messages) {
+            if (current == null || message instanceof UserMessage) {
+                current = new ArrayList<>();
+                turns.add(current);
+            }
+            current.add(message);
+        }
+        return turns;
+    }
+
+    private static String turnText(List<Message> turn) {
+        String text = turn.stream()
+                .map(Message::getText)
+                .filter(t -> t != null && !t.isBlank())
+                .collect(Collectors.joining("\n"));
+        if (text.isEmpty()) {
+            // 嵌入服务不接受空文本
+            return "-";
+        }
+        return text.length() > MAX_TURN_TEXT_LENGTH ? text.substring(0, MAX_TURN_TEXT_LENGTH) : text;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private record ScoredTurn(int index, double score) {
+    }
+
+    /**
+     * 单个会话的轮次向量，轮次只追加，移出最近窗口的轮次内容不再变化
+     */
+    private class ConversationIndex {
+
+        private final List<float[]> vectors = new ArrayList<>();
+
+        /**
+         * 为尚未索引的轮次计算向量，返回与 turns 一一对应的向量列表
+         */
+        synchronized List<float[]> sync(List<List<Message>> turns) {
+            if (turns.size() < vectors.size()) {
+                // 会话被清空或截断，重建索引
+                vectors.clear();
+            }
+            if (turns.size() > vectors.size()) {
+                List<String> texts = turns.subList(vectors.size(), turns.size()).stream()
+                        .map(RelevantChatMemoryAdvisor::turnText)
+                        .toList();
+                vectors.addAll(embeddingModel.embed(texts));
+            }
+            return List.copyOf(vectors);
+        }
+    }
+}
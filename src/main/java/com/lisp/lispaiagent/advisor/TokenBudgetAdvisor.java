@@ -0,0 +1,230 @@
+package com.lisp.lispaiagent.advisor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
+import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 提示词 token 预算 Advisor。
+ * 在其他 Advisor 组装完提示词之后、模型调用之前执行，估算整个提示词的 token 数，
+ * 超出预算时按价值从低到高依次裁剪：最早的会话记忆、得分最低的检索片段、Re2 的重复提问，
+ * 直到满足预算。裁剪结果以 {@link Report} 写入上下文（键为 {@link #REPORT_KEY}），便于日志和排查。
+ */
+@Slf4j
+public class TokenBudgetAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    /**
+     * 裁剪报告在上下文中的键
+     */
+    public static final String REPORT_KEY = "token_budget_report";
+
+    /**
+     * 每条消息的固定开销（角色标记等）
+     */
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private final int maxPromptTokens;
+
+    private final TokenCountEstimator estimator;
+
+    public TokenBudgetAdvisor(int maxPromptTokens) {
+        this(maxPromptTokens, new JTokkitTokenCountEstimator());
+    }
+
+    public TokenBudgetAdvisor(int maxPromptTokens, TokenCountEstimator estimator) {
+        this.maxPromptTokens = maxPromptTokens;
+        this.estimator = estimator;
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    /**
+     * 在记忆、检索等 Advisor 之后，模型调用相关的 Advisor（对冲等）之前执行
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 100;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(this.fit(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return chain.nextAroundStream(this.fit(advisedRequest));
+    }
+
+    /**
+     * 将请求裁剪到预算以内
+     */
+    AdvisedRequest fit(AdvisedRequest request) {
+        int before = count(request);
+        int tokens = before;
+        if (tokens <= maxPromptTokens) {
+            return request;
+        }
+        // 1. 从最早的会话记忆开始丢弃
+        LinkedList<Message> messages = new LinkedList<>(request.messages());
+        int droppedMessages = 0;
+        while (tokens > maxPromptTokens && !messages.isEmpty()) {
+            tokens -= count(messages.removeFirst());
+            droppedMessages++;
+        }
+
+        // 2. 丢弃得分最低的检索片段，同时从用户文本（及其参数）中删除片段内容
+        String userText = request.userText();
+        Map<String, Object> userParams = new HashMap<>(request.userParams());
+        List<Document> documents = documents(request);
+        List<Document> keptDocuments = new ArrayList<>(documents);
+        int droppedDocuments = 0;
+        for (Document document : lowestValueFirst(documents)) {
+            if (tokens <= maxPromptTokens) {
+                break;
+            }
+            String text = document.getText();
+            if (text == null || text.isEmpty()) {
+                continue;
+            }
+            boolean removed = false;
+            if (userText != null && userText.contains(text)) {
+                userText = userText.replace(text, "");
+                removed = true;
+            }
+            for (Map.Entry<String, Object> param : userParams.entrySet()) {
+                if (param.getValue() instanceof String value && value.contains(text)) {
+                    param.setValue(value.replace(text, ""));
+                    removed = true;
+                }
+            }
+            if (removed) {
+                keptDocuments.remove(document);
+                droppedDocuments++;
+                tokens = count(request.systemText(), request.systemParams()) + count(userText, userParams)
+                        + messages.stream().mapToInt(this::count).sum();
+            }
+        }
+
+        // 3. 去掉 Re2 的重复提问
+        boolean droppedReRead = false;
+        if (tokens > maxPromptTokens && userText != null && userText.contains(ReReadingAdvisor.RE_READ_LINE)) {
+            userText = userText.replace(ReReadingAdvisor.RE_READ_LINE + "\n", "")
+                    .replace(ReReadingAdvisor.RE_READ_LINE, "");
+            droppedReRead = true;
+            tokens = count(request.systemText(), request.systemParams()) + count(userText, userParams)
+                    + messages.stream().mapToInt(this::count).sum();
+        }
+
+        Report report = new Report(maxPromptTokens, before, tokens, droppedMessages, droppedDocuments, droppedReRead);
+        if (tokens > maxPromptTokens) {
+            log.warn("提示词裁剪后仍超出预算: {}", report);
+        } else {
+            log.info("提示词超出预算，已裁剪: {}", report);
+        }
+        int documentCount = documents.size();
+        return AdvisedRequest.from(request)
+                .messages(messages)
+                .userText(userText)
+                .userParams(userParams)
+                .build()
+                .updateContext(context -> {
+                    Map<String, Object> updated = new HashMap<>(context);
+                    updated.put(REPORT_KEY, report);
+                    if (documentCount > 0) {
+                        updated.put(RetrievalAugmentationAdvisor.DOCUMENT_CONTEXT, keptDocuments);
+                    }
+                    return updated;
+                });
+    }
+
+    /**
+     * 估算整个提示词的 token 数
+     */
+    int count(AdvisedRequest request) {
+        return count(request.systemText(), request.systemParams())
+                + count(request.userText(), request.userParams())
+                + request.messages().stream().mapToInt(this::count).sum();
+    }
+
+    private int count(Message message) {
+        String text = message.getText();
+        return MESSAGE_OVERHEAD + (text == null ? 0 : estimator.estimate(text));
+    }
+
+    /**
+     * 估算模板文本渲染后的 token 数：模板本身加上每个占位符替换进来的参数值
+     */
+    private int count(String template, Map<String, Object> params) {
+        if (template == null || template.isEmpty()) {
+            return 0;
+        }
+        int tokens = MESSAGE_OVERHEAD + estimator.estimate(template);
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            int occurrences = occurrences(template, "{" + param.getKey() + "}");
+            if (occurrences > 0 && param.getValue() != null) {
+                tokens += occurrences * estimator.estimate(String.valueOf(param.getValue()));
+            }
+        }
+        return tokens;
+    }
+
+    private static int occurrences(String text, String token) {
+        int count = 0;
+        for (int index = text.indexOf(token); index >= 0; index = text.indexOf(token, index + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Document> documents(AdvisedRequest request) {
+        Object documents = request.adviseContext().get(RetrievalAugmentationAdvisor.DOCUMENT_CONTEXT);
+        return documents instanceof List<?> list ? (List<Document>) list : List.of();
+    }
+
+    /**
+     * 按得分从低到高排序；没有得分的按检索顺序从后往前
+     */
+    private static List<Document> lowestValueFirst(List<Document> documents) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            indexes.add(i);
+        }
+        indexes.sort(Comparator.<Integer>comparingDouble(i -> {
+            Double score = documents.get(i).getScore();
+            return score == null ? Double.NEGATIVE_INFINITY : score;
+        }).thenComparing(Comparator.<Integer>reverseOrder()));
+        return indexes.stream().map(documents::get).toList();
+    }
+
+    /**
+     * 裁剪报告
+     *
+     * @param budget token 预算
+     * @param tokensBefore 裁剪前的估算 token 数
+     * @param tokensAfter 裁剪后的估算 token 数
+     * @param droppedMessages 丢弃的会话记忆条数
+     * @param droppedDocuments 丢弃的检索片段数
+     * @param droppedReRead 是否去掉了 Re2 的重复提问
+     */
+    public record Report(int budget, int tokensBefore, int tokensAfter, int droppedMessages,
+                         int droppedDocuments, boolean droppedReRead) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.lisp.lispaiagent.advisor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.chat.client.advisor.api.*;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 链路追踪 Advisor，包装链上的任意 Advisor，名称和顺序与被包装者一致。
+ * 每次调用记录一个 Observation（lisp.ai.advisor，含下游在内的总耗时，可作为链路 span），
+ * 普通调用额外记录自身耗时（lisp.ai.advisor.self，总耗时减去下游 Advisor 和模型的耗时），
+ * 用于定位一次请求中真正慢的环节。
+ * 被包装者不支持的调用方式（普通或流式）直接透传给下游。
+ */
+public class TracingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    static final String OBSERVATION_NAME = "lisp.ai.advisor";
+
+    private final Advisor delegate;
+
+    private final ObservationRegistry observationRegistry;
+
+    private final Timer selfTimer;
+
+    /**
+     * token 用量统计，只在模型阶段记录，其余为 null
+     */
+    private final DistributionSummary promptTokens;
+
+    private final DistributionSummary completionTokens;
+
+    TracingAdvisor(Advisor delegate, ObservationRegistry observationRegistry, MeterRegistry meterRegistry,
+                   boolean recordUsage) {
+        this.delegate = delegate;
+        this.observationRegistry = observationRegistry;
+        this.selfTimer = Timer.builder(OBSERVATION_NAME + ".self")
+                .description("Advisor 自身耗时，不含下游")
+                .tag("advisor", delegate.getName())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.promptTokens = recordUsage ? tokenSummary(meterRegistry, "prompt") : null;
+        this.completionTokens = recordUsage ? tokenSummary(meterRegistry, "completion") : null;
+    }
+
+    private static DistributionSummary tokenSummary(MeterRegistry meterRegistry, String type) {
+        return DistributionSummary.builder("lisp.ai.tokens")
+                .description("单次模型调用的 token 用量")
+                .baseUnit("tokens")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public int getOrder() {
+        return delegate.getOrder();
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        if (!(delegate instanceof CallAroundAdvisor callAdvisor)) {
+            return chain.nextAroundCall(advisedRequest);
+        }
+        long[] downstreamNanos = new long[1];
+        // 包装下游链，统计下游耗时以便得到自身耗时
+        CallAroundAdvisorChain timedChain = request -> {
+            long start = System.nanoTime();
+            try {
+                return chain.nextAroundCall(request);
+            } finally {
+                downstreamNanos[0] += System.nanoTime() - start;
+            }
+        };
+        long start = System.nanoTime();
+        try {
+            AdvisedResponse advisedResponse = observation().observe(() -> callAdvisor.aroundCall(advisedRequest, timedChain));
+            recordUsage(advisedResponse);
+            return advisedResponse;
+        } finally {
+            selfTimer.record(Math.max(0, System.nanoTime() - start - downstreamNanos[0]), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 流式调用只记录从订阅到结束的总耗时，token 用量取最后一个带用量的片段
+     */
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        if (!(delegate instanceof StreamAroundAdvisor streamAdvisor)) {
+            return chain.nextAroundStream(advisedRequest);
+        }
+        return Flux.defer(() -> {
+            Observation observation = observation().start();
+            AtomicReference<AdvisedResponse> last = new AtomicReference<>();
+            return streamAdvisor.aroundStream(advisedRequest, chain)
+                    .doOnNext(advisedResponse -> {
+                        if (hasUsage(advisedResponse)) {
+                            last.set(advisedResponse);
+                        }
+                    })
+                    .doOnComplete(() -> recordUsage(last.get()))
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+
+    private Observation observation() {
+        return Observation.createNotStarted(OBSERVATION_NAME, observationRegistry)
+                .contextualName("advisor " + delegate.getName())
+                .lowCardinalityKeyValue("advisor", delegate.getName());
+    }
+
+    private static boolean hasUsage(AdvisedResponse advisedResponse) {
+        ChatResponse response = advisedResponse.response();
+        return response != null && response.getMetadata() != null && response.getMetadata().getUsage() != null;
+    }
+
+    private void recordUsage(AdvisedResponse advisedResponse) {
+        if (promptTokens == null || advisedResponse == null || !hasUsage(advisedResponse)) {
+            return;
+        }
+        Usage usage = advisedResponse.response().getMetadata().getUsage();
+        if (usage.getPromptTokens() != null && usage.getPromptTokens() > 0) {
+            promptTokens.record(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null && usage.getCompletionTokens() > 0) {
+            completionTokens.record(usage.getCompletionTokens());
+        }
+    }
+}
@@ -5,13 +5,15 @@ import com.lisp.lispaiagent.agent.model.ToolCallAgent;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 
 @Component
 public class LispManus extends ToolCallAgent {
   
-    public LispManus(ToolCallback[] allTools, ChatModel dashscopeChatModel) {
+    public LispManus(ToolCallback[] allTools, @Qualifier("dashscopeChatModel") ChatModel dashscopeChatModel,
+                     MyLoggerAdvisor myLoggerAdvisor) {
         super(allTools);  
         this.setName("LispManus");  
         String SYSTEM_PROMPT = """  
@@ -29,7 +31,7 @@ public class LispManus extends ToolCallAgent {
         this.setMaxSteps(20);  
         // 初始化客户端  
         ChatClient chatClient = ChatClient.builder(dashscopeChatModel)
-                .defaultAdvisors(new MyLoggerAdvisor())
+                .defaultAdvisors(myLoggerAdvisor)
                 .build();  
         this.setChatClient(chatClient);  
     }  
@@ -1,28 +1,37 @@
 package com.lisp.lispaiagent.app;
 
 
+import com.lisp.lispaiagent.advisor.AdvisorTracing;
+import com.lisp.lispaiagent.advisor.HedgingAdvisor;
 import com.lisp.lispaiagent.advisor.MyLoggerAdvisor;
 import com.lisp.lispaiagent.advisor.ReReadingAdvisor;
-import com.lisp.lispaiagent.chatmemory.FileBasedChatMemory;
+import com.lisp.lispaiagent.advisor.RelevantChatMemoryAdvisor;
+import com.lisp.lispaiagent.advisor.TokenBudgetAdvisor;
+import com.lisp.lispaiagent.converter.OutputConverters;
+import com.lisp.lispaiagent.converter.StreamingJsonParser;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
-import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
-import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY;
 
 /**
  * LoveApp 类用于提供恋爱咨询相关的聊天服务，借助 Spring AI 框架与用户进行交互。
@@ -37,6 +46,8 @@ public class LoveApp {
      */
     private final ChatClient chatClient;
 
+    private final AdvisorTracing advisorTracing;
+
     /**
      * 系统提示信息，定义了聊天机器人的角色和引导用户的提问内容。
      * 机器人将扮演深耕恋爱心理领域的专家，根据用户不同的情感状态进行针对性提问。
@@ -65,32 +76,95 @@ public class LoveApp {
     ) {
     }
 
+    /**
+     * 流式恋爱报告事件：标题、每条建议在生成完成后立即推送，最后推送完整的报告。
+     */
+    sealed interface LoveReportEvent {
+
+        /**
+         * 报告标题已生成
+         */
+        record Title(String title) implements LoveReportEvent {
+        }
+
+        /**
+         * 第 index 条建议已生成
+         */
+        record Suggestion(int index, String suggestion) implements LoveReportEvent {
+        }
+
+        /**
+         * 报告生成完毕
+         */
+        record Completed(LoveReport report) implements LoveReportEvent {
+        }
+    }
+
+    /**
+     * 生成恋爱报告时使用的系统提示
+     */
+    private static final String REPORT_SYSTEM_PROMPT = SYSTEM_PROMPT + "每次对话后都要生成恋爱结果，标题为{用户名}的恋爱报告，内容为建议列表";
+
     /**
      * 构造函数，初始化 LoveApp 实例。
      *
      * @param dashboardChatModel 用于构建聊天客户端的聊天模型
+     * @param myLoggerAdvisor 共享的日志顾问
+     * @param advisorTracing 顾问链路追踪，记录每个顾问和模型调用的耗时
+     * @param tokenBudgetAdvisor 提示词 token 预算顾问，在模型调用前裁剪超长的提示词
+     * @param loveAppChatMemoryAdvisor 会话记忆顾问，基于文件持久化，按相关性召回历史轮次
      */
 
-    public LoveApp(ChatModel dashboardChatModel) {
-        //初始化基于文件的会话记忆
-        String fileDir = System.getProperty("user.dir") + "/tmp/chat-memory";
-        ChatMemory chatMemory = new FileBasedChatMemory(fileDir);
-        // 初始化基于内存的会话记忆，用于存储聊天过程中的对话信息
-        //ChatMemory chatMemory = new InMemoryChatMemory();
+    public LoveApp(ChatModel dashboardChatModel, MyLoggerAdvisor myLoggerAdvisor, AdvisorTracing advisorTracing,
+                   TokenBudgetAdvisor tokenBudgetAdvisor, RelevantChatMemoryAdvisor loveAppChatMemoryAdvisor) {
+        this.advisorTracing = advisorTracing;
         // 使用传入的聊天模型构建聊天客户端，设置默认的系统提示信息和会话记忆顾问
         chatClient = ChatClient.builder(dashboardChatModel)
                 // 设置默认的系统提示信息，明确聊天机器人的角色和引导提问内容
                 .defaultSystem(SYSTEM_PROMPT)
-                // 设置默认的顾问，使用消息聊天记忆顾问来管理会话记忆
-                .defaultAdvisors(
-                        // 初始化消息聊天记忆顾问，传入之前创建的会话记忆对象
-                        new MessageChatMemoryAdvisor(chatMemory),
-                        new MyLoggerAdvisor()
-                        //new ReReadingAdvisor()
-                )
+                // 设置默认的顾问，使用消息聊天记忆顾问来管理会话记忆，每个顾问都包装追踪
+                .defaultAdvisors(advisorTracing.trace(
+                        // 会话记忆：最近几轮加上与当前问题相关的历史轮次
+                        loveAppChatMemoryAdvisor,
+                        myLoggerAdvisor,
+                        //new ReReadingAdvisor(),
+                        tokenBudgetAdvisor,
+                        // 模型调用阶段打点
+                        advisorTracing.modelStage()
+                ))
                 .build();
     }
 
+    /**
+     * 对冲请求顾问，开启后降低 doChat 的尾延迟
+     */
+    @Resource
+    private HedgingAdvisor hedgingAdvisor;
+
+    /**
+     * 包装过追踪的对冲顾问与云知识库顾问，只在启动时包装一次
+     */
+    private Advisor tracedHedgingAdvisor;
+
+    private Advisor tracedRagCloudAdvisor;
+
+    /**
+     * 按情感状态缓存的、包装过追踪的本地 rag 顾问（情感状态只有单身、恋爱、已婚几种），键为空字符串时表示不过滤
+     */
+    private final Map<String, Advisor> tracedStatusRagAdvisors = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void traceRequestAdvisors() {
+        tracedHedgingAdvisor = advisorTracing.trace(hedgingAdvisor);
+        tracedRagCloudAdvisor = advisorTracing.trace(loveAppRagCloudAdvisor);
+    }
+
+    private Advisor tracedStatusRagAdvisor(String status) {
+        String key = status == null ? "" : status.strip();
+        return tracedStatusRagAdvisors.computeIfAbsent(key,
+                k -> advisorTracing.trace(loveAppStatusRagAdvisorFactory.apply(k.isEmpty() ? null : k)));
+    }
+
     /**
      * 执行聊天请求
      *
@@ -106,15 +180,16 @@ public class LoveApp {
         ChatResponse response = chatClient
                 .prompt()  // 准备聊天提示
                 .user(message)  // 设置用户输入的消息
-                // 配置聊天顾问参数，包括聊天记忆的会话ID和检索的历史对话数量
-                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                // 配置聊天顾问参数：聊天记忆的会话ID，召回的历史由记忆顾问按相关性决定
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId))
+                // 模型调用过慢时发起对冲请求（需在配置中开启）
+                .advisors(tracedHedgingAdvisor)
                 .call()  // 发起聊天请求
                 .chatResponse();  // 获取聊天响应
         // 提取聊天结果中的文本内容
         String content = response.getResult().getOutput().getText();
-        // 记录聊天内容日志
-        log.info("content: {}", content);
+        // 记录聊天内容日志，调用详情已由日志顾问异步输出
+        log.debug("content: {}", content);
         // 返回聊天内容
         return content;
     }
@@ -135,22 +210,71 @@ public class LoveApp {
         // 提交用户消息作为输入
         // 配置顾问参数，指定聊天记忆的对话ID和检索的对话历史数量
         // 执行调用并解析返回的实体为LoveReport类
+        // 使用按类型缓存的转换器，避免每次调用都重新生成 JSON Schema
         LoveReport loveReport = chatClient
                 .prompt()
-                .system(SYSTEM_PROMPT + "每次对话后都要生成恋爱结果，标题为{用户名}的恋爱报告，内容为建议列表")
+                .system(REPORT_SYSTEM_PROMPT)
                 .user(message)
-                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId))
                 .call()
-                .entity(LoveReport.class);
+                .entity(OutputConverters.of(LoveReport.class));
 
         // 记录生成的恋爱报告信息
-        log.info("loveReport: {}", loveReport);
+        log.debug("loveReport: {}", loveReport);
 
         // 返回生成的恋爱报告
         return loveReport;
     }
 
+    /**
+     * 流式生成恋爱报告
+     * 边接收模型输出边增量解析 JSON，标题和每条建议一旦完整就立即推送，
+     * 最后推送转换完成的 LoveReport 对象
+     *
+     * @param message 用户的消息，用于生成报告的基础
+     * @param chatId 聊天的唯一标识符，用于检索对话历史
+     * @return 恋爱报告事件流
+     */
+    public Flux<LoveReportEvent> doChatWithReportStream(String message, String chatId) {
+        BeanOutputConverter<LoveReport> converter = OutputConverters.of(LoveReport.class);
+        return Flux.defer(() -> {
+            StreamingJsonParser parser = new StreamingJsonParser();
+            Flux<LoveReportEvent> fields = chatClient
+                    .prompt()
+                    .system(REPORT_SYSTEM_PROMPT)
+                    // 格式说明中包含 JSON Schema 的花括号，通过模板参数传入以免被当作占位符
+                    .user(spec -> spec.text(message + System.lineSeparator() + "{format}")
+                            .param("format", converter.getFormat()))
+                    .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId))
+                    .stream()
+                    .content()
+                    .concatMapIterable(parser::feed)
+                    .mapNotNull(this::toLoveReportEvent);
+            // 输出结束后，将完整的 JSON 转换为 LoveReport
+            Mono<LoveReportEvent> completed = Mono.fromCallable(() -> {
+                LoveReport loveReport = converter.convert(parser.getJson());
+                log.debug("loveReport: {}", loveReport);
+                return new LoveReportEvent.Completed(loveReport);
+            });
+            return fields.concatWith(completed);
+        });
+    }
+
+    /**
+     * 将解析出的 JSON 值转换为报告事件，只关心标题和建议列表中的元素
+     */
+    private LoveReportEvent toLoveReportEvent(StreamingJsonParser.CompletedValue value) {
+        String path = value.path();
+        if ("title".equals(path)) {
+            return new LoveReportEvent.Title(value.as(String.class));
+        }
+        if (path.startsWith("suggestions[") && path.endsWith("]")) {
+            int index = Integer.parseInt(path.substring("suggestions[".length(), path.length() - 1));
+            return new LoveReportEvent.Suggestion(index, value.as(String.class));
+        }
+        return null;
+    }
+
     @Resource
     private VectorStore loveAppVectorStore;
 
@@ -158,40 +282,55 @@ public class LoveApp {
         ChatResponse chatResponse = chatClient
                 .prompt()
                 .user(message)
-                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
-                // 开启日志，便于观察效果
-                .advisors(new MyLoggerAdvisor())
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId))
                 // 应用知识库问答
                 .advisors(new QuestionAnswerAdvisor(loveAppVectorStore))
                 .call()
                 .chatResponse();
         String content = chatResponse.getResult().getOutput().getText();
-        log.info("content: {}", content);
+        log.debug("content: {}", content);
         return content;
     }*/
 
     @Resource
     private Advisor loveAppRagCloudAdvisor;
 
+    /**
+     * 按情感状态创建只检索相应分区的本地 rag 顾问
+     */
+    @Resource
+    private Function<String, Advisor> loveAppStatusRagAdvisorFactory;
+
+    /**
+     * 检索增强方式：cloud 为阿里云知识库服务，local 为本地知识库的向量 + BM25 混合检索
+     */
+    @Value("${lisp.rag.mode:cloud}")
+    private String ragMode;
+
     @Resource
     private VectorStore pgVectorVectorStore;
     public String doChatWithRag(String message, String chatId) {
+        return doChatWithRag(message, chatId, null);
+    }
+
+    /**
+     * 检索增强对话，只检索指定情感状态的知识
+     *
+     * @param status 情感状态（单身、恋爱、已婚），为空时由问题内容判断；云知识库服务不支持按状态过滤，忽略该参数
+     */
+    public String doChatWithRag(String message, String chatId, String status) {
         ChatResponse chatResponse = chatClient
                 .prompt()
                 .user(message)
-                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
-                // 开启日志，便于观察效果
-                .advisors(new MyLoggerAdvisor())
-                // 应用增强检索服务（云知识库服务）
-                .advisors(loveAppRagCloudAdvisor)
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId))
+                // 应用增强检索服务（云知识库服务或本地混合检索）
+                .advisors("local".equalsIgnoreCase(ragMode) ? tracedStatusRagAdvisor(status) : tracedRagCloudAdvisor)
                 // 应用rag检索增强，基于pg
                 //.advisors(new QuestionAnswerAdvisor(pgVectorVectorStore))
                 .call()
                 .chatResponse();
         String content = chatResponse.getResult().getOutput().getText();
-        log.info("content: {}", content);
+        log.debug("content: {}", content);
         return content;
     }
 
@@ -214,15 +353,12 @@ public class LoveApp {
         ChatResponse response = chatClient
                 .prompt()
                 .user(message)
-                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
-                // 开启日志，便于观察效果
-                .advisors(new MyLoggerAdvisor())
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId))
                 .tools(allTools)
                 .call()
                 .chatResponse();
         String content = response.getResult().getOutput().getText();
-        log.info("content: {}", content);
+        log.debug("content: {}", content);
         return content;
     }
 
@@ -233,15 +369,12 @@ public class LoveApp {
         ChatResponse response = chatClient
                 .prompt()
                 .user(message)
-                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
-                // 开启日志，便于观察效果
-                .advisors(new MyLoggerAdvisor())
+                .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId))
                 .tools(toolCallbackProvider)
                 .call()
                 .chatResponse();
         String content = response.getResult().getOutput().getText();
-        log.info("content: {}", content);
+        log.debug("content: {}", content);
         return content;
     }
 
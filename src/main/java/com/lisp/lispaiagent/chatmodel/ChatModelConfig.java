@@ -0,0 +1,77 @@
+package com.lisp.lispaiagent.chatmodel;
+
+import com.lisp.lispaiagent.advisor.HedgingAdvisor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 聊天模型配置：在 DashScope 与本地 Ollama 之上构建路由模型，作为默认注入的 ChatModel，
+ * 并基于路由模型提供对冲请求顾问。
+ * 需要固定使用 DashScope 的地方要显式指定名称：LispManus 用 @Qualifier("dashscopeChatModel")，
+ * 关键词补充用按名称解析的 @Resource；构造参数仅靠参数名匹配时会注入 @Primary 的路由模型。
+ * 本地模型默认不参与路由，开启 lisp.ai.router.local-enabled 后短对话才会发往本地。
+ */
+@Configuration
+@Slf4j
+class ChatModelConfig {
+
+    @Value("${lisp.ai.router.local-enabled:false}")
+    private boolean localEnabled;
+
+    @Value("${lisp.ai.router.local-max-prompt-length:1000}")
+    private int localMaxPromptLength;
+
+    @Value("${lisp.ai.router.slow-threshold-millis:15000}")
+    private long slowThresholdMillis;
+
+    @Value("${lisp.ai.router.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${lisp.ai.router.cooldown-millis:30000}")
+    private long cooldownMillis;
+
+    @Value("${lisp.ai.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    /**
+     * 对冲请求发往的模型：same 为同一路由结果，alternate 为路由中的另一个后端
+     */
+    @Value("${lisp.ai.hedging.target:same}")
+    private String hedgingTarget;
+
+    @Value("${lisp.ai.hedging.percentile:0.95}")
+    private double hedgingPercentile;
+
+    @Value("${lisp.ai.hedging.min-delay-millis:1000}")
+    private long hedgingMinDelayMillis;
+
+    @Value("${lisp.ai.hedging.initial-delay-millis:5000}")
+    private long hedgingInitialDelayMillis;
+
+    @Value("${lisp.ai.hedging.budget-ratio:0.1}")
+    private double hedgingBudgetRatio;
+
+    @Value("${lisp.ai.hedging.window-size:200}")
+    private int hedgingWindowSize;
+
+    @Bean
+    @Primary
+    public RoutingChatModel routingChatModel(@Qualifier("dashscopeChatModel") ChatModel dashscopeChatModel,
+                                             @Qualifier("ollamaChatModel") ChatModel ollamaChatModel) {
+        log.info("初始化模型路由，本地模型{}，本地提示词长度上限 {}", localEnabled ? "启用" : "停用", localMaxPromptLength);
+        return new RoutingChatModel(dashscopeChatModel, ollamaChatModel, localEnabled,
+                localMaxPromptLength, slowThresholdMillis, failureThreshold, cooldownMillis);
+    }
+
+    @Bean
+    public HedgingAdvisor hedgingAdvisor(RoutingChatModel routingChatModel) {
+        ChatModel hedgeChatModel = "alternate".equalsIgnoreCase(hedgingTarget) ? routingChatModel.alternate() : null;
+        return new HedgingAdvisor(hedgingEnabled, hedgeChatModel, hedgingPercentile, hedgingMinDelayMillis,
+                hedgingInitialDelayMillis, hedgingBudgetRatio, hedgingWindowSize);
+    }
+}
@@ -0,0 +1,114 @@
+package com.lisp.lispaiagent.chatmodel;
+
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 路由中的一个模型后端，包装具体的 ChatModel 并维护实时的延迟与错误统计。
+ * 延迟使用指数加权移动平均（EWMA），连续失败达到阈值后进入熔断，冷却期内不再被优先选择。
+ */
+class ModelBackend {
+
+    /**
+     * EWMA 平滑系数，越大越偏向最近的样本
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String name;
+
+    private final ChatModel chatModel;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    private final int failureThreshold;
+
+    /**
+     * 熔断冷却时间（毫秒）
+     */
+    private final long cooldownMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final LongAdder successCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private volatile double ewmaLatencyMillis = -1;
+
+    private volatile long openUntilMillis = 0;
+
+    ModelBackend(String name, ChatModel chatModel, int failureThreshold, long cooldownMillis) {
+        this.name = name;
+        this.chatModel = chatModel;
+        this.failureThreshold = failureThreshold;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ChatModel getChatModel() {
+        return chatModel;
+    }
+
+    /**
+     * 记录一次成功调用并更新延迟均值，同时关闭熔断
+     *
+     * @param latencyMillis 本次调用耗时
+     */
+    synchronized void recordSuccess(long latencyMillis) {
+        successCount.increment();
+        consecutiveFailures.set(0);
+        openUntilMillis = 0;
+        ewmaLatencyMillis = ewmaLatencyMillis < 0
+                ? latencyMillis
+                : EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * ewmaLatencyMillis;
+    }
+
+    /**
+     * 记录一次失败调用，连续失败达到阈值时打开熔断
+     */
+    void recordFailure() {
+        failureCount.increment();
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntilMillis = System.currentTimeMillis() + cooldownMillis;
+        }
+    }
+
+    /**
+     * 当前是否可用（未处于熔断冷却期）
+     */
+    boolean isAvailable() {
+        return System.currentTimeMillis() >= openUntilMillis;
+    }
+
+    /**
+     * 平均延迟是否超过给定阈值，没有样本时视为不慢
+     */
+    boolean isSlowerThan(long thresholdMillis) {
+        return thresholdMillis > 0 && ewmaLatencyMillis > thresholdMillis;
+    }
+
+    double getEwmaLatencyMillis() {
+        return ewmaLatencyMillis;
+    }
+
+    /**
+     * 总体错误率，用于日志与观测
+     */
+    double getErrorRate() {
+        long failures = failureCount.sum();
+        long total = failures + successCount.sum();
+        return total == 0 ? 0 : (double) failures / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(latency=%.0fms, errorRate=%.2f, available=%s)",
+                name, ewmaLatencyMillis, getErrorRate(), isAvailable());
+    }
+}
@@ -0,0 +1,251 @@
+package com.lisp.lispaiagent.chatmodel;
+
+import com.alibaba.cloud.ai.dashscope.api.DashScopeResponseFormat;
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.ai.converter.ListOutputConverter;
+import org.springframework.ai.converter.MapOutputConverter;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 基于延迟与成本的模型路由，在云端 DashScope 与本地 Ollama 之间分发请求。
+ *
+ * 路由规则：
+ * 1. 需要工具调用的请求只走云端模型；
+ * 2. 结构化输出（如恋爱报告）走云端模型，保证 JSON 格式稳定；
+ * 3. 提示词长度不超过阈值的普通对话优先走本地模型，节省调用成本；
+ * 4. 首选后端处于熔断期或平均延迟超过阈值时，切换到另一个健康的后端；
+ * 5. 调用失败时自动故障转移到另一个后端。
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    /**
+     * 结构化输出转换器追加到用户消息中的格式说明的首行，用于识别结构化输出请求。
+     * 从转换器本身取得，Spring AI 调整措辞时随之变化
+     */
+    private static final List<String> STRUCTURED_OUTPUT_MARKERS = Stream.of(
+                    new BeanOutputConverter<>(Map.class).getFormat(),
+                    new MapOutputConverter().getFormat(),
+                    new ListOutputConverter(new DefaultConversionService()).getFormat())
+            .map(format -> format.strip().lines().findFirst().orElse("").strip())
+            .filter(marker -> !marker.isEmpty())
+            .distinct()
+            .toList();
+
+    private final ModelBackend cloud;
+
+    private final ModelBackend local;
+
+    private final boolean localEnabled;
+
+    /**
+     * 允许走本地模型的最大提示词长度（字符数）
+     */
+    private final int localMaxPromptLength;
+
+    /**
+     * 平均延迟超过该值（毫秒）视为过慢，0 表示不按延迟切换
+     */
+    private final long slowThresholdMillis;
+
+    public RoutingChatModel(ChatModel cloudChatModel, ChatModel localChatModel, boolean localEnabled,
+                            int localMaxPromptLength, long slowThresholdMillis,
+                            int failureThreshold, long cooldownMillis) {
+        this.cloud = new ModelBackend("dashscope", cloudChatModel, failureThreshold, cooldownMillis);
+        this.local = new ModelBackend("ollama", localChatModel, failureThreshold, cooldownMillis);
+        this.localEnabled = localEnabled;
+        this.localMaxPromptLength = localMaxPromptLength;
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        ModelBackend first = route(prompt);
+        try {
+            return invoke(first, prompt);
+        } catch (RuntimeException e) {
+            ModelBackend second = fallbackOf(first, prompt);
+            if (second == null) {
+                throw e;
+            }
+            log.warn("模型后端 {} 调用失败，切换到 {}: {}", first.getName(), second.getName(), e.getMessage());
+            return invoke(second, prompt);
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            ModelBackend first = route(prompt);
+            ModelBackend second = fallbackOf(first, prompt);
+            Flux<ChatResponse> responses = invokeStream(first, prompt);
+            if (second == null) {
+                return responses;
+            }
+            // 只有在尚未输出任何内容时才切换，避免客户端收到两段拼接的回复
+            AtomicBoolean emitted = new AtomicBoolean();
+            return responses
+                    .doOnNext(response -> emitted.set(true))
+                    .onErrorResume(e -> !emitted.get(), e -> {
+                        log.warn("模型后端 {} 流式调用失败，切换到 {}: {}", first.getName(), second.getName(), e.getMessage());
+                        return invokeStream(second, prompt);
+                    });
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return cloud.getChatModel().getDefaultOptions();
+    }
+
+    /**
+     * 返回一个总是选择“另一个”后端的视图：本路由会选本地时它选云端，反之亦然。
+     * 供对冲请求把第二次请求发往不同的模型。
+     */
+    public ChatModel alternate() {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                ModelBackend backend = alternateOf(route(prompt), prompt);
+                return invoke(backend, prompt);
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return Flux.defer(() -> invokeStream(alternateOf(route(prompt), prompt), prompt));
+            }
+
+            @Override
+            public ChatOptions getDefaultOptions() {
+                return RoutingChatModel.this.getDefaultOptions();
+            }
+        };
+    }
+
+    /**
+     * 根据路由规则与后端实时状态选择本次请求的后端
+     */
+    ModelBackend route(Prompt prompt) {
+        ModelBackend preferred = prefersLocal(prompt) ? local : cloud;
+        ModelBackend other = alternateOf(preferred, prompt);
+        if (other != preferred && other.isAvailable()) {
+            if (!preferred.isAvailable()) {
+                return other;
+            }
+            if (preferred.isSlowerThan(slowThresholdMillis) && !other.isSlowerThan(slowThresholdMillis)) {
+                return other;
+            }
+        }
+        return preferred;
+    }
+
+    private boolean prefersLocal(Prompt prompt) {
+        if (!localEnabled || requiresTools(prompt) || requiresStructuredOutput(prompt)) {
+            return false;
+        }
+        return promptLength(prompt) <= localMaxPromptLength;
+    }
+
+    /**
+     * 当前后端之外可以承接该请求的后端；不存在时返回当前后端本身
+     */
+    private ModelBackend alternateOf(ModelBackend backend, Prompt prompt) {
+        if (backend == cloud) {
+            return localEnabled && !requiresTools(prompt) ? local : cloud;
+        }
+        return cloud;
+    }
+
+    /**
+     * 故障转移的目标后端，不存在或处于熔断期时返回 null
+     */
+    private ModelBackend fallbackOf(ModelBackend backend, Prompt prompt) {
+        ModelBackend other = alternateOf(backend, prompt);
+        return other != backend && other.isAvailable() ? other : null;
+    }
+
+    private ChatResponse invoke(ModelBackend backend, Prompt prompt) {
+        long start = System.currentTimeMillis();
+        try {
+            ChatResponse response = backend.getChatModel().call(adapt(backend, prompt));
+            backend.recordSuccess(System.currentTimeMillis() - start);
+            return response;
+        } catch (RuntimeException e) {
+            backend.recordFailure();
+            throw e;
+        }
+    }
+
+    private Flux<ChatResponse> invokeStream(ModelBackend backend, Prompt prompt) {
+        return Flux.defer(() -> {
+            long start = System.currentTimeMillis();
+            return backend.getChatModel().stream(adapt(backend, prompt))
+                    .doOnComplete(() -> backend.recordSuccess(System.currentTimeMillis() - start))
+                    .doOnError(e -> backend.recordFailure());
+        });
+    }
+
+    /**
+     * 客户端默认选项来自云端模型（模型名等），发往本地模型时只保留消息，使用本地模型自身的默认配置
+     */
+    private Prompt adapt(ModelBackend backend, Prompt prompt) {
+        return backend == local ? new Prompt(prompt.getInstructions()) : prompt;
+    }
+
+    /**
+     * 工具可能以回调或名称两种方式给出；DashScope 的选项不是 ToolCallingChatOptions，单独判断
+     */
+    private static boolean requiresTools(Prompt prompt) {
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options) {
+            return !CollectionUtils.isEmpty(options.getToolCallbacks())
+                    || !CollectionUtils.isEmpty(options.getToolNames());
+        }
+        if (prompt.getOptions() instanceof DashScopeChatOptions options) {
+            return !CollectionUtils.isEmpty(options.getFunctionCallbacks())
+                    || !CollectionUtils.isEmpty(options.getFunctions());
+        }
+        return false;
+    }
+
+    /**
+     * 选项中要求 JSON 响应格式，或用户消息中带有结构化输出转换器的格式说明
+     */
+    private static boolean requiresStructuredOutput(Prompt prompt) {
+        if (prompt.getOptions() instanceof DashScopeChatOptions options && options.getResponseFormat() != null
+                && options.getResponseFormat().getType() == DashScopeResponseFormat.Type.JSON_OBJECT) {
+            return true;
+        }
+        return prompt.getInstructions().stream()
+                .filter(message -> message.getMessageType() == MessageType.USER)
+                .map(Message::getText)
+                .anyMatch(text -> text != null && STRUCTURED_OUTPUT_MARKERS.stream().anyMatch(text::contains));
+    }
+
+    private static int promptLength(Prompt prompt) {
+        return prompt.getInstructions().stream()
+                .map(Message::getText)
+                .mapToInt(text -> text == null ? 0 : text.length())
+                .sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingChatModel[" + cloud + ", " + local + "]";
+    }
+}
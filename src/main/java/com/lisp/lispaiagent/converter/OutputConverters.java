@@ -0,0 +1,30 @@
+package com.lisp.lispaiagent.converter;
+
+import org.springframework.ai.converter.BeanOutputConverter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 结构化输出转换器缓存。
+ * BeanOutputConverter 在构造时会为目标类型生成 JSON Schema，开销不小，
+ * 这里按目标类型缓存，每个类型只构建一次，在同步和流式结构化输出之间共享。
+ */
+public final class OutputConverters {
+
+    private static final Map<Class<?>, BeanOutputConverter<?>> CONVERTERS = new ConcurrentHashMap<>();
+
+    private OutputConverters() {
+    }
+
+    /**
+     * 获取目标类型的转换器，首次调用时构建
+     *
+     * @param type 目标类型
+     * @return 该类型共享的转换器
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanOutputConverter<T> of(Class<T> type) {
+        return (BeanOutputConverter<T>) CONVERTERS.computeIfAbsent(type, BeanOutputConverter::new);
+    }
+}
@@ -0,0 +1,219 @@
+package com.lisp.lispaiagent.converter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量 JSON 解析器，用于解析模型流式输出的结构化结果。
+ * 每次喂入一段文本后返回其中已完整的值（字符串、数字、对象、数组等）及其路径，
+ * 路径形如 "title"、"suggestions[0]"，调用方可以在整个 JSON 结束前就拿到已完成的字段。
+ * 第一个 '{' 之前的文本（如 ```json 代码块标记）会被忽略，根对象闭合后的文本同样被忽略。
+ * 该类不是线程安全的，每次流式调用使用一个新实例。
+ */
+public class StreamingJsonParser {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 从根对象开始累积的 JSON 文本
+     */
+    private final StringBuilder buffer = new StringBuilder();
+
+    /**
+     * 当前所在的容器栈，栈底为根对象
+     */
+    private final List<Frame> stack = new ArrayList<>();
+
+    private boolean started;
+
+    private boolean done;
+
+    private boolean inString;
+
+    private boolean escape;
+
+    private boolean stringIsKey;
+
+    private int stringStart;
+
+    /**
+     * 正在读取的数字或字面量（true/false/null）的起始位置，-1 表示没有
+     */
+    private int scalarStart = -1;
+
+    /**
+     * 喂入一段文本，返回本段文本中完成的所有值（按完成顺序）
+     *
+     * @param chunk 模型输出的文本片段
+     * @return 已完成的值列表
+     */
+    public List<CompletedValue> feed(String chunk) {
+        List<CompletedValue> completed = new ArrayList<>();
+        if (chunk == null) {
+            return completed;
+        }
+        for (int i = 0; i < chunk.length() && !done; i++) {
+            process(chunk.charAt(i), completed);
+        }
+        return completed;
+    }
+
+    /**
+     * 根对象是否已经闭合
+     */
+    public boolean isComplete() {
+        return done;
+    }
+
+    /**
+     * 获取完整的根对象 JSON 文本
+     *
+     * @throws IllegalStateException 根对象尚未闭合时抛出
+     */
+    public String getJson() {
+        if (!done) {
+            throw new IllegalStateException("模型输出的 JSON 不完整: " + buffer);
+        }
+        return buffer.toString();
+    }
+
+    private void process(char c, List<CompletedValue> completed) {
+        if (!started) {
+            if (c == '{') {
+                started = true;
+                buffer.append(c);
+                stack.add(new Frame(false, 0));
+            }
+            return;
+        }
+        int pos = buffer.length();
+        buffer.append(c);
+        if (inString) {
+            if (escape) {
+                escape = false;
+            } else if (c == '\\') {
+                escape = true;
+            } else if (c == '"') {
+                inString = false;
+                if (stringIsKey) {
+                    Frame top = top();
+                    top.key = decode(buffer.substring(stringStart, pos + 1), String.class);
+                    top.expectingKey = false;
+                } else {
+                    complete(stringStart, pos + 1, completed);
+                }
+            }
+            return;
+        }
+        if (scalarStart >= 0 && (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))) {
+            complete(scalarStart, pos, completed);
+            scalarStart = -1;
+        }
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                stringStart = pos;
+                stringIsKey = !top().array && top().expectingKey;
+            }
+            case '{' -> stack.add(new Frame(false, pos));
+            case '[' -> stack.add(new Frame(true, pos));
+            case '}', ']' -> {
+                Frame frame = stack.remove(stack.size() - 1);
+                if (stack.isEmpty()) {
+                    done = true;
+                } else {
+                    complete(frame.start, pos + 1, completed);
+                }
+            }
+            case ',' -> {
+                Frame top = top();
+                if (top.array) {
+                    top.index++;
+                } else {
+                    top.expectingKey = true;
+                }
+            }
+            case ':' -> {
+            }
+            default -> {
+                if (!Character.isWhitespace(c) && scalarStart < 0) {
+                    scalarStart = pos;
+                }
+            }
+        }
+    }
+
+    private void complete(int start, int end, List<CompletedValue> completed) {
+        completed.add(new CompletedValue(currentPath(), buffer.substring(start, end)));
+    }
+
+    /**
+     * 由容器栈拼出当前值的路径，对象成员用 "." 连接，数组元素用 "[i]"
+     */
+    private String currentPath() {
+        StringBuilder path = new StringBuilder();
+        for (Frame frame : stack) {
+            if (frame.array) {
+                path.append('[').append(frame.index).append(']');
+            } else if (frame.key != null) {
+                if (!path.isEmpty()) {
+                    path.append('.');
+                }
+                path.append(frame.key);
+            }
+        }
+        return path.toString();
+    }
+
+    private Frame top() {
+        return stack.get(stack.size() - 1);
+    }
+
+    private static <T> T decode(String json, Class<T> type) {
+        try {
+            return OBJECT_MAPPER.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法解析 JSON 值: " + json, e);
+        }
+    }
+
+    /**
+     * 一个已完成的 JSON 值
+     *
+     * @param path 值的路径，如 "title"、"suggestions[0]"
+     * @param json 值的原始 JSON 文本
+     */
+    public record CompletedValue(String path, String json) {
+
+        /**
+         * 将原始 JSON 文本转换为指定类型
+         */
+        public <T> T as(Class<T> type) {
+            return decode(json, type);
+        }
+    }
+
+    /**
+     * 容器（对象或数组）的解析状态
+     */
+    private static class Frame {
+
+        private final boolean array;
+
+        private final int start;
+
+        private String key;
+
+        private boolean expectingKey = true;
+
+        private int index;
+
+        private Frame(boolean array, int start) {
+            this.array = array;
+            this.start = start;
+        }
+    }
+}
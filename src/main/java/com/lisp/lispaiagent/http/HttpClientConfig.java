@@ -0,0 +1,75 @@
+package com.lisp.lispaiagent.http;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * 出站 HTTP 客户端配置。
+ * 工具（搜索、网页抓取、资源下载）直接使用共享客户端；
+ * 开启 lisp.http.providers.shared 后，基于 RestClient 的模型服务（DashScope、Ollama）也通过 RestClientCustomizer
+ * 复用同一个连接池和按主机的并发上限。该定制器作用于上下文中所有的 RestClient.Builder，因此默认关闭。
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${lisp.http.connect-timeout-millis:5000}")
+    private long connectTimeoutMillis;
+
+    @Value("${lisp.http.read-timeout-millis:30000}")
+    private long readTimeoutMillis;
+
+    /**
+     * 模型服务的读取超时，大模型生成较慢，单独设置
+     */
+    @Value("${lisp.http.provider-read-timeout-millis:120000}")
+    private long providerReadTimeoutMillis;
+
+    @Value("${lisp.http.max-connections-per-host:8}")
+    private int maxConnectionsPerHost;
+
+    @Value("${lisp.http.http2:true}")
+    private boolean http2;
+
+    @Bean
+    public OutboundHttpClient outboundHttpClient() {
+        return new OutboundHttpClient(Duration.ofMillis(connectTimeoutMillis), Duration.ofMillis(readTimeoutMillis),
+                maxConnectionsPerHost, http2);
+    }
+
+    /**
+     * 在其他定制器（如 DashScope 自带的超时设置）之后执行，将 RestClient 的底层请求工厂替换为共享客户端，
+     * 并让请求占用按主机的并发许可
+     */
+    @Bean
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @ConditionalOnProperty(prefix = "lisp.http.providers", name = "shared", havingValue = "true")
+    public RestClientCustomizer outboundRestClientCustomizer(OutboundHttpClient outboundHttpClient) {
+        ClientHttpRequestFactory requestFactory = requestFactory(outboundHttpClient,
+                Duration.ofMillis(providerReadTimeoutMillis));
+        HostPermitInterceptor interceptor = new HostPermitInterceptor(outboundHttpClient);
+        return builder -> builder.requestFactory(requestFactory).requestInterceptor(interceptor);
+    }
+
+    /**
+     * 按请求地址选择底层客户端的请求工厂：https 可协商 HTTP/2，明文 http 使用 HTTP/1.1
+     */
+    static ClientHttpRequestFactory requestFactory(OutboundHttpClient outboundHttpClient, Duration readTimeout) {
+        JdkClientHttpRequestFactory secure = new JdkClientHttpRequestFactory(outboundHttpClient.getHttpClient());
+        secure.setReadTimeout(readTimeout);
+        JdkClientHttpRequestFactory plain = new JdkClientHttpRequestFactory(
+                outboundHttpClient.clientFor(URI.create("http://localhost")));
+        plain.setReadTimeout(readTimeout);
+        return (uri, httpMethod) -> ("http".equalsIgnoreCase(uri.getScheme()) ? plain : secure)
+                .createRequest(uri, httpMethod);
+    }
+}
@@ -0,0 +1,206 @@
+package com.lisp.lispaiagent.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 共享的出站 HTTP 客户端，工具调用与模型服务调用共用同一个连接池。
+ *
+ * 基于 JDK HttpClient：连接池与 keep-alive 复用、https 可用时协商 HTTP/2，
+ * 在其上补充了按主机的并发连接上限、连接/读取超时以及 gzip 响应解压。
+ * 明文 http 请求（如本地 Ollama）固定使用 HTTP/1.1，不发送 h2c 升级请求头。
+ */
+public class OutboundHttpClient {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (compatible; lisp-ai-agent)";
+
+    private static volatile OutboundHttpClient shared;
+
+    private final HttpClient httpClient;
+
+    /**
+     * 明文 http 使用的 HTTP/1.1 客户端；未开启 HTTP/2 时与 httpClient 相同
+     */
+    private final HttpClient plainHttpClient;
+
+    private final Duration connectTimeout;
+
+    private final Duration readTimeout;
+
+    private final int maxConnectionsPerHost;
+
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public OutboundHttpClient(Duration connectTimeout, Duration readTimeout, int maxConnectionsPerHost, boolean http2) {
+        this.httpClient = build(connectTimeout, http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+        this.plainHttpClient = http2 ? build(connectTimeout, HttpClient.Version.HTTP_1_1) : httpClient;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    private static HttpClient build(Duration connectTimeout, HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * 使用默认配置的共享实例，供未通过 Spring 注入客户端的场景使用
+     */
+    public static OutboundHttpClient shared() {
+        if (shared == null) {
+            synchronized (OutboundHttpClient.class) {
+                if (shared == null) {
+                    shared = new OutboundHttpClient(Duration.ofSeconds(5), Duration.ofSeconds(30), 8, true);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * 底层的 JDK HttpClient（https 使用），用于接入 Spring RestClient 等组件
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * 请求地址对应的底层客户端：明文 http 使用 HTTP/1.1 客户端
+     */
+    public HttpClient clientFor(URI uri) {
+        return "http".equalsIgnoreCase(uri.getScheme()) ? plainHttpClient : httpClient;
+    }
+
+    /**
+     * 主机的并发许可，工具请求与经由 RestClient 的模型服务请求共用
+     */
+    Semaphore permits(String host) {
+        return hostPermits.computeIfAbsent(String.valueOf(host), key -> new Semaphore(maxConnectionsPerHost));
+    }
+
+    /**
+     * 获取请求地址所在主机的一个并发许可，最多等待连接超时时间，调用方负责归还
+     *
+     * @return 已获取许可的信号量
+     */
+    Semaphore acquirePermit(URI uri) throws IOException {
+        Semaphore permits = permits(uri.getHost());
+        try {
+            if (!permits.tryAcquire(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("等待连接许可超过 " + connectTimeout.toMillis() + "ms: " + uri);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待连接许可时被中断: " + uri, e);
+        }
+        return permits;
+    }
+
+    /**
+     * 发送 GET 请求并以文本形式返回响应体，字符集取自响应头，缺省为 UTF-8
+     *
+     * @param url 请求地址
+     * @param headers 额外的请求头
+     * @return 响应文本
+     */
+    public String getString(String url, Map<String, String> headers) throws IOException {
+        return get(url, headers, (response, body) -> new String(body.readAllBytes(), charsetOf(response)));
+    }
+
+    /**
+     * 发送 GET 请求并返回解压后的原始字节
+     */
+    public byte[] getBytes(String url, Map<String, String> headers) throws IOException {
+        return get(url, headers, (response, body) -> body.readAllBytes());
+    }
+
+    /**
+     * 下载资源到指定文件
+     *
+     * @param url 资源地址
+     * @param target 目标文件
+     */
+    public void download(String url, Path target) throws IOException {
+        get(url, Map.of(), (response, body) -> Files.copy(body, target, StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    /**
+     * 在主机并发许可内完成一次请求，许可一直持有到响应体读取完毕
+     */
+    private <T> T get(String url, Map<String, String> headers, BodyReader<T> reader) throws IOException {
+        URI uri = URI.create(url);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("Accept-Encoding", "gzip")
+                .header("User-Agent", USER_AGENT)
+                .GET();
+        headers.forEach(builder::header);
+        Semaphore permits = acquirePermit(uri);
+        try {
+            HttpResponse<InputStream> response = clientFor(uri).send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() >= 400) {
+                response.body().close();
+                throw new IOException("HTTP " + response.statusCode() + ": " + url);
+            }
+            try (InputStream body = decode(response)) {
+                return reader.read(response, body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断: " + url, e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzip ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    private static Charset charsetOf(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Type")
+                .map(contentType -> {
+                    int index = contentType.toLowerCase().indexOf("charset=");
+                    if (index < 0) {
+                        return null;
+                    }
+                    String name = contentType.substring(index + "charset=".length()).replace("\"", "").trim();
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                })
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 响应体读取函数
+     */
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(HttpResponse<InputStream> response, InputStream body) throws IOException;
+    }
+}
@@ -0,0 +1,228 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于倒排索引的 BM25 关键词检索，弥补向量检索对用户原话中精确词语不敏感的问题。
+ * 中文按连续汉字的二元组切分（单个汉字成词），英文和数字按单词切分并转小写。
+ * 支持增量写入（同 id 覆盖）和删除，检索时可按元信息过滤；删除或覆盖留下的空槽位过半时整体重建。
+ */
+@Slf4j
+class Bm25Index {
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 下标到文档，删除后置为 null
+     */
+    private final List<Document> documents = new ArrayList<>();
+
+    private final List<Integer> lengths = new ArrayList<>();
+
+    private final Map<String, Integer> index = new HashMap<>();
+
+    /**
+     * 词到（文档下标 -> 词频）的倒排表
+     */
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+
+    private long totalLength;
+
+    /**
+     * 写入或覆盖文档
+     */
+    void add(List<Document> batch) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : batch) {
+                remove(document.getId());
+                insert(document);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::remove);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已分配的文档槽位数，包含删除后尚未回收的空槽位
+     */
+    int slots() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按 BM25 得分检索
+     *
+     * @param query 查询文本
+     * @param topK 返回的最大文档数
+     * @param filter 元信息过滤条件，可为 null
+     * @return 按得分降序的文档，score 为 BM25 得分
+     */
+    List<Document> search(String query, int topK, Filter.Expression filter) {
+        lock.readLock().lock();
+        try {
+            int n = index.size();
+            if (n == 0 || topK <= 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / n;
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String token : new LinkedHashSet<>(tokenize(query))) {
+                Map<Integer, Integer> posting = postings.get(token);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (n - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((position, frequency) -> {
+                    double norm = K1 * (1 - B + B * lengths.get(position) / averageLength);
+                    scores.merge(position, idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                });
+            }
+            PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                if (!MetadataFilter.matches(filter, documents.get(entry.getKey()).getMetadata())) {
+                    continue;
+                }
+                top.add(entry);
+                if (top.size() > topK) {
+                    top.poll();
+                }
+            }
+            List<Document> results = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Map.Entry<Integer, Double> entry = top.poll();
+                Document document = documents.get(entry.getKey());
+                results.add(0, Document.builder().id(document.getId()).text(document.getText())
+                        .metadata(new HashMap<>(document.getMetadata())).score(entry.getValue()).build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(Document document) {
+        int position = documents.size();
+        List<String> tokens = tokenize(document.getText());
+        Map<String, Integer> frequencies = new HashMap<>();
+        tokens.forEach(token -> frequencies.merge(token, 1, Integer::sum));
+        frequencies.forEach((token, frequency) ->
+                postings.computeIfAbsent(token, key -> new HashMap<>()).put(position, frequency));
+        documents.add(document);
+        lengths.add(tokens.size());
+        index.put(document.getId(), position);
+        totalLength += tokens.size();
+    }
+
+    /**
+     * 空槽位过半时用剩余文档重建索引，回收槽位
+     */
+    private void compactIfNeeded() {
+        int deleted = documents.size() - index.size();
+        if (deleted * 2 <= documents.size()) {
+            return;
+        }
+        List<Document> remaining = documents.stream().filter(Objects::nonNull).toList();
+        log.info("BM25 索引中已删除 {} 个文档，使用剩余 {} 个文档重建", deleted, remaining.size());
+        documents.clear();
+        lengths.clear();
+        index.clear();
+        postings.clear();
+        totalLength = 0;
+        remaining.forEach(this::insert);
+    }
+
+    private void remove(String id) {
+        Integer position = index.remove(id);
+        if (position == null) {
+            return;
+        }
+        for (String token : new LinkedHashSet<>(tokenize(documents.get(position).getText()))) {
+            Map<Integer, Integer> posting = postings.get(token);
+            if (posting != null) {
+                posting.remove(position);
+                if (posting.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+        totalLength -= lengths.get(position);
+        documents.set(position, null);
+    }
+
+    /**
+     * 切分检索词：汉字二元组（单个汉字成词），以及转小写的英文单词和数字
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int hanStart = -1;
+        int wordStart = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            boolean han = Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+            boolean word = c < 0x80 && Character.isLetterOrDigit(c);
+            if (han && hanStart < 0) {
+                hanStart = i;
+            } else if (!han && hanStart >= 0) {
+                if (i - hanStart == 1) {
+                    tokens.add(text.substring(hanStart, i));
+                }
+                for (int j = hanStart; j + 2 <= i; j++) {
+                    tokens.add(text.substring(j, j + 2));
+                }
+                hanStart = -1;
+            }
+            if (word && wordStart < 0) {
+                wordStart = i;
+            } else if (!word && wordStart >= 0) {
+                tokens.add(text.substring(wordStart, i).toLowerCase());
+                wordStart = -1;
+            }
+        }
+        return tokens;
+    }
+}
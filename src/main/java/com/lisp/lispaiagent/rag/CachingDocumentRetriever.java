@@ -0,0 +1,54 @@
+package com.lisp.lispaiagent.rag;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 检索结果缓存：按归一化后的查询文本缓存被装饰检索器的结果，容量和存活时间都有上限。
+ * 归一化忽略大小写、首尾及连续空白和句末标点，“怎么表白？”与“怎么表白”命中同一条缓存。
+ * 存活时间从写入起算，读取不会延长，知识库更新后最多经过一个存活时间即可检索到新内容。
+ */
+class CachingDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever delegate;
+
+    private final LRUCache<String, List<Document>> cache;
+
+    /**
+     * @param capacity 最多缓存的查询数，按最近使用淘汰
+     * @param ttl 每条缓存的存活时间
+     */
+    CachingDocumentRetriever(DocumentRetriever delegate, int capacity, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = CacheUtil.newLRUCache(capacity, ttl.toMillis());
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        String key = normalize(query.text());
+        List<Document> documents = cache.get(key, false);
+        if (documents == null) {
+            documents = List.copyOf(delegate.retrieve(query));
+            cache.put(key, documents);
+        }
+        return documents;
+    }
+
+    /**
+     * 查询文本归一化，作为缓存键
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return normalized.replaceAll("[?？!！。.,，~～…]+$", "");
+    }
+}
@@ -0,0 +1,269 @@
+package com.lisp.lispaiagent.rag;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带缓存的嵌入模型：按文本内容哈希缓存向量，内存中保留最近使用的一部分，全部向量追加写入磁盘文件，重启后仍可命中。
+ * 缓存按命名空间（嵌入模型和维度）隔离，切换模型不会读到旧模型的向量；
+ * 单次请求带了选项（模型、维度、文本类型等）时，选项也计入缓存键。
+ * 批量请求只把未命中的文本发给实际模型；命中情况通过 lisp.rag.embedding.cache 指标输出。
+ *
+ * 磁盘文件格式：连续的记录，每条为 32 字节键（SHA-256）、向量维度和向量，启动时只把键和偏移读入内存。
+ */
+@Slf4j
+class CachingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private static final int KEY_BYTES = 32;
+
+    private final EmbeddingModel delegate;
+
+    private final String namespace;
+
+    private final LRUCache<String, float[]> memory;
+
+    /**
+     * 键到磁盘文件中记录偏移的索引
+     */
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+
+    private final FileChannel channel;
+
+    private final Path file;
+
+    private final Counter memoryHits;
+
+    private final Counter diskHits;
+
+    private final Counter misses;
+
+    /**
+     * @param namespace 命名空间，通常为模型名和维度
+     * @param directory 磁盘文件所在目录
+     * @param memoryCapacity 内存中缓存的向量数
+     */
+    CachingEmbeddingModel(EmbeddingModel delegate, String namespace, Path directory, int memoryCapacity,
+                          MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.namespace = namespace;
+        this.memory = CacheUtil.newLRUCache(memoryCapacity);
+        this.file = directory.resolve(namespace.replaceAll("[^A-Za-z0-9._-]", "_") + ".embeddings");
+        try {
+            Files.createDirectories(directory);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            loadIndex();
+        } catch (IOException e) {
+            throw new UncheckedIOException("向量缓存文件打开失败: " + file, e);
+        }
+        this.memoryHits = counter(meterRegistry, "memory");
+        this.diskHits = counter(meterRegistry, "disk");
+        this.misses = counter(meterRegistry, "miss");
+        Gauge.builder("lisp.rag.embedding.cache.hit.ratio", this, CachingEmbeddingModel::hitRatio)
+                .description("向量缓存命中率")
+                .tag("namespace", namespace)
+                .register(meterRegistry);
+        Gauge.builder("lisp.rag.embedding.cache.entries", offsets, Map::size)
+                .description("磁盘缓存的向量数")
+                .tag("namespace", namespace)
+                .register(meterRegistry);
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("lisp.rag.embedding.cache")
+                .description("向量缓存查询次数")
+                .tag("namespace", namespace)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String options = options(request.getOptions());
+        float[][] vectors = new float[texts.size()][];
+        List<String> missingTexts = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            vectors[i] = lookup(key(options, texts.get(i)));
+            if (vectors[i] == null) {
+                missingTexts.add(texts.get(i));
+                missingIndexes.add(i);
+            }
+        }
+        if (!missingTexts.isEmpty()) {
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(missingTexts, request.getOptions()));
+            List<Embedding> results = response.getResults();
+            for (int i = 0; i < results.size(); i++) {
+                int index = missingIndexes.get(i);
+                vectors[index] = results.get(i).getOutput();
+                store(key(options, texts.get(index)), vectors[index]);
+            }
+        }
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 关闭缓存文件；被包装的模型实现了 AutoCloseable（如合批模型）时一并关闭
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("向量缓存文件关闭失败: {}", file, e);
+        }
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("嵌入模型关闭失败", e);
+            }
+        }
+    }
+
+    double hitRatio() {
+        double hits = memoryHits.count() + diskHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    /**
+     * 请求选项中非空字段的 JSON，没有选项或字段都为空时为空字符串
+     */
+    static String options(EmbeddingOptions options) {
+        if (options == null) {
+            return "";
+        }
+        String json = JSONUtil.toJsonStr(options);
+        return "{}".equals(json) ? "" : json;
+    }
+
+    /**
+     * 不带选项的键与引入选项之前一致，已有的磁盘缓存仍可命中
+     */
+    private String key(String options, String text) {
+        String source = options.isEmpty() ? namespace + '\u0000' + text : namespace + '\u0000' + options + '\u0000' + text;
+        return HexFormat.of().formatHex(DigestUtil.sha256(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private float[] lookup(String key) {
+        float[] vector = memory.get(key);
+        if (vector != null) {
+            memoryHits.increment();
+            return vector;
+        }
+        Long offset = offsets.get(key);
+        if (offset != null) {
+            try {
+                vector = read(offset);
+                memory.put(key, vector);
+                diskHits.increment();
+                return vector;
+            } catch (IOException e) {
+                log.warn("向量缓存读取失败: {}", file, e);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private float[] read(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(header, offset + KEY_BYTES);
+        ByteBuffer body = ByteBuffer.allocate(header.flip().getInt() * Float.BYTES);
+        channel.read(body, offset + KEY_BYTES + Integer.BYTES);
+        float[] vector = new float[body.capacity() / Float.BYTES];
+        body.flip().asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private void store(String key, float[] vector) {
+        memory.put(key, vector);
+        if (offsets.containsKey(key)) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(KEY_BYTES + Integer.BYTES + vector.length * Float.BYTES);
+        record.put(HexFormat.of().parseHex(key)).putInt(vector.length);
+        record.asFloatBuffer().put(vector);
+        record.position(record.capacity()).flip();
+        synchronized (this) {
+            try {
+                long offset = channel.size();
+                while (record.hasRemaining()) {
+                    channel.write(record, offset + record.position());
+                }
+                offsets.putIfAbsent(key, offset);
+            } catch (IOException e) {
+                log.warn("向量缓存写入失败: {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * 读取全部记录的键和偏移，末尾不完整的记录（写入中途退出）被截掉
+     */
+    private void loadIndex() throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(KEY_BYTES + Integer.BYTES);
+        while (offset + header.capacity() <= size) {
+            header.clear();
+            channel.read(header, offset);
+            header.flip();
+            byte[] key = new byte[KEY_BYTES];
+            header.get(key);
+            long end = offset + header.capacity() + (long) header.getInt() * Float.BYTES;
+            if (end > size) {
+                break;
+            }
+            offsets.put(HexFormat.of().formatHex(key), offset);
+            offset = end;
+        }
+        if (offset < size) {
+            log.warn("向量缓存文件末尾有不完整的记录，已截断: {}", file);
+            channel.truncate(offset);
+        }
+        log.info("向量缓存 {} 已加载 {} 条", namespace, offsets.size());
+    }
+}
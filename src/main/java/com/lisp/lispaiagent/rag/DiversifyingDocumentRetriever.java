@@ -0,0 +1,113 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 检索结果后处理：去掉近似重复的片段，按最大边际相关性（MMR）重新选择，并限制注入提示词的总 token 数。
+ *
+ * 片段之间的相似度用 MinHash 估计的 Jaccard 相似度，不需要向量；相关性取检索得分按最大值归一化，没有得分时按名次。
+ * 每一步选择 lambda * 相关性 - (1 - lambda) * 与已选片段的最大相似度 最高的片段，
+ * 放不进剩余 token 预算的片段跳过；最相关的片段总会保留，避免上下文为空。
+ */
+class DiversifyingDocumentRetriever implements DocumentRetriever {
+
+    private final DocumentRetriever delegate;
+
+    private final MinHash minHash = new MinHash(64, 3);
+
+    private final double duplicateThreshold;
+
+    private final double lambda;
+
+    private final int topK;
+
+    private final int maxContextTokens;
+
+    private final TokenCountEstimator estimator;
+
+    /**
+     * @param duplicateThreshold 与已保留片段的相似度不低于该值时视为重复
+     * @param lambda 相关性与多样性的权衡，1 为只看相关性
+     * @param topK 最多返回的片段数
+     * @param maxContextTokens 返回片段的总 token 数上限
+     */
+    DiversifyingDocumentRetriever(DocumentRetriever delegate, double duplicateThreshold, double lambda, int topK,
+                                  int maxContextTokens, TokenCountEstimator estimator) {
+        this.delegate = delegate;
+        this.duplicateThreshold = duplicateThreshold;
+        this.lambda = lambda;
+        this.topK = topK;
+        this.maxContextTokens = maxContextTokens;
+        this.estimator = estimator;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        List<Document> candidates = delegate.retrieve(query);
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        // 按检索顺序去重，保留更靠前的片段
+        List<Document> documents = new ArrayList<>();
+        List<long[]> signatures = new ArrayList<>();
+        for (Document candidate : candidates) {
+            long[] signature = minHash.signature(candidate.getText());
+            if (signatures.stream().allMatch(kept -> MinHash.similarity(kept, signature) < duplicateThreshold)) {
+                documents.add(candidate);
+                signatures.add(signature);
+            }
+        }
+        double[] relevance = relevance(documents);
+        List<Document> selected = new ArrayList<>();
+        List<long[]> selectedSignatures = new ArrayList<>();
+        boolean[] used = new boolean[documents.size()];
+        int tokens = 0;
+        while (selected.size() < topK) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < documents.size(); i++) {
+                if (used[i]) {
+                    continue;
+                }
+                double redundancy = 0;
+                for (long[] signature : selectedSignatures) {
+                    redundancy = Math.max(redundancy, MinHash.similarity(signatures.get(i), signature));
+                }
+                double score = lambda * relevance[i] - (1 - lambda) * redundancy;
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            used[best] = true;
+            int cost = estimator.estimate(documents.get(best).getText());
+            if (!selected.isEmpty() && tokens + cost > maxContextTokens) {
+                continue;
+            }
+            selected.add(documents.get(best));
+            selectedSignatures.add(signatures.get(best));
+            tokens += cost;
+        }
+        return selected;
+    }
+
+    private static double[] relevance(List<Document> documents) {
+        double[] relevance = new double[documents.size()];
+        double max = documents.stream().map(Document::getScore).filter(score -> score != null && score > 0)
+                .mapToDouble(Double::doubleValue).max().orElse(0);
+        for (int i = 0; i < documents.size(); i++) {
+            Double score = documents.get(i).getScore();
+            relevance[i] = max > 0 && score != null ? score / max : 1 - (double) i / documents.size();
+        }
+        return relevance;
+    }
+}
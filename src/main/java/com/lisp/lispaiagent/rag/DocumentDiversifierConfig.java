@@ -0,0 +1,44 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 检索结果后处理配置：云知识库和本地知识库的检索结果在注入提示词前都经过去重、MMR 重排和 token 上限
+ */
+@Configuration
+class DocumentDiversifierConfig {
+
+    @Value("${lisp.rag.diversify.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lisp.rag.diversify.duplicate-threshold:0.8}")
+    private double duplicateThreshold;
+
+    @Value("${lisp.rag.diversify.lambda:0.7}")
+    private double lambda;
+
+    @Value("${lisp.rag.diversify.top-k:4}")
+    private int topK;
+
+    @Value("${lisp.rag.diversify.max-context-tokens:1500}")
+    private int maxContextTokens;
+
+    /**
+     * 为检索器加上去重和 MMR 重排，关闭时原样返回
+     */
+    @Bean
+    UnaryOperator<DocumentRetriever> loveAppDocumentDiversifier() {
+        if (!enabled) {
+            return UnaryOperator.identity();
+        }
+        JTokkitTokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+        return retriever -> new DiversifyingDocumentRetriever(retriever, duplicateThreshold, lambda, topK,
+                maxContextTokens, estimator);
+    }
+}
@@ -0,0 +1,349 @@
+package com.lisp.lispaiagent.rag;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 知识库文档目录监听：文件新增、修改或删除后只重新切分受影响的文件，
+ * 按片段 id（内容哈希）与清单比对，只写入新增的片段、删除不再存在的片段，其余片段原样保留。
+ *
+ * 清单记录每个文件的内容哈希和片段 id，内容哈希未变的事件（如只修改了时间戳）直接忽略。
+ * 先写入新片段再删除旧片段，更新期间检索不会缺少该文件的内容。
+ * 事件在短时间内合并处理，编辑器保存时的多次写入只触发一次更新；事件丢失（OVERFLOW）时全量比对一次。
+ */
+@Slf4j
+class DocumentWatcher implements AutoCloseable {
+
+    /**
+     * 向知识库写入和删除片段
+     */
+    interface Indexer {
+
+        /**
+         * @param added 需要计算向量并写入的片段
+         * @param removedIds 需要删除的片段 id
+         */
+        void update(List<Document> added, Collection<String> removedIds);
+    }
+
+    /**
+     * 一次更新写入和删除的片段数
+     */
+    record Change(int added, int removed) {
+
+        Change plus(Change other) {
+            return new Change(added + other.added, removed + other.removed);
+        }
+    }
+
+    /**
+     * 清单中的一个文件
+     *
+     * @param hash 文件内容哈希
+     * @param chunkIds 文件切分出的片段 id
+     */
+    private record FileState(String hash, Set<String> chunkIds) {
+    }
+
+    private final List<Path> roots;
+
+    /**
+     * 读取并切分单个文件，片段以内容哈希为 id
+     */
+    private final Function<Path, List<Document>> chunker;
+
+    private final Indexer indexer;
+
+    private final Duration debounce;
+
+    private final Map<Path, FileState> manifest = new HashMap<>();
+
+    /**
+     * 每个片段 id 被多少个文件引用，不同文件切出相同片段时只在最后一个引用消失时删除
+     */
+    private final Map<String, Integer> references = new HashMap<>();
+
+    private WatchService watchService;
+
+    /**
+     * @param roots 监听的目录，递归包含子目录
+     * @param debounce 合并事件的等待时间
+     */
+    DocumentWatcher(List<Path> roots, Function<Path, List<Document>> chunker, Indexer indexer, Duration debounce) {
+        this.roots = roots.stream().map(root -> root.toAbsolutePath().normalize()).toList();
+        this.chunker = chunker;
+        this.indexer = indexer;
+        this.debounce = debounce;
+    }
+
+    /**
+     * 为已导入知识库的文件建立清单，不写入知识库
+     */
+    synchronized void index() {
+        for (Path file : files()) {
+            List<Document> chunks = chunker.apply(file);
+            record(file, hash(file), ids(chunks));
+        }
+        log.info("知识库文档清单已建立，共 {} 个文件", manifest.size());
+    }
+
+    /**
+     * 与磁盘上的全部文件比对并更新知识库
+     */
+    synchronized Change rescan() {
+        Change change = new Change(0, 0);
+        Set<Path> existing = new LinkedHashSet<>(files());
+        for (Path file : new ArrayList<>(manifest.keySet())) {
+            if (!existing.contains(file)) {
+                change = change.plus(refresh(file));
+            }
+        }
+        for (Path file : existing) {
+            change = change.plus(refresh(file));
+        }
+        return change;
+    }
+
+    /**
+     * 按一个路径（文件或目录）的当前状态更新知识库
+     */
+    synchronized Change refresh(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        if (Files.isDirectory(normalized)) {
+            Change change = new Change(0, 0);
+            for (Path file : new ArrayList<>(manifest.keySet())) {
+                if (file.startsWith(normalized) && !Files.isRegularFile(file)) {
+                    change = change.plus(refreshFile(file));
+                }
+            }
+            for (Path file : files(normalized)) {
+                change = change.plus(refreshFile(file));
+            }
+            return change;
+        }
+        if (Files.exists(normalized) || manifest.containsKey(normalized)) {
+            return refreshFile(normalized);
+        }
+        // 删除的目录：移除清单中该目录下的全部文件
+        Change change = new Change(0, 0);
+        for (Path file : new ArrayList<>(manifest.keySet())) {
+            if (file.startsWith(normalized)) {
+                change = change.plus(refreshFile(file));
+            }
+        }
+        return change;
+    }
+
+    private Change refreshFile(Path file) {
+        FileState previous = manifest.get(file);
+        Set<String> previousIds = previous == null ? Set.of() : previous.chunkIds();
+        if (!Files.isRegularFile(file) || !supported(file)) {
+            if (previous == null) {
+                return new Change(0, 0);
+            }
+            List<String> removed = release(previousIds);
+            indexer.update(List.of(), removed);
+            manifest.remove(file);
+            log.info("知识库文档已删除: {}，删除 {} 个片段", file, removed.size());
+            return new Change(0, removed.size());
+        }
+        String hash = hash(file);
+        if (previous != null && previous.hash().equals(hash)) {
+            return new Change(0, 0);
+        }
+        List<Document> chunks = chunker.apply(file);
+        Set<String> ids = ids(chunks);
+        List<Document> added = chunks.stream()
+                .filter(chunk -> !previousIds.contains(chunk.getId()) && !references.containsKey(chunk.getId()))
+                .toList();
+        List<String> removed = previousIds.stream()
+                .filter(id -> !ids.contains(id) && references.getOrDefault(id, 0) <= 1)
+                .toList();
+        indexer.update(added, removed);
+        if (previous != null) {
+            release(previousIds);
+        }
+        record(file, hash, ids);
+        log.info("知识库文档已更新: {}，写入 {} 个片段，删除 {} 个片段", file, added.size(), removed.size());
+        return new Change(added.size(), removed.size());
+    }
+
+    private void record(Path file, String hash, Set<String> ids) {
+        manifest.put(file, new FileState(hash, ids));
+        ids.forEach(id -> references.merge(id, 1, Integer::sum));
+    }
+
+    /**
+     * 释放文件对片段的引用，返回不再被任何文件引用的片段 id
+     */
+    private List<String> release(Set<String> ids) {
+        List<String> released = new ArrayList<>();
+        for (String id : ids) {
+            if (references.merge(id, -1, Integer::sum) <= 0) {
+                references.remove(id);
+                released.add(id);
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 注册目录监听，此后的文件变化都会排队等待 {@link #start()} 后处理。
+     * 应在建立清单和导入文件之前调用，导入期间修改的文件不会遗漏
+     */
+    synchronized void open() {
+        if (watchService != null) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path root : roots) {
+                register(root);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("知识库文档目录监听失败: " + roots, e);
+        }
+    }
+
+    /**
+     * 开始在后台线程处理监听到的文件变化，未注册监听时先注册
+     */
+    void start() {
+        open();
+        Thread worker = new Thread(this::watch, "knowledge-base-watcher");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("开始监听知识库文档目录: {}", roots);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("知识库文档目录监听关闭失败", e);
+            }
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = poll(watchService.take(), changed);
+                // 合并短时间内的后续事件
+                WatchKey key;
+                while ((key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= poll(key, changed);
+                }
+                try {
+                    if (overflow) {
+                        rescan();
+                    } else {
+                        changed.forEach(this::refresh);
+                    }
+                } catch (RuntimeException e) {
+                    // 清单只在写入成功后更新，下一次事件或全量比对时会重试
+                    log.error("知识库增量更新失败: {}", changed, e);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            log.info("知识库文档目录监听已停止");
+        }
+    }
+
+    /**
+     * 取出一个目录的事件，新建的子目录同时加入监听；返回是否有事件丢失
+     */
+    private boolean poll(WatchKey key, Set<Path> changed) {
+        boolean overflow = false;
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            changed.add(path);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    register(path);
+                } catch (IOException e) {
+                    log.warn("子目录监听失败: {}", path, e);
+                }
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    private void register(Path directory) throws IOException {
+        try (Stream<Path> directories = Files.walk(directory)) {
+            for (Path path : directories.filter(Files::isDirectory).toList()) {
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+    }
+
+    private List<Path> files() {
+        List<Path> files = new ArrayList<>();
+        roots.forEach(root -> files.addAll(files(root)));
+        return files;
+    }
+
+    private static List<Path> files(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).filter(DocumentWatcher::supported)
+                    .map(path -> path.toAbsolutePath().normalize()).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("知识库文档目录读取失败: " + directory, e);
+        }
+    }
+
+    private static boolean supported(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".md") || name.endsWith(".txt");
+    }
+
+    private static String hash(Path file) {
+        try {
+            return DigestUtil.sha256Hex(Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("知识库文档读取失败: " + file, e);
+        }
+    }
+
+    private static Set<String> ids(List<Document> chunks) {
+        Set<String> ids = new LinkedHashSet<>();
+        chunks.forEach(chunk -> ids.add(chunk.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,69 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 向量缓存配置：知识库导入、增量更新、检索和会话记忆都通过 cachingEmbeddingModel 计算向量，
+ * 相同文本只调用一次 DashScope 嵌入接口；未命中缓存的少量文本再经合批后调用。
+ * 合批模型随 Bean 销毁关闭：直接作为 Bean 时由 Spring 调用 close，被缓存包装时由缓存的 close 一并关闭
+ */
+@Configuration
+class EmbeddingCacheConfig {
+
+    @Value("${lisp.rag.embedding-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${lisp.rag.embedding-cache.memory-size:10000}")
+    private int memorySize;
+
+    @Value("${lisp.rag.embedding-cache.path:${user.dir}/tmp/embedding-cache}")
+    private String path;
+
+    @Value("${lisp.rag.embedding-batch.enabled:true}")
+    private boolean batchEnabled;
+
+    /**
+     * DashScope 单次最多 25 条
+     */
+    @Value("${lisp.rag.embedding-batch.max-size:16}")
+    private int batchMaxSize;
+
+    @Value("${lisp.rag.embedding-batch.max-delay-millis:5}")
+    private long batchMaxDelayMillis;
+
+    @Value("${lisp.rag.embedding-batch.timeout-millis:30000}")
+    private long batchTimeoutMillis;
+
+    @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v1}")
+    private String model;
+
+    /**
+     * 未显式配置维度时使用模型的默认维度
+     */
+    @Value("${spring.ai.dashscope.embedding.options.dimensions:default}")
+    private String dimensions;
+
+    @Bean
+    @Primary
+    EmbeddingModel cachingEmbeddingModel(@Qualifier("dashscopeEmbeddingModel") EmbeddingModel dashscopeEmbeddingModel,
+                                         MeterRegistry meterRegistry) {
+        EmbeddingModel embeddingModel = batchEnabled
+                ? new MicroBatchingEmbeddingModel(dashscopeEmbeddingModel, batchMaxSize, Duration.ofMillis(batchMaxDelayMillis),
+                Duration.ofMillis(batchTimeoutMillis), meterRegistry)
+                : dashscopeEmbeddingModel;
+        if (!enabled) {
+            return embeddingModel;
+        }
+        return new CachingEmbeddingModel(embeddingModel, model + "-" + dimensions, Path.of(path), memorySize,
+                meterRegistry);
+    }
+}
@@ -0,0 +1,156 @@
+package com.lisp.lispaiagent.rag;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 向量库快照：把补充过元信息、计算过向量的文档片段持久化到一个带版本的二进制文件中，
+ * 启动时通过内存映射读取，内容未变化的片段无需再调用大模型补充关键词和嵌入模型计算向量。
+ *
+ * 文件格式（大端）：魔数 LSNP、格式版本、配置指纹、条目数，
+ * 之后每个条目依次为 id（内容哈希）、文本、元信息 JSON、向量维度和向量。
+ * 配置指纹包含嵌入模型和处理流程的配置，指纹或版本不一致时整个快照作废。
+ */
+@Slf4j
+class EmbeddingSnapshot {
+
+    private static final int MAGIC = 0x4C534E50;
+
+    private static final int VERSION = 1;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private EmbeddingSnapshot() {
+    }
+
+    /**
+     * 快照中的一个文档片段
+     *
+     * @param id 片段原始内容的哈希
+     * @param text 片段文本
+     * @param metadata 补充后的元信息
+     * @param embedding 向量
+     */
+    record Entry(String id, String text, Map<String, Object> metadata, float[] embedding) {
+
+        Document toDocument() {
+            return Document.builder().id(id).text(text).metadata(metadata).build();
+        }
+    }
+
+    /**
+     * 计算片段原始内容（文本和加载时的元信息）的哈希，作为稳定的文档 id
+     */
+    static String contentHash(Document document) {
+        StringBuilder content = new StringBuilder(document.getText() == null ? "" : document.getText());
+        new TreeMap<>(document.getMetadata()).forEach((key, value) ->
+                content.append('\u0000').append(key).append('=').append(value));
+        return DigestUtil.sha256Hex(content.toString());
+    }
+
+    /**
+     * 读取快照，文件不存在、损坏、版本或指纹不一致时返回空表
+     *
+     * @param path 快照文件
+     * @param fingerprint 当前的配置指纹
+     * @return id 到条目的映射
+     */
+    static Map<String, Entry> load(Path path, String fingerprint) {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        if (!Files.isRegularFile(path)) {
+            return entries;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.info("向量库快照格式不兼容，将重新构建: {}", path);
+                return entries;
+            }
+            if (!fingerprint.equals(readString(buffer))) {
+                log.info("向量库快照配置已变化，将重新构建: {}", path);
+                return entries;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String id = readString(buffer);
+                String text = readString(buffer);
+                Map<String, Object> metadata = OBJECT_MAPPER.readValue(readString(buffer), METADATA_TYPE);
+                float[] embedding = new float[buffer.getInt()];
+                buffer.asFloatBuffer().get(embedding);
+                buffer.position(buffer.position() + embedding.length * Float.BYTES);
+                entries.put(id, new Entry(id, text, metadata, embedding));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("向量库快照读取失败，将重新构建: {}", path, e);
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * 写入快照，先写临时文件再原子替换，避免中途失败留下残缺文件
+     *
+     * @param path 快照文件
+     * @param fingerprint 当前的配置指纹
+     * @param entries 全部条目
+     */
+    static void write(Path path, String fingerprint, Collection<Entry> entries) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, fingerprint);
+                output.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    writeString(output, entry.id());
+                    writeString(output, entry.text());
+                    writeString(output, OBJECT_MAPPER.writeValueAsString(entry.metadata()));
+                    output.writeInt(entry.embedding().length);
+                    for (float value : entry.embedding()) {
+                        output.writeFloat(value);
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -0,0 +1,101 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲检索：主检索器（云知识库）在延迟预算内没有返回时，同时向备用检索器（本地知识库）发起检索，
+ * 先成功返回的结果胜出；主检索器在预算内失败时立即改用备用检索器。
+ * 备用检索胜出后主检索不被中断，仍在后台完成，使外层缓存能写入主检索的结果。
+ * 发起备用检索后最多再等待 timeout，仍无结果时检索失败。
+ */
+@Slf4j
+class HedgedDocumentRetriever implements DocumentRetriever, AutoCloseable {
+
+    private final DocumentRetriever primary;
+
+    private final DocumentRetriever fallback;
+
+    private final Duration delay;
+
+    private final Duration timeout;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param delay 主检索的延迟预算，超过后发起备用检索
+     * @param timeout 发起备用检索后等待结果的上限
+     */
+    HedgedDocumentRetriever(DocumentRetriever primary, DocumentRetriever fallback, Duration delay, Duration timeout) {
+        this.primary = primary;
+        this.fallback = fallback;
+        this.delay = delay;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        CompletableFuture<List<Document>> first = CompletableFuture.supplyAsync(() -> primary.retrieve(query), executor);
+        try {
+            try {
+                return first.get(delay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                log.warn("云知识库检索失败，改用本地知识库: {}", e.getCause().toString());
+                return fallback.retrieve(query);
+            } catch (TimeoutException e) {
+                log.info("云知识库检索超过 {}ms 未返回，同时检索本地知识库", delay.toMillis());
+            }
+            CompletableFuture<List<Document>> hedge = CompletableFuture.supplyAsync(() -> fallback.retrieve(query), executor);
+            try {
+                return firstSuccess(List.of(first, hedge)).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("知识库检索超过 " + (delay.toMillis() + timeout.toMillis()) + "ms 未返回", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("知识库检索被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 停止执行检索的虚拟线程，仍在进行的检索被中断
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 先成功的结果；全部失败时以最后一个异常结束
+     */
+    private static CompletableFuture<List<Document>> firstSuccess(List<CompletableFuture<List<Document>>> futures) {
+        CompletableFuture<List<Document>> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(futures.size());
+        futures.forEach(future -> future.whenComplete((documents, error) -> {
+            if (error == null) {
+                winner.complete(documents);
+            } else if (pending.decrementAndGet() == 0) {
+                winner.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            }
+        }));
+        return winner;
+    }
+}
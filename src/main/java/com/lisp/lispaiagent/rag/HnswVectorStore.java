@@ -0,0 +1,640 @@
+package com.lisp.lispaiagent.rag;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 基于 HNSW 图的进程内近似最近邻向量库，检索复杂度约为 O(log n)，替代 SimpleVectorStore 的逐条扫描。
+ * 相似度为余弦相似度（向量写入时归一化后取点积），与 SimpleVectorStore 的得分一致。
+ *
+ * 可调参数：m 为每层每个节点的最大邻居数（第 0 层为 2m），efConstruction 为构图时的候选集大小，
+ * efSearch 为检索时的候选集大小，越大召回越高、延迟越高。
+ * 删除只做标记，被删除的节点仍参与图的导航但不出现在结果中，删除过半时整体重建。
+ * 过滤检索在第 0 层遍历时只收集满足条件的节点，过滤条件越严格遍历的节点越多。
+ *
+ * 向量保存在堆外的 {@link VectorStorage} 中，槽位与节点下标一致。启用 int8 / float16 量化时，
+ * 图的构建和遍历使用量化后的相似度，最终对前 topK * {@value #RESCORE_FACTOR} 个候选用全精度向量重新打分。
+ */
+@Slf4j
+class HnswVectorStore implements VectorStore {
+
+    private static final int MAGIC = 0x4C484E57;
+
+    private static final int VERSION = 2;
+
+    /**
+     * 量化时参与全精度重新打分的候选数相对 topK 的倍数
+     */
+    static final int RESCORE_FACTOR = 4;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final EmbeddingModel embeddingModel;
+
+    private final int m;
+
+    private final int efConstruction;
+
+    private final int efSearch;
+
+    private final Path storageDirectory;
+
+    private final VectorStorage.Encoding encoding;
+
+    /**
+     * 堆外向量，写入第一个向量时按其维度创建
+     */
+    private VectorStorage storage;
+
+    /**
+     * 层数分布参数 1 / ln(m)
+     */
+    private final double levelMultiplier;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    /**
+     * 文档 id 到未删除节点下标的映射
+     */
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    private int deletedCount;
+
+    /**
+     * 图中的一个节点
+     */
+    private static final class Node {
+
+        private final Document document;
+
+        /**
+         * 每层的邻居下标，有效长度见 sizes
+         */
+        private final int[][] neighbors;
+
+        private final int[] sizes;
+
+        private boolean deleted;
+
+        private Node(Document document, int level, int m) {
+            this.document = document;
+            this.neighbors = new int[level + 1][];
+            for (int layer = 0; layer <= level; layer++) {
+                // 预留一个位置，超出上限时先加入再裁剪
+                neighbors[layer] = new int[(layer == 0 ? 2 * m : m) + 1];
+            }
+            this.sizes = new int[level + 1];
+        }
+
+        private int level() {
+            return neighbors.length - 1;
+        }
+    }
+
+    /**
+     * 检索过程中的候选节点
+     */
+    private record Candidate(int node, float similarity) {
+    }
+
+    private static final Comparator<Candidate> NEAREST_FIRST =
+            Comparator.comparingDouble((Candidate candidate) -> candidate.similarity).reversed();
+
+    private static final Comparator<Candidate> FARTHEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity);
+
+    HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch) {
+        this(embeddingModel, m, efConstruction, efSearch,
+                Path.of(System.getProperty("java.io.tmpdir"), "lisp-hnsw"), VectorStorage.Encoding.FLOAT32);
+    }
+
+    /**
+     * @param storageDirectory 堆外向量映射文件所在目录
+     * @param encoding 图构建和检索使用的向量编码
+     */
+    HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch,
+                    Path storageDirectory, VectorStorage.Encoding encoding) {
+        if (m < 2 || efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException("HNSW 参数不合法: m=" + m + ", efConstruction=" + efConstruction
+                    + ", efSearch=" + efSearch);
+        }
+        this.embeddingModel = embeddingModel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.storageDirectory = storageDirectory;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public String getName() {
+        return HnswVectorStore.class.getSimpleName();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        // 计算向量不持有锁，避免阻塞检索
+        List<float[]> vectors = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            vectors.add(normalize(embeddingModel.embed(document)));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                markDeleted(document.getId());
+                insert(Document.builder().id(document.getId()).text(document.getText())
+                        .metadata(new HashMap<>(document.getMetadata())).build(), vectors.get(i));
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            idList.forEach(this::markDeleted);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        lock.writeLock().lock();
+        try {
+            List<String> ids = index.keySet().stream()
+                    .filter(id -> MetadataFilter.matches(filterExpression, nodes.get(index.get(id)).document.getMetadata()))
+                    .toList();
+            ids.forEach(this::markDeleted);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        Filter.Expression filter = request.getFilterExpression();
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            IntPredicate accept = node -> !nodes.get(node).deleted
+                    && MetadataFilter.matches(filter, nodes.get(node).document.getMetadata());
+            List<Candidate> candidates = search(query, request.getTopK(), Math.max(efSearch, request.getTopK()), accept);
+            if (encoding != VectorStorage.Encoding.FLOAT32) {
+                candidates = rescore(query, candidates, request.getTopK());
+            }
+            List<Document> results = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                if (candidate.similarity < request.getSimilarityThreshold()) {
+                    break;
+                }
+                Document document = nodes.get(candidate.node).document;
+                results.add(Document.builder().id(document.getId()).text(document.getText())
+                        .metadata(new HashMap<>(document.getMetadata())).score((double) candidate.similarity).build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 未删除的文档数
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 堆外存储中检索时常驻的字节数
+     */
+    long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return storage == null ? 0 : storage.searchBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检索与查询向量最相近的满足条件的节点，按相似度降序；
+     * 量化时多保留一些候选供重新打分
+     */
+    private List<Candidate> search(float[] query, int k, int ef, IntPredicate accept) {
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedyClosest(query, current, layer);
+        }
+        List<Candidate> results = searchLayer(query, List.of(current), ef, 0, accept);
+        int limit = encoding == VectorStorage.Encoding.FLOAT32 ? k : k * RESCORE_FACTOR;
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    /**
+     * 用全精度向量重新计算候选的相似度并取前 k 个
+     */
+    private List<Candidate> rescore(float[] query, List<Candidate> candidates, int k) {
+        List<Candidate> rescored = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            rescored.add(new Candidate(candidate.node, storage.exact(query, candidate.node)));
+        }
+        rescored.sort(NEAREST_FIRST);
+        return rescored.size() > k ? rescored.subList(0, k) : rescored;
+    }
+
+    /**
+     * 在上层贪心地移动到与查询最相近的节点
+     */
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = storage.approximate(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Node node = nodes.get(current);
+            for (int i = 0; i < node.sizes[layer]; i++) {
+                int neighbor = node.neighbors[layer][i];
+                float similarity = storage.approximate(query, neighbor);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层做束搜索，所有节点都参与导航，只有 accept 通过的节点进入结果
+     *
+     * @return 至多 ef 个结果，按相似度降序
+     */
+    private List<Candidate> searchLayer(float[] query, List<Integer> entryPoints, int ef, int layer, IntPredicate accept) {
+        boolean[] visited = new boolean[nodes.size()];
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FARTHEST_FIRST);
+        for (int entry : entryPoints) {
+            visited[entry] = true;
+            Candidate candidate = new Candidate(entry, storage.approximate(query, entry));
+            candidates.add(candidate);
+            if (accept.test(entry)) {
+                results.add(candidate);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity < results.peek().similarity) {
+                break;
+            }
+            Node node = nodes.get(closest.node);
+            for (int i = 0; i < node.sizes[layer]; i++) {
+                int neighbor = node.neighbors[layer][i];
+                if (visited[neighbor]) {
+                    continue;
+                }
+                visited[neighbor] = true;
+                float similarity = storage.approximate(query, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    candidates.add(candidate);
+                    if (accept.test(neighbor)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    private void insert(Document document, float[] vector) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        Node node = new Node(document, level, m);
+        if (storage == null) {
+            storage = new VectorStorage(storageDirectory, vector.length, encoding);
+        }
+        int id = storage.add(vector);
+        nodes.add(node);
+        index.put(document.getId(), id);
+        if (entryPoint < 0) {
+            entryPoint = id;
+            maxLevel = level;
+            return;
+        }
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(vector, current, layer);
+        }
+        List<Integer> entryPoints = List.of(current);
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Candidate> candidates = searchLayer(vector, entryPoints, efConstruction, layer, candidate -> true);
+            List<Candidate> selected = selectNeighbors(candidates, m);
+            for (Candidate neighbor : selected) {
+                node.neighbors[layer][node.sizes[layer]++] = neighbor.node;
+                connect(neighbor.node, id, layer);
+            }
+            entryPoints = candidates.stream().map(Candidate::node).toList();
+        }
+        if (level > maxLevel) {
+            entryPoint = id;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * 为已有节点增加一条反向边，超过上限时按启发式重新挑选邻居
+     */
+    private void connect(int from, int to, int layer) {
+        Node node = nodes.get(from);
+        int limit = layer == 0 ? 2 * m : m;
+        node.neighbors[layer][node.sizes[layer]++] = to;
+        if (node.sizes[layer] <= limit) {
+            return;
+        }
+        float[] vector = storage.get(from);
+        List<Candidate> candidates = new ArrayList<>(node.sizes[layer]);
+        for (int i = 0; i < node.sizes[layer]; i++) {
+            int neighbor = node.neighbors[layer][i];
+            candidates.add(new Candidate(neighbor, storage.approximate(vector, neighbor)));
+        }
+        candidates.sort(NEAREST_FIRST);
+        List<Candidate> selected = selectNeighbors(candidates, limit);
+        node.sizes[layer] = selected.size();
+        for (int i = 0; i < selected.size(); i++) {
+            node.neighbors[layer][i] = selected.get(i).node;
+        }
+    }
+
+    /**
+     * 启发式挑选邻居：候选按相似度降序，只保留比已选邻居更靠近自己的候选，使邻居分布在不同方向；
+     * 不足上限时再用被跳过的候选补齐
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> candidates, int limit) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            float[] vector = storage.get(candidate.node);
+            boolean diverse = selected.stream()
+                    .noneMatch(chosen -> storage.approximate(vector, chosen.node) > candidate.similarity);
+            (diverse ? selected : skipped).add(candidate);
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void markDeleted(String id) {
+        Integer node = index.remove(id);
+        if (node != null) {
+            nodes.get(node).deleted = true;
+            deletedCount++;
+        }
+    }
+
+    /**
+     * 删除的节点过半时用剩余节点重建图
+     */
+    private void compactIfNeeded() {
+        if (deletedCount * 2 <= nodes.size()) {
+            return;
+        }
+        List<Document> documents = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (!nodes.get(i).deleted) {
+                documents.add(nodes.get(i).document);
+                vectors.add(storage.get(i));
+            }
+        }
+        log.info("HNSW 图中已删除 {} 个节点，使用剩余 {} 个节点重建", deletedCount, documents.size());
+        clear();
+        for (int i = 0; i < documents.size(); i++) {
+            insert(documents.get(i), vectors.get(i));
+        }
+    }
+
+    /**
+     * 清空图，堆外存储保留复用，避免重建时不断新建映射
+     */
+    private void clear() {
+        if (storage != null) {
+            storage.reset();
+        }
+        nodes.clear();
+        index.clear();
+        entryPoint = -1;
+        maxLevel = -1;
+        deletedCount = 0;
+    }
+
+    /**
+     * 将图（含节点、邻居关系和删除标记）写入文件，先写临时文件再原子替换
+     *
+     * @param fingerprint 图内容对应的配置指纹，加载时不一致则作废
+     */
+    void save(Path path, String fingerprint) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        lock.readLock().lock();
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, fingerprint);
+                output.writeInt(m);
+                output.writeInt(nodes.size());
+                output.writeInt(entryPoint);
+                output.writeInt(maxLevel);
+                for (int n = 0; n < nodes.size(); n++) {
+                    Node node = nodes.get(n);
+                    float[] vector = storage.get(n);
+                    output.writeBoolean(node.deleted);
+                    writeString(output, node.document.getId());
+                    writeString(output, node.document.getText());
+                    writeString(output, OBJECT_MAPPER.writeValueAsString(node.document.getMetadata()));
+                    output.writeInt(vector.length);
+                    for (float value : vector) {
+                        output.writeFloat(value);
+                    }
+                    output.writeInt(node.level());
+                    for (int layer = 0; layer <= node.level(); layer++) {
+                        output.writeInt(node.sizes[layer]);
+                        for (int i = 0; i < node.sizes[layer]; i++) {
+                            output.writeInt(node.neighbors[layer][i]);
+                        }
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 从文件恢复图，替换当前内容
+     *
+     * @return 文件不存在、格式不兼容、指纹或 m 与当前配置不一致时返回 false，当前内容不变
+     */
+    boolean load(Path path, String fingerprint) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        List<Node> loaded = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        int loadedEntryPoint;
+        int loadedMaxLevel;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION
+                    || !readString(input).equals(fingerprint) || input.readInt() != m) {
+                log.info("HNSW 索引文件与当前配置不兼容: {}", path);
+                return false;
+            }
+            int count = input.readInt();
+            loadedEntryPoint = input.readInt();
+            loadedMaxLevel = input.readInt();
+            for (int n = 0; n < count; n++) {
+                boolean deleted = input.readBoolean();
+                String id = readString(input);
+                String text = readString(input);
+                Map<String, Object> metadata = OBJECT_MAPPER.readValue(readString(input), METADATA_TYPE);
+                float[] vector = new float[input.readInt()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = input.readFloat();
+                }
+                Node node = new Node(Document.builder().id(id).text(text).metadata(metadata).build(),
+                        input.readInt(), m);
+                vectors.add(vector);
+                node.deleted = deleted;
+                for (int layer = 0; layer <= node.level(); layer++) {
+                    node.sizes[layer] = input.readInt();
+                    for (int i = 0; i < node.sizes[layer]; i++) {
+                        node.neighbors[layer][i] = input.readInt();
+                    }
+                }
+                loaded.add(node);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("HNSW 索引文件读取失败: {}", path, e);
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            if (storage != null && !vectors.isEmpty() && storage.dimensions() != vectors.get(0).length) {
+                // 维度变化时只能换用新的存储，旧存储的映射在缓冲区被回收后释放
+                storage.close();
+                storage = null;
+            }
+            nodes.addAll(loaded);
+            for (int i = 0; i < loaded.size(); i++) {
+                if (storage == null) {
+                    storage = new VectorStorage(storageDirectory, vectors.get(i).length, encoding);
+                }
+                storage.add(vectors.get(i));
+                if (loaded.get(i).deleted) {
+                    deletedCount++;
+                } else {
+                    index.put(loaded.get(i).document.getId(), i);
+                }
+            }
+            entryPoint = loadedEntryPoint;
+            maxLevel = loadedMaxLevel;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = Arrays.copyOf(vector, vector.length);
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < normalized.length; i++) {
+                normalized[i] *= scale;
+            }
+        }
+        return normalized;
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
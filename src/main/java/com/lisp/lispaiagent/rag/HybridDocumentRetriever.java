@@ -0,0 +1,129 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 混合检索：分别取向量检索和 BM25 关键词检索的候选，用倒数排名融合（RRF）合并排序。
+ * 融合只看名次不看原始得分，两路得分量纲不同也无需归一化；返回文档的 score 为融合得分。
+ * 元信息过滤条件由 filterResolver 按查询给出（默认取查询上下文中的 {@link #FILTER_EXPRESSION}），同时作用于两路检索。
+ */
+class HybridDocumentRetriever implements DocumentRetriever {
+
+    /**
+     * 查询上下文中的元信息过滤条件，值为 Filter.Expression 或过滤表达式文本
+     */
+    static final String FILTER_EXPRESSION = "lisp_filter_expression";
+
+    private final VectorStore vectorStore;
+
+    private final Bm25Index keywordIndex;
+
+    private final int topK;
+
+    private final int candidates;
+
+    private final int rrfK;
+
+    private final double similarityThreshold;
+
+    private final Function<Query, Filter.Expression> filterResolver;
+
+    /**
+     * @param topK 融合后返回的文档数
+     * @param candidates 每一路检索取的候选数
+     * @param rrfK RRF 平滑常数，越大名次靠后的文档权重衰减越慢
+     * @param similarityThreshold 向量检索的相似度下限
+     */
+    HybridDocumentRetriever(VectorStore vectorStore, Bm25Index keywordIndex, int topK, int candidates, int rrfK,
+                            double similarityThreshold) {
+        this(vectorStore, keywordIndex, topK, candidates, rrfK, similarityThreshold, HybridDocumentRetriever::filterExpression);
+    }
+
+    /**
+     * @param filterResolver 按查询给出元信息过滤条件，返回 null 表示不过滤
+     */
+    HybridDocumentRetriever(VectorStore vectorStore, Bm25Index keywordIndex, int topK, int candidates, int rrfK,
+                            double similarityThreshold, Function<Query, Filter.Expression> filterResolver) {
+        this.vectorStore = vectorStore;
+        this.keywordIndex = keywordIndex;
+        this.topK = topK;
+        this.candidates = Math.max(topK, candidates);
+        this.rrfK = rrfK;
+        this.similarityThreshold = similarityThreshold;
+        this.filterResolver = filterResolver;
+    }
+
+    /**
+     * 参数相同、但始终使用给定过滤条件的检索器
+     */
+    HybridDocumentRetriever withFilter(Filter.Expression filter) {
+        return new HybridDocumentRetriever(vectorStore, keywordIndex, topK, candidates, rrfK, similarityThreshold,
+                query -> filter);
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        Filter.Expression filter = filterResolver.apply(query);
+        SearchRequest.Builder request = SearchRequest.builder()
+                .query(query.text())
+                .topK(candidates)
+                .similarityThreshold(similarityThreshold);
+        if (filter != null) {
+            request.filterExpression(filter);
+        }
+        List<Document> semantic = vectorStore.similaritySearch(request.build());
+        List<Document> lexical = keywordIndex.search(query.text(), candidates, filter);
+        return fuse(List.of(semantic, lexical), rrfK, topK);
+    }
+
+    /**
+     * 倒数排名融合：文档得分为其在各路结果中 1 / (rrfK + 名次) 之和，名次从 1 开始
+     */
+    static List<Document> fuse(List<List<Document>> rankings, int rrfK, int topK) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> documents = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                scores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+                documents.putIfAbsent(document.getId(), document);
+            }
+        }
+        List<String> ids = new ArrayList<>(documents.keySet());
+        ids.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        List<Document> fused = new ArrayList<>();
+        for (String id : ids.subList(0, Math.min(topK, ids.size()))) {
+            Document document = documents.get(id);
+            fused.add(Document.builder().id(id).text(document.getText())
+                    .metadata(new HashMap<>(document.getMetadata())).score(scores.get(id)).build());
+        }
+        return fused;
+    }
+
+    /**
+     * 查询上下文中的过滤条件
+     */
+    static Filter.Expression filterExpression(Query query) {
+        Object filter = query.context().get(FILTER_EXPRESSION);
+        if (filter instanceof Filter.Expression expression) {
+            return expression;
+        }
+        if (filter instanceof String text && !text.isBlank()) {
+            return new FilterExpressionTextParser().parse(text);
+        }
+        return null;
+    }
+}
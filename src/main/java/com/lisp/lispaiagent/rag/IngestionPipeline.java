@@ -0,0 +1,243 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.EmbeddingModel;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * 知识库导入流水线：关键词补充和向量计算都按批并行执行。
+ * 每个阶段可单独配置并发数和批大小，对模型服务的调用经过限流，
+ * 失败的批次按指数退避重试，处理进度通过 Micrometer 指标（lisp.rag.ingestion.*）和日志输出。
+ * 两个阶段都提供流式版本，供 {@link StreamingIngestion} 在有界内存中导入大规模语料。
+ */
+@Slf4j
+class IngestionPipeline {
+
+    /**
+     * 单个阶段（补充关键词或计算向量）的并发配置
+     *
+     * @param parallelism 同时进行的批次数
+     * @param batchSize 每批的片段数
+     * @param rateLimited 是否调用模型服务、需要限流
+     */
+    record StageOptions(int parallelism, int batchSize, boolean rateLimited) {
+
+        StageOptions(int parallelism, int batchSize) {
+            this(parallelism, batchSize, true);
+        }
+    }
+
+    /**
+     * 重试配置
+     *
+     * @param maxAttempts 每批最多尝试次数（含首次）
+     * @param initialBackoff 首次重试前的等待时间
+     * @param maxBackoff 重试等待的上限
+     */
+    record RetryOptions(int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+    }
+
+    /**
+     * 关键词补充函数，通常为 MyKeywordEnricher::enrichDocuments
+     */
+    private final UnaryOperator<List<Document>> enricher;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final StageOptions enrichOptions;
+
+    private final StageOptions embedOptions;
+
+    private final RetryOptions retryOptions;
+
+    private final RateLimiter rateLimiter;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param requestsPerSecond 对模型服务的总请求速率上限，小于等于 0 表示不限流
+     */
+    IngestionPipeline(UnaryOperator<List<Document>> enricher, EmbeddingModel embeddingModel, StageOptions enrichOptions,
+                      StageOptions embedOptions, RetryOptions retryOptions, double requestsPerSecond,
+                      MeterRegistry meterRegistry) {
+        this.enricher = enricher;
+        this.embeddingModel = embeddingModel;
+        this.enrichOptions = enrichOptions;
+        this.embedOptions = embedOptions;
+        this.retryOptions = retryOptions;
+        this.rateLimiter = new RateLimiter(requestsPerSecond);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 计算过向量的片段
+     */
+    record Embedded(Document document, float[] embedding) {
+    }
+
+    /**
+     * 为片段补充关键词元信息，返回顺序与输入一致
+     */
+    List<Document> enrich(List<Document> documents) {
+        return collect("enrich", documents.size(), enrich(Flux.fromIterable(documents), documents.size()));
+    }
+
+    /**
+     * 流式补充关键词，按下游需求逐批拉取，同时在途的批次不超过并发数
+     */
+    Flux<Document> enrich(Flux<Document> documents) {
+        return enrich(documents, -1);
+    }
+
+    private Flux<Document> enrich(Flux<Document> documents, int total) {
+        return stage("enrich", documents, total, enrichOptions, batch -> {
+            // 大模型补充关键词时每个片段单独调用一次
+            if (enrichOptions.rateLimited()) {
+                rateLimiter.acquire(batch.size());
+            }
+            return enricher.apply(batch);
+        });
+    }
+
+    /**
+     * 批量计算向量，嵌入文本与 DashScope 逐个嵌入时一致（包含元信息）
+     *
+     * @return 文档 id 到向量的映射
+     */
+    Map<String, float[]> embed(List<Document> documents) {
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        collect("embed", documents.size(), embed(Flux.fromIterable(documents), documents.size()))
+                .forEach(embedded -> vectors.put(embedded.document().getId(), embedded.embedding()));
+        return vectors;
+    }
+
+    /**
+     * 流式计算向量，按下游需求逐批拉取，同时在途的批次不超过并发数
+     */
+    Flux<Embedded> embed(Flux<Document> documents) {
+        return embed(documents, -1);
+    }
+
+    private Flux<Embedded> embed(Flux<Document> documents, int total) {
+        return stage("embed", documents, total, embedOptions, batch -> {
+            rateLimiter.acquire(1);
+            List<float[]> embeddings = embeddingModel.embed(batch.stream()
+                    .map(document -> document.getFormattedContent(MetadataMode.EMBED))
+                    .toList());
+            List<Embedded> embedded = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                embedded.add(new Embedded(batch.get(i), embeddings.get(i)));
+            }
+            return embedded;
+        });
+    }
+
+    private <T> List<T> collect(String stage, int total, Flux<T> results) {
+        if (total == 0) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<T> collected = results.collectList().block();
+        log.info("知识库导入 {} 完成，{} 个片段，耗时 {} ms", stage, total, (System.nanoTime() - start) / 1_000_000);
+        return collected;
+    }
+
+    /**
+     * 将输入按批并行处理，批内和批间的结果顺序都与输入一致。
+     * 每个并发槽位只预取一批，下游不再请求时上游也停止读取
+     *
+     * @param total 片段总数，未知时为 -1
+     */
+    private <T> Flux<T> stage(String stage, Flux<Document> documents, int total, StageOptions options,
+                              Function<List<Document>, List<T>> batchFunction) {
+        Counter processed = Counter.builder("lisp.rag.ingestion.documents")
+                .description("已处理的知识库片段数")
+                .tag("stage", stage)
+                .register(meterRegistry);
+        Counter retries = Counter.builder("lisp.rag.ingestion.retries")
+                .description("失败后重试的批次数")
+                .tag("stage", stage)
+                .register(meterRegistry);
+        Timer batchTimer = Timer.builder("lisp.rag.ingestion.batch")
+                .description("单批处理耗时")
+                .tag("stage", stage)
+                .register(meterRegistry);
+        AtomicInteger done = new AtomicInteger();
+        int parallelism = Math.max(1, options.parallelism());
+        return documents
+                .buffer(Math.max(1, options.batchSize()))
+                .flatMapSequential(batch -> Mono.fromCallable(() -> batchTimer.recordCallable(() -> batchFunction.apply(batch)))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .retryWhen(Retry.backoff(Math.max(0, retryOptions.maxAttempts() - 1), retryOptions.initialBackoff())
+                                .maxBackoff(retryOptions.maxBackoff())
+                                .doBeforeRetry(signal -> {
+                                    retries.increment();
+                                    log.warn("知识库导入 {} 批次失败，第 {} 次重试: {}", stage,
+                                            signal.totalRetries() + 1, signal.failure().toString());
+                                }))
+                        .doOnNext(result -> {
+                            processed.increment(batch.size());
+                            int count = done.addAndGet(batch.size());
+                            if (total >= 0) {
+                                log.info("知识库导入 {} 进度 {}/{}", stage, count, total);
+                            } else {
+                                log.debug("知识库导入 {} 进度 {}", stage, count);
+                            }
+                        }), parallelism, 1)
+                .flatMapIterable(Function.identity(), 1);
+    }
+
+    /**
+     * 简单的平滑限流器：按固定间隔发放许可，获取不到时阻塞等待
+     */
+    static class RateLimiter {
+
+        /**
+         * 相邻许可的间隔，0 表示不限流
+         */
+        private final long intervalNanos;
+
+        private long nextFreeNanos = System.nanoTime();
+
+        RateLimiter(double permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? (long) (1_000_000_000L / permitsPerSecond) : 0;
+        }
+
+        void acquire(int permits) {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long grantedAt = Math.max(now, nextFreeNanos);
+                nextFreeNanos = grantedAt + intervalNanos * permits;
+                waitNanos = grantedAt - now;
+            }
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(Duration.ofNanos(waitNanos));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.lisp.lispaiagent.rag;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识库后台导入的状态，供就绪检查和检索等待使用
+ */
+class IngestionStatus {
+
+    enum State {
+        /**
+         * 尚未开始
+         */
+        PENDING,
+        /**
+         * 正在导入
+         */
+        RUNNING,
+        /**
+         * 导入完成，可以检索
+         */
+        READY,
+        /**
+         * 导入失败
+         */
+        FAILED
+    }
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile State state = State.PENDING;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    private volatile int documentCount;
+
+    private volatile String error;
+
+    void start() {
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void ready(int documentCount) {
+        this.documentCount = documentCount;
+        finish(State.READY);
+    }
+
+    void fail(Throwable e) {
+        this.error = String.valueOf(e);
+        finish(State.FAILED);
+    }
+
+    private void finish(State state) {
+        finishedAt = Instant.now();
+        this.state = state;
+        finished.countDown();
+    }
+
+    /**
+     * 等待导入结束（成功或失败）
+     *
+     * @param timeout 最长等待时间
+     * @return 等待结束时是否已就绪
+     */
+    boolean awaitReady(Duration timeout) {
+        if (state == State.READY) {
+            return true;
+        }
+        try {
+            finished.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return state == State.READY;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    Instant getStartedAt() {
+        return startedAt;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    int getDocumentCount() {
+        return documentCount;
+    }
+
+    String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,205 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * 本地关键词提取：不调用大模型，按 TF-IDF 从片段中选出关键词。
+ * 中文没有分词，以连续汉字的二元组和三元组作为候选词，英文和数字按单词切分；
+ * 含常见虚词的候选词直接丢弃，已选词的子串或包含已选词的候选词不再重复选入。
+ * 结果与 KeywordMetadataEnricher 一样以逗号分隔写入 excerpt_keywords 元信息。
+ */
+class LocalKeywordEnricher implements UnaryOperator<List<Document>> {
+
+    /**
+     * 与 KeywordMetadataEnricher 相同的元信息键
+     */
+    static final String EXCERPT_KEYWORDS_METADATA_KEY = "excerpt_keywords";
+
+    /**
+     * 虚词、代词等几乎不构成关键词的汉字
+     */
+    private static final String STOP_CHARS = "的了是在我你他她它们这那就都也和与或而及吗呢吧啊么什怎个之被把给着过很还要会能有没不一为以于所自己对方其等如可";
+
+    private final int keywordCount;
+
+    /**
+     * 统计结果，fit 时整体替换，读取方总能看到同一次统计的全部字段
+     *
+     * @param documentFrequency 语料中每个候选词出现的片段数
+     * @param corpusSize 语料片段数
+     * @param fragments 跨词拼接出的二元组，如“浪漫惊喜”中的“漫惊”
+     */
+    private record Statistics(Map<String, Integer> documentFrequency, int corpusSize, Set<String> fragments) {
+    }
+
+    /**
+     * 尚未统计时为 null
+     */
+    private volatile Statistics statistics;
+
+    LocalKeywordEnricher(int keywordCount) {
+        this.keywordCount = keywordCount;
+    }
+
+    /**
+     * 以整个知识库统计逆文档频率，应在 apply 之前调用；
+     * 未调用时以第一次 apply 的输入作为语料统计一次，之后不再重新统计
+     */
+    void fit(Collection<Document> corpus) {
+        Map<String, Integer> frequency = new HashMap<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        Map<String, Set<String>> leftContexts = new HashMap<>();
+        Map<String, Set<String>> rightContexts = new HashMap<>();
+        for (Document document : corpus) {
+            for (String term : new HashSet<>(terms(document.getText()))) {
+                frequency.merge(term, 1, Integer::sum);
+            }
+            String text = document.getText() == null ? "" : document.getText();
+            for (int i = 0; i + 2 <= text.length(); i++) {
+                String bigram = text.substring(i, i + 2);
+                if (!isHan(bigram) || !isHan(bigram.substring(1))) {
+                    continue;
+                }
+                occurrences.merge(bigram, 1, Integer::sum);
+                leftContexts.computeIfAbsent(bigram, key -> new HashSet<>())
+                        .add(i > 0 && isHan(text.substring(i - 1, i)) ? text.substring(i - 1, i + 1) : "");
+                rightContexts.computeIfAbsent(bigram, key -> new HashSet<>())
+                        .add(i + 3 <= text.length() && isHan(text.substring(i + 2, i + 3)) ? text.substring(i + 1, i + 3) : "");
+            }
+        }
+        // 只出现在唯一上下文中、且相邻二元组更常见的二元组视为拼接片段
+        Set<String> fragmentSet = new HashSet<>();
+        occurrences.forEach((bigram, count) -> {
+            Set<String> left = leftContexts.get(bigram);
+            Set<String> right = rightContexts.get(bigram);
+            if (left.size() == 1 && right.size() == 1) {
+                String leftBigram = left.iterator().next();
+                String rightBigram = right.iterator().next();
+                if (occurrences.getOrDefault(leftBigram, 0) > count || occurrences.getOrDefault(rightBigram, 0) > count) {
+                    fragmentSet.add(bigram);
+                }
+            }
+        });
+        this.statistics = new Statistics(frequency, corpus.size(), fragmentSet);
+    }
+
+    @Override
+    public List<Document> apply(List<Document> documents) {
+        if (statistics == null) {
+            synchronized (this) {
+                if (statistics == null) {
+                    fit(documents);
+                }
+            }
+        }
+        for (Document document : documents) {
+            document.getMetadata().put(EXCERPT_KEYWORDS_METADATA_KEY, String.join(", ", keywords(document.getText())));
+        }
+        return documents;
+    }
+
+    /**
+     * 提取得分最高的若干关键词
+     */
+    List<String> keywords(String text) {
+        Map<String, Integer> termFrequency = new HashMap<>();
+        for (String term : terms(text)) {
+            termFrequency.merge(term, 1, Integer::sum);
+        }
+        Statistics current = statistics != null ? statistics : new Statistics(Map.of(), 0, Set.of());
+        Map<String, Integer> df = current.documentFrequency();
+        Set<String> fragmentSet = current.fragments();
+        int n = current.corpusSize();
+        Map<String, Double> scores = new HashMap<>();
+        termFrequency.forEach((term, tf) -> {
+            // 三元组只出现一次时多半是跨词拼接的片段，不作为候选
+            if (term.length() == 3 && isHan(term) && tf < 2 || fragmentSet.contains(term)) {
+                return;
+            }
+            double idf = Math.log((n + 1.0) / (df.getOrDefault(term, 0) + 1.0)) + 1;
+            scores.put(term, tf * idf);
+        });
+        List<String> candidates = new ArrayList<>(scores.keySet());
+        candidates.sort(Comparator.comparingDouble((String term) -> -scores.get(term)).thenComparing(term -> term));
+        List<String> keywords = new ArrayList<>();
+        for (String candidate : candidates) {
+            if (keywords.size() >= keywordCount) {
+                break;
+            }
+            if (keywords.stream().noneMatch(keyword -> keyword.contains(candidate) || candidate.contains(keyword))) {
+                keywords.add(candidate);
+            }
+        }
+        return keywords;
+    }
+
+    /**
+     * 切分候选词：汉字二元组、三元组，以及长度不小于 2 的英文单词和数字
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder han = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+                han.append(c);
+            } else {
+                addHanTerms(han, terms);
+                han.setLength(0);
+            }
+            if (Character.isLetterOrDigit(c) && c < 0x80) {
+                word.append(Character.toLowerCase(c));
+            } else {
+                if (word.length() >= 2) {
+                    terms.add(word.toString());
+                }
+                word.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+    private static boolean isHan(String term) {
+        return Character.UnicodeScript.of(term.charAt(0)) == Character.UnicodeScript.HAN;
+    }
+
+    private static void addHanTerms(CharSequence run, List<String> terms) {
+        for (int size = 2; size <= 3; size++) {
+            for (int i = 0; i + size <= run.length(); i++) {
+                String term = run.subSequence(i, i + size).toString();
+                if (term.chars().noneMatch(c -> STOP_CHARS.indexOf(c) >= 0)) {
+                    terms.add(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * 解析逗号分隔的关键词，用于对比两种方式的提取结果
+     */
+    static Set<String> parse(Object keywords) {
+        Set<String> result = new HashSet<>();
+        if (keywords != null) {
+            for (String keyword : keywords.toString().split("[,，、]")) {
+                if (!keyword.isBlank()) {
+                    result.add(keyword.trim());
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -2,15 +2,23 @@ package com.lisp.lispaiagent.rag;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.reader.TextReader;
 import org.springframework.ai.reader.markdown.MarkdownDocumentReader;
 import org.springframework.ai.reader.markdown.config.MarkdownDocumentReaderConfig;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ResourceUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * LoveAppDocumentLoader 类负责加载 Markdown 文档，
@@ -46,23 +54,9 @@ public List<Document> loadMarkdowns() {
     try {
         // 获取 classpath 下指定目录中的所有资源
         Resource[] resources = resourcePatternResolver.getResources("classpath:document/*.md");
-        // 遍历每个资源，即每个 Markdown 文件
+        // 遍历每个资源，即每个 Markdown 文件，将解析后的 Document 对象添加到列表中
         for (Resource resource : resources) {
-            // 获取当前文件的文件名
-            String fileName = resource.getFilename();
-            // 提取文档倒数第 3 和第 2 个字作为标签
-            String status = fileName.substring(fileName.length() - 6, fileName.length() - 4);
-            MarkdownDocumentReaderConfig config = MarkdownDocumentReaderConfig.builder()
-                    .withHorizontalRuleCreateDocument(true)
-                    .withIncludeCodeBlock(false)
-                    .withIncludeBlockquote(false)
-                    .withAdditionalMetadata("filename", fileName)
-                    .withAdditionalMetadata("status", status)
-                    .build();
-            // 创建 MarkdownDocumentReader 对象，用于读取和解析 Markdown 文件
-            MarkdownDocumentReader reader = new MarkdownDocumentReader(resource, config);
-            // 将解析后的 Document 对象添加到列表中
-            allDocuments.addAll(reader.get());
+            allDocuments.addAll(read(resource));
         }
     } catch (IOException e) {
         // 如果发生 IO 异常，记录错误日志
@@ -72,4 +66,68 @@ public List<Document> loadMarkdowns() {
     return allDocuments;
 }
 
+    /**
+     * 流式加载任意位置的文档：逐个文件读取，下游处理不过来时暂停读取，内存占用与语料总量无关。
+     * 位置可以是资源模式（classpath:、file: 开头，可含通配符）、目录（递归读取其中的 .md 和 .txt 文件）或单个文件。
+     *
+     * @param locations 文档位置
+     * @param parallelism 同时读取的文件数
+     */
+    Flux<Document> stream(List<String> locations, int parallelism) {
+        return Flux.fromIterable(locations)
+                .concatMapIterable(this::resolve)
+                .flatMapSequential(resource -> Mono.fromCallable(() -> read(resource))
+                        .subscribeOn(Schedulers.boundedElastic()), Math.max(1, parallelism), 1)
+                .flatMapIterable(Function.identity(), 1);
+    }
+
+    /**
+     * 解析一个位置下的全部资源
+     */
+    private List<Resource> resolve(String location) {
+        List<String> patterns = new ArrayList<>();
+        if (location.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX) || location.startsWith("classpath*:")
+                || location.startsWith(ResourceUtils.FILE_URL_PREFIX)) {
+            patterns.add(location);
+        } else if (Files.isDirectory(Path.of(location))) {
+            String directory = Path.of(location).toAbsolutePath().toUri().toString();
+            patterns.add(directory + "**/*.md");
+            patterns.add(directory + "**/*.txt");
+        } else {
+            patterns.add(Path.of(location).toAbsolutePath().toUri().toString());
+        }
+        List<Resource> resources = new ArrayList<>();
+        for (String pattern : patterns) {
+            try {
+                resources.addAll(List.of(resourcePatternResolver.getResources(pattern)));
+            } catch (IOException e) {
+                log.error("文档位置解析失败: {}", pattern, e);
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * 读取单个文件：Markdown 按分隔线切分为多个文档，其他文件作为纯文本读取
+     */
+    List<Document> read(Resource resource) {
+        // 获取当前文件的文件名
+        String fileName = resource.getFilename();
+        if (fileName == null || !fileName.endsWith(".md")) {
+            TextReader reader = new TextReader(resource);
+            reader.getCustomMetadata().put("filename", fileName);
+            return reader.get();
+        }
+        MarkdownDocumentReaderConfig.Builder config = MarkdownDocumentReaderConfig.builder()
+                .withHorizontalRuleCreateDocument(true)
+                .withIncludeCodeBlock(false)
+                .withIncludeBlockquote(false)
+                .withAdditionalMetadata("filename", fileName);
+        // 知识库文件名形如“恋爱常见问题和回答 - 单身篇.md”，提取倒数第 3 和第 2 个字作为标签
+        if (fileName.endsWith("篇.md") && fileName.length() >= 6) {
+            config.withAdditionalMetadata("status", fileName.substring(fileName.length() - 6, fileName.length() - 4));
+        }
+        // 创建 MarkdownDocumentReader 对象，用于读取和解析 Markdown 文件
+        return new MarkdownDocumentReader(resource, config.build()).get();
+    }
 }
@@ -0,0 +1,333 @@
+package com.lisp.lispaiagent.rag;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * 恋爱知识库：加载 Markdown 文档、补充关键词、计算向量并写入向量库。
+ * 导入在应用启动完成后于后台线程执行，不阻塞普通对话接口的启动；
+ * 对外提供的向量库在导入完成前按超时等待，超时返回空结果。
+ * 处理结果保存为快照，重启时只重新处理内容发生变化的片段；使用 HNSW 向量库时图结构一并保存，未变化时直接加载。
+ * 配置了额外的文档位置时，内置文档导入后再以 {@link StreamingIngestion} 流式导入这些位置的语料（不写入快照）；
+ * 开启监听后，其中的目录由 {@link DocumentWatcher} 增量更新。
+ */
+@Component
+@Slf4j
+class LoveAppKnowledgeBase {
+
+    private final LoveAppDocumentLoader loveAppDocumentLoader;
+
+    private final MyKeywordEnricher myKeywordEnricher;
+
+    private final IngestionPipeline ingestionPipeline;
+
+    private final StreamingIngestion streamingIngestion;
+
+    /**
+     * 合并近似重复的片段
+     */
+    private final UnaryOperator<List<Document>> deduplicator;
+
+    /**
+     * 额外导入的文档位置
+     */
+    private final List<String> locations;
+
+    /**
+     * 是否监听文档目录并增量更新
+     */
+    @Value("${lisp.rag.watch.enabled:false}")
+    private boolean watchEnabled;
+
+    @Value("${lisp.rag.watch.debounce-millis:500}")
+    private long watchDebounceMillis;
+
+    /**
+     * 文档目录监听，未开启或没有可监听的目录时为 null
+     */
+    private volatile DocumentWatcher watcher;
+
+    /**
+     * 向量库快照文件
+     */
+    private final Path snapshotFile;
+
+    private final String embeddingModelName;
+
+    /**
+     * 嵌入维度，未显式配置时为 default（模型默认维度）
+     */
+    private final String embeddingDimensions;
+
+    private final MyTokenTextSplitter textSplitter;
+
+    private final PrecomputedEmbeddingModel embeddingModel;
+
+    /**
+     * 实际存放向量的向量库（SimpleVectorStore 或 HnswVectorStore）
+     */
+    private final VectorStore store;
+
+    private final IngestionStatus status = new IngestionStatus();
+
+    /**
+     * 与向量库内容一致的 BM25 关键词索引
+     */
+    private final Bm25Index keywordIndex = new Bm25Index();
+
+    private final VectorStore vectorStore;
+
+    LoveAppKnowledgeBase(LoveAppDocumentLoader loveAppDocumentLoader,
+                         MyKeywordEnricher myKeywordEnricher,
+                         IngestionPipeline ingestionPipeline,
+                         StreamingIngestion streamingIngestion,
+                         MyTokenTextSplitter textSplitter,
+                         UnaryOperator<List<Document>> loveAppDocumentDeduplicator,
+                         @Value("${lisp.rag.ingestion.locations:}") List<String> locations,
+                         Function<EmbeddingModel, VectorStore> loveAppVectorStoreFactory,
+                         @Qualifier("cachingEmbeddingModel") EmbeddingModel cachingEmbeddingModel,
+                         @Value("${lisp.rag.snapshot.path:${user.dir}/tmp/vector-store/love-app.snapshot}") String snapshotPath,
+                         @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v1}") String embeddingModelName,
+                         @Value("${spring.ai.dashscope.embedding.options.dimensions:default}") String embeddingDimensions,
+                         @Value("${lisp.rag.ingestion.wait-timeout-millis:2000}") long waitTimeoutMillis) {
+        this.loveAppDocumentLoader = loveAppDocumentLoader;
+        this.myKeywordEnricher = myKeywordEnricher;
+        this.ingestionPipeline = ingestionPipeline;
+        this.streamingIngestion = streamingIngestion;
+        this.deduplicator = loveAppDocumentDeduplicator;
+        this.locations = locations.stream().map(String::strip).filter(location -> !location.isEmpty()).toList();
+        this.snapshotFile = Path.of(snapshotPath);
+        this.embeddingModelName = embeddingModelName;
+        this.embeddingDimensions = embeddingDimensions;
+        this.textSplitter = textSplitter;
+        this.embeddingModel = new PrecomputedEmbeddingModel(cachingEmbeddingModel);
+        this.store = loveAppVectorStoreFactory.apply(embeddingModel);
+        this.vectorStore = new ReadinessGatedVectorStore(store, status, Duration.ofMillis(waitTimeoutMillis));
+    }
+
+    /**
+     * 对外使用的向量库，导入完成前的检索会等待或返回空结果
+     */
+    VectorStore getVectorStore() {
+        return vectorStore;
+    }
+
+    /**
+     * 关键词索引，导入完成前为空
+     */
+    Bm25Index getKeywordIndex() {
+        return keywordIndex;
+    }
+
+    IngestionStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * 应用启动完成后在后台开始导入
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void startIngestion() {
+        Thread.ofVirtual().name("love-app-ingestion").start(() -> {
+            status.start();
+            try {
+                int count = ingest();
+                if (watcher != null) {
+                    watcher.start();
+                }
+                status.ready(count);
+                log.info("知识库导入完成，共 {} 个片段，耗时 {} ms", count,
+                        Duration.between(status.getStartedAt(), status.getFinishedAt()).toMillis());
+            } catch (RuntimeException e) {
+                status.fail(e);
+                log.error("知识库导入失败，检索增强将返回空结果", e);
+            }
+        });
+    }
+
+    /**
+     * 执行一次完整导入，返回写入向量库的片段数
+     */
+    int ingest() {
+        // 调用文档加载器方法，获取所有 Markdown 文件解析后的 Document 对象列表
+        List<Document> documents = loveAppDocumentLoader.loadMarkdowns();
+        // 近似重复的片段只保留一份，合并了其他文件的片段把来源文件名记录在 source_filenames 元信息中
+        documents = deduplicator.apply(documents);
+
+        // 读取快照，内容哈希未变化的片段直接复用其关键词和向量
+        String fingerprint = fingerprint();
+        Map<String, EmbeddingSnapshot.Entry> snapshot = EmbeddingSnapshot.load(snapshotFile, fingerprint);
+        Map<String, Document> allDocuments = new LinkedHashMap<>();
+        List<Document> changedDocuments = new ArrayList<>();
+        for (Document document : documents) {
+            String id = EmbeddingSnapshot.contentHash(document);
+            if (allDocuments.containsKey(id)) {
+                continue;
+            }
+            EmbeddingSnapshot.Entry entry = snapshot.get(id);
+            if (entry != null) {
+                allDocuments.put(id, entry.toDocument());
+                embeddingModel.put(id, entry.embedding());
+            } else {
+                Document changed = Document.builder().id(id).text(document.getText())
+                        .metadata(document.getMetadata()).build();
+                allDocuments.put(id, changed);
+                changedDocuments.add(changed);
+            }
+        }
+        log.info("知识库共 {} 个片段，快照命中 {} 个，需重新处理 {} 个",
+                allDocuments.size(), allDocuments.size() - changedDocuments.size(), changedDocuments.size());
+
+        // 无论快照是否全部命中，都以完整的内置知识库统计词频，之后的流式导入和增量更新共用这次统计
+        myKeywordEnricher.prepare(allDocuments.values());
+        if (!changedDocuments.isEmpty()) {
+            // 只为变化的片段并行补充关键词元信息、批量计算向量
+            changedDocuments = ingestionPipeline.enrich(changedDocuments);
+            changedDocuments.forEach(document -> allDocuments.put(document.getId(), document));
+            ingestionPipeline.embed(changedDocuments).forEach(embeddingModel::put);
+        }
+
+        // 将文档添加到 VectorStore 中，向量全部由快照或上面的批量计算提供；
+        // HNSW 图与快照一同保存，片段和配置都未变化时直接加载，省去重新构图
+        String graphFingerprint = fingerprint + ";documents=" + DigestUtil.sha256Hex(String.join(",", allDocuments.keySet()));
+        if (!(store instanceof HnswVectorStore hnsw && hnsw.load(graphFile(), graphFingerprint))) {
+            store.add(new ArrayList<>(allDocuments.values()));
+            if (store instanceof HnswVectorStore hnsw) {
+                try {
+                    hnsw.save(graphFile(), graphFingerprint);
+                    log.info("HNSW 图已保存: {}", graphFile());
+                } catch (IOException e) {
+                    log.warn("HNSW 图保存失败: {}", graphFile(), e);
+                }
+            }
+        } else {
+            log.info("HNSW 图已从 {} 加载", graphFile());
+        }
+        if (store instanceof HnswVectorStore hnsw) {
+            log.info("HNSW 图共 {} 个片段，堆外向量常驻 {} 字节", hnsw.size(), hnsw.offHeapBytes());
+        }
+        keywordIndex.add(new ArrayList<>(allDocuments.values()));
+
+        if (!changedDocuments.isEmpty() || snapshot.size() != allDocuments.size()) {
+            List<EmbeddingSnapshot.Entry> entries = allDocuments.values().stream()
+                    .map(document -> new EmbeddingSnapshot.Entry(document.getId(), document.getText(),
+                            document.getMetadata(), embeddingModel.embed(document)))
+                    .toList();
+            try {
+                EmbeddingSnapshot.write(snapshotFile, fingerprint, entries);
+                log.info("向量库快照已更新: {}", snapshotFile);
+            } catch (IOException e) {
+                log.warn("向量库快照写入失败: {}", snapshotFile, e);
+            }
+        }
+        embeddingModel.clear();
+        if (watchEnabled) {
+            // 先注册监听并建立清单再流式导入，导入期间修改的文件会在监听开始后重新比对
+            openWatcher();
+        }
+        if (locations.isEmpty()) {
+            return allDocuments.size();
+        }
+        return allDocuments.size() + (int) streamingIngestion.ingest(locations, this::addEmbedded);
+    }
+
+    /**
+     * 注册额外导入位置中目录的监听并建立清单，文件变化时只更新受影响的片段
+     */
+    private void openWatcher() {
+        List<Path> directories = locations.stream()
+                .filter(location -> !location.startsWith("classpath"))
+                .map(location -> Path.of(location.startsWith("file:") ? location.substring("file:".length()) : location))
+                .filter(Files::isDirectory)
+                .toList();
+        if (directories.isEmpty()) {
+            log.warn("未配置可监听的知识库文档目录（lisp.rag.ingestion.locations）");
+            return;
+        }
+        DocumentWatcher documentWatcher = new DocumentWatcher(directories, streamingIngestion::chunks, this::update,
+                Duration.ofMillis(watchDebounceMillis));
+        documentWatcher.open();
+        documentWatcher.index();
+        watcher = documentWatcher;
+    }
+
+    /**
+     * 应用关闭时停止监听
+     */
+    @PreDestroy
+    void close() {
+        DocumentWatcher documentWatcher = watcher;
+        if (documentWatcher != null) {
+            documentWatcher.close();
+        }
+    }
+
+    /**
+     * 增量更新：为新片段补充关键词、计算向量后写入，再删除旧片段
+     */
+    void update(List<Document> added, Collection<String> removedIds) {
+        if (!added.isEmpty()) {
+            List<Document> enriched = ingestionPipeline.enrich(added);
+            Map<String, float[]> vectors = ingestionPipeline.embed(enriched);
+            addEmbedded(enriched.stream()
+                    .map(document -> new IngestionPipeline.Embedded(document, vectors.get(document.getId())))
+                    .toList());
+        }
+        if (!removedIds.isEmpty()) {
+            store.delete(new ArrayList<>(removedIds));
+            keywordIndex.delete(new ArrayList<>(removedIds));
+        }
+    }
+
+    /**
+     * 写入一批流式导入的片段
+     */
+    private void addEmbedded(List<IngestionPipeline.Embedded> batch) {
+        List<Document> documents = batch.stream().map(IngestionPipeline.Embedded::document).toList();
+        batch.forEach(embedded -> embeddingModel.put(embedded.document().getId(), embedded.embedding()));
+        try {
+            store.add(documents);
+            keywordIndex.add(documents);
+        } finally {
+            documents.forEach(document -> embeddingModel.remove(document.getId()));
+        }
+    }
+
+    /**
+     * HNSW 图文件，与快照放在同一目录
+     */
+    private Path graphFile() {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + ".hnsw");
+    }
+
+    /**
+     * 快照的配置指纹：嵌入模型、维度和片段处理流程（切分、关键词补充）任一变化都会使快照作废，
+     * 避免复用与当前查询向量维度不一致的旧向量
+     */
+    String fingerprint() {
+        return "embedding=" + embeddingModelName + "-" + embeddingDimensions
+                + ";splitter=" + textSplitter.fingerprint()
+                + ";enricher=" + myKeywordEnricher.fingerprint();
+    }
+}
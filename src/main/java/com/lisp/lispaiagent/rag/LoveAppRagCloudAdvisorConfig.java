@@ -4,16 +4,25 @@ import com.alibaba.cloud.ai.dashscope.api.DashScopeApi;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeDocumentRetriever;
 import com.alibaba.cloud.ai.dashscope.rag.DashScopeDocumentRetrieverOptions;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.function.UnaryOperator;
+
 /**
- * 自定义基于阿里云知识库服务的rag增强顾问
+ * 自定义基于阿里云知识库服务的rag增强顾问。
+ * 检索结果按查询缓存；云知识库检索超过延迟预算时同时检索本地知识库，先返回的结果胜出，
+ * 最后经过去重和 MMR 重排再注入提示词。
  */
 @Configuration
 @Slf4j
@@ -22,16 +31,61 @@ class LoveAppRagCloudAdvisorConfig {
     @Value("${spring.ai.dashscope.api-key}")
     private String dashScopeApiKey;
 
+    @Value("${lisp.rag.cloud.cache.max-size:256}")
+    private int cacheMaxSize;
+
+    @Value("${lisp.rag.cloud.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    @Value("${lisp.rag.cloud.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    /**
+     * 云知识库检索的延迟预算，超过后同时检索本地知识库
+     */
+    @Value("${lisp.rag.cloud.hedge.delay-millis:800}")
+    private long hedgeDelayMillis;
+
+    /**
+     * 发起本地检索后等待结果的上限
+     */
+    @Value("${lisp.rag.cloud.hedge.timeout-millis:10000}")
+    private long hedgeTimeoutMillis;
+
+    @Value("${lisp.rag.cloud.hedge.top-k:10}")
+    private int hedgeTopK;
+
+    private HedgedDocumentRetriever hedgedDocumentRetriever;
+
     @Bean
-    public Advisor loveAppRagCloudAdvisor() {
+    public Advisor loveAppRagCloudAdvisor(@Qualifier("loveAppVectorStore") VectorStore loveAppVectorStore,
+                                          UnaryOperator<DocumentRetriever> loveAppDocumentDiversifier) {
         DashScopeApi dashScopeApi = new DashScopeApi(dashScopeApiKey);
         final String KNOWLEDGE_INDEX = "恋爱大师";
         DocumentRetriever documentRetriever = new DashScopeDocumentRetriever(dashScopeApi,
                 DashScopeDocumentRetrieverOptions.builder()
                         .withIndexName(KNOWLEDGE_INDEX)
                         .build());
+        // 缓存在对冲之内，本地检索的结果不写入缓存
+        documentRetriever = new CachingDocumentRetriever(documentRetriever, cacheMaxSize, Duration.ofSeconds(cacheTtlSeconds));
+        if (hedgeEnabled) {
+            hedgedDocumentRetriever = new HedgedDocumentRetriever(documentRetriever,
+                    VectorStoreDocumentRetriever.builder().vectorStore(loveAppVectorStore).topK(hedgeTopK).build(),
+                    Duration.ofMillis(hedgeDelayMillis), Duration.ofMillis(hedgeTimeoutMillis));
+            documentRetriever = hedgedDocumentRetriever;
+        }
         return RetrievalAugmentationAdvisor.builder()
-                .documentRetriever(documentRetriever)
+                .documentRetriever(loveAppDocumentDiversifier.apply(documentRetriever))
                 .build();
     }
+
+    /**
+     * 应用关闭时停止对冲检索的线程
+     */
+    @PreDestroy
+    void close() {
+        if (hedgedDocumentRetriever != null) {
+            hedgedDocumentRetriever.close();
+        }
+    }
 }
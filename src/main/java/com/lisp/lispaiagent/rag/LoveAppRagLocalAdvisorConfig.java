@@ -0,0 +1,88 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * 基于本地恋爱知识库的 rag 增强顾问：向量检索与 BM25 关键词检索混合召回，
+ * 可按情感状态（status 元信息）只检索相应分区
+ */
+@Configuration
+class LoveAppRagLocalAdvisorConfig {
+
+    /**
+     * 融合后交给去重和 MMR 重排的候选数
+     */
+    @Value("${lisp.rag.hybrid.top-k:10}")
+    private int topK;
+
+    @Value("${lisp.rag.hybrid.candidates:20}")
+    private int candidates;
+
+    @Value("${lisp.rag.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${lisp.rag.hybrid.similarity-threshold:0.0}")
+    private double similarityThreshold;
+
+    @Value("${lisp.rag.partition.key:status}")
+    private String partitionKey;
+
+    /**
+     * 未指定状态时，是否根据用户问题判断状态并只检索相应分区
+     */
+    @Value("${lisp.rag.partition.classify-query:true}")
+    private boolean classifyQuery;
+
+    @Bean
+    HybridDocumentRetriever loveAppHybridDocumentRetriever(LoveAppKnowledgeBase loveAppKnowledgeBase) {
+        StatusClassifier classifier = new StatusClassifier();
+        return new HybridDocumentRetriever(loveAppKnowledgeBase.getVectorStore(), loveAppKnowledgeBase.getKeywordIndex(),
+                topK, candidates, rrfK, similarityThreshold, query -> {
+            Filter.Expression filter = HybridDocumentRetriever.filterExpression(query);
+            if (filter != null || !classifyQuery || partitionKey.isBlank()) {
+                return filter;
+            }
+            return classifier.classify(query.text()).map(this::statusFilter).orElse(null);
+        });
+    }
+
+    @Bean
+    public Advisor loveAppRagLocalAdvisor(HybridDocumentRetriever loveAppHybridDocumentRetriever,
+                                          UnaryOperator<DocumentRetriever> loveAppDocumentDiversifier) {
+        return advisor(loveAppDocumentDiversifier.apply(loveAppHybridDocumentRetriever));
+    }
+
+    /**
+     * 按指定情感状态创建 rag 顾问，状态为空时与 loveAppRagLocalAdvisor 相同
+     */
+    @Bean
+    public Function<String, Advisor> loveAppStatusRagAdvisorFactory(HybridDocumentRetriever loveAppHybridDocumentRetriever,
+                                                                    Advisor loveAppRagLocalAdvisor,
+                                                                    UnaryOperator<DocumentRetriever> loveAppDocumentDiversifier) {
+        return status -> status == null || status.isBlank() ? loveAppRagLocalAdvisor
+                : advisor(loveAppDocumentDiversifier.apply(loveAppHybridDocumentRetriever.withFilter(statusFilter(status))));
+    }
+
+    private Filter.Expression statusFilter(String status) {
+        return new FilterExpressionBuilder().eq(partitionKey.isBlank() ? "status" : partitionKey, status).build();
+    }
+
+    private static Advisor advisor(DocumentRetriever documentRetriever) {
+        return RetrievalAugmentationAdvisor.builder()
+                .documentRetriever(documentRetriever)
+                // 知识库未就绪或没有命中时仍正常回答
+                .queryAugmenter(ContextualQueryAugmenter.builder().allowEmptyContext(true).build())
+                .build();
+    }
+}
@@ -1,62 +1,191 @@
 package com.lisp.lispaiagent.rag;
 
-import jakarta.annotation.Resource;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * 配置类，用于定义和初始化与向量存储相关的 Bean。
- * 主要作用是创建一个基于 Markdown 文档内容的 VectorStore 实例，
+ * 主要作用是提供基于 Markdown 文档内容的 VectorStore 实例，
  * 用于后续的相似性搜索或 AI 模型交互。
+ * 文档的加载、补充关键词和向量计算由 {@link LoveAppKnowledgeBase} 在后台完成。
  */
 @Configuration
 public class LoveAppVectorStoreConfig {
 
     /**
-     * 注入文档加载器实例，用于从 classpath 加载 Markdown 格式的文档数据。
+     * 知识库导入中的健康状态
      */
-    @Resource
-    private LoveAppDocumentLoader loveAppDocumentLoader;
+    static final Status INGESTING = new Status("INGESTING", "知识库正在后台导入");
+
+    @Value("${lisp.rag.ingestion.enrich.parallelism:8}")
+    private int enrichParallelism;
+
+    @Value("${lisp.rag.ingestion.enrich.batch-size:1}")
+    private int enrichBatchSize;
+
+    @Value("${lisp.rag.ingestion.embed.parallelism:4}")
+    private int embedParallelism;
 
-    @Resource
-    private MyTokenTextSplitter myTokenTextSplitter;
     /**
-     *
-     * @param dashscopeEmbeddingModel 提供文本到向量转换能力的 Embedding 模型
-     * @return 构建完成并已加载文档数据的 VectorStore 实例
+     * DashScope 单次最多 25 条
+     */
+    @Value("${lisp.rag.ingestion.embed.batch-size:20}")
+    private int embedBatchSize;
+
+    @Value("${lisp.rag.ingestion.requests-per-second:10}")
+    private double requestsPerSecond;
+
+    @Value("${lisp.rag.ingestion.retry.max-attempts:4}")
+    private int retryMaxAttempts;
+
+    @Value("${lisp.rag.ingestion.retry.initial-backoff-millis:500}")
+    private long retryInitialBackoffMillis;
+
+    @Value("${lisp.rag.ingestion.retry.max-backoff-millis:10000}")
+    private long retryMaxBackoffMillis;
+
+    @Value("${lisp.rag.ingestion.read-parallelism:4}")
+    private int readParallelism;
+
+    @Value("${lisp.rag.ingestion.store.batch-size:256}")
+    private int storeBatchSize;
+
+    @Value("${lisp.rag.dedupe.enabled:true}")
+    private boolean dedupeEnabled;
+
+    /**
+     * 估计的 Jaccard 相似度不低于该值的片段视为重复
+     */
+    @Value("${lisp.rag.dedupe.threshold:0.9}")
+    private double dedupeThreshold;
+
+    /**
+     * 知识库向量库类型：simple 为逐条扫描的 SimpleVectorStore，hnsw 为 HnswVectorStore
+     */
+    @Value("${lisp.rag.vector-store.type:simple}")
+    private String vectorStoreType;
+
+    @Value("${lisp.rag.vector-store.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${lisp.rag.vector-store.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${lisp.rag.vector-store.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    /**
+     * 向量量化方式：none、fp16 或 int8
+     */
+    @Value("${lisp.rag.vector-store.hnsw.quantization:none}")
+    private String hnswQuantization;
+
+    @Value("${lisp.rag.vector-store.hnsw.storage-path:${java.io.tmpdir}/lisp-hnsw}")
+    private String hnswStoragePath;
+
+    /**
+     * 按该元信息键的取值把知识库分区存放，为空时不分区
+     */
+    @Value("${lisp.rag.partition.key:status}")
+    private String partitionKey;
+
+    /**
+     * 按配置创建知识库实际使用的向量库，入参为提供预计算向量的嵌入模型
      */
-    @Resource
-    private MyKeywordEnricher myKeywordEnricher;
     @Bean
-    VectorStore loveAppVectorStore(EmbeddingModel dashscopeEmbeddingModel) {
-        // 使用 DashScope Embedding 模型构建 SimpleVectorStore 实例
-        SimpleVectorStore simpleVectorStore = SimpleVectorStore.builder(dashscopeEmbeddingModel)
-                .build();
-
-        // 调用文档加载器方法，获取所有 Markdown 文件解析后的 Document 对象列表
-        List<Document> documents = loveAppDocumentLoader.loadMarkdowns();
-
-        //自主切分
-        //List<Document> splitDocuments = myTokenTextSplitter.splitCustomized(documents);
-        // 自动补充关键词元信息
-        //List<Document> enrichedDocuments = myKeywordEnricher.enrichDocuments(documents);
-        // 自动补充关键词元信息
-        List<Document> enrichedDocuments = myKeywordEnricher.enrichDocuments(documents);
-        // 将加载的文档添加到 VectorStore 中，建立向量索引以支持语义检索
-        simpleVectorStore.add(enrichedDocuments);
-
-        // 返回配置完成的 VectorStore 实例
-        return simpleVectorStore;
+    Function<EmbeddingModel, VectorStore> loveAppVectorStoreFactory() {
+        Function<EmbeddingModel, VectorStore> factory = vectorStoreFactory();
+        if (partitionKey.isBlank()) {
+            return factory;
+        }
+        return embeddingModel -> new PartitionedVectorStore(partitionKey, embeddingModel, factory);
+    }
+
+    private Function<EmbeddingModel, VectorStore> vectorStoreFactory() {
+        if ("hnsw".equalsIgnoreCase(vectorStoreType)) {
+            VectorStorage.Encoding encoding = switch (hnswQuantization.toLowerCase()) {
+                case "fp16" -> VectorStorage.Encoding.FLOAT16;
+                case "int8" -> VectorStorage.Encoding.INT8;
+                default -> VectorStorage.Encoding.FLOAT32;
+            };
+            return embeddingModel -> new HnswVectorStore(embeddingModel, hnswM, hnswEfConstruction, hnswEfSearch,
+                    Path.of(hnswStoragePath), encoding);
+        }
+        return embeddingModel -> SimpleVectorStore.builder(embeddingModel).build();
     }
 
+    @Bean
+    IngestionPipeline ingestionPipeline(MyKeywordEnricher myKeywordEnricher,
+                                        @Qualifier("cachingEmbeddingModel") EmbeddingModel cachingEmbeddingModel,
+                                        MeterRegistry meterRegistry) {
+        return new IngestionPipeline(myKeywordEnricher::enrichDocuments, cachingEmbeddingModel,
+                new IngestionPipeline.StageOptions(enrichParallelism, enrichBatchSize, myKeywordEnricher.usesModel()),
+                new IngestionPipeline.StageOptions(embedParallelism, embedBatchSize),
+                new IngestionPipeline.RetryOptions(retryMaxAttempts, Duration.ofMillis(retryInitialBackoffMillis),
+                        Duration.ofMillis(retryMaxBackoffMillis)),
+                requestsPerSecond, meterRegistry);
+    }
 
+    /**
+     * 内置知识库导入时合并近似重复的片段，关闭时原样返回
+     */
+    @Bean
+    UnaryOperator<List<Document>> loveAppDocumentDeduplicator() {
+        if (!dedupeEnabled) {
+            return UnaryOperator.identity();
+        }
+        return new NearDuplicateFilter(dedupeThreshold, partitionKey);
+    }
 
+    @Bean
+    StreamingIngestion streamingIngestion(LoveAppDocumentLoader loveAppDocumentLoader, MyTokenTextSplitter myTokenTextSplitter,
+                                          IngestionPipeline ingestionPipeline) {
+        return new StreamingIngestion(loveAppDocumentLoader, myTokenTextSplitter, ingestionPipeline, readParallelism,
+                storeBatchSize);
+    }
 
+    /**
+     *
+     * @param loveAppKnowledgeBase 恋爱知识库
+     * @return 导入完成前按超时等待检索的 VectorStore 实例
+     */
+    @Bean
+    VectorStore loveAppVectorStore(LoveAppKnowledgeBase loveAppKnowledgeBase) {
+        return loveAppKnowledgeBase.getVectorStore();
+    }
 
+    /**
+     * 知识库就绪状态，通过 /actuator/health/rag 查看
+     */
+    @Bean
+    HealthIndicator loveAppKnowledgeBaseHealthIndicator(LoveAppKnowledgeBase loveAppKnowledgeBase) {
+        return () -> {
+            IngestionStatus status = loveAppKnowledgeBase.getStatus();
+            Health.Builder builder = switch (status.getState()) {
+                case READY -> Health.up().withDetail("documents", status.getDocumentCount());
+                case FAILED -> Health.down().withDetail("error", status.getError());
+                case PENDING, RUNNING -> Health.status(INGESTING);
+            };
+            return builder.withDetail("state", status.getState())
+                    .withDetail("startedAt", String.valueOf(status.getStartedAt()))
+                    .withDetail("finishedAt", String.valueOf(status.getFinishedAt()))
+                    .build();
+        };
+    }
 }
@@ -0,0 +1,151 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 在内存中对文档元信息求值 Filter.Expression，供自实现的向量库过滤检索和按条件删除使用。
+ * 支持 AND、OR、NOT、比较运算以及 IN / NIN；数字按数值比较，其余按字符串比较。
+ */
+class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    /**
+     * @param expression 过滤表达式，为 null 时视为全部匹配
+     * @param metadata 文档元信息
+     * @return 元信息是否满足表达式
+     */
+    static boolean matches(Filter.Expression expression, Map<String, Object> metadata) {
+        if (expression == null) {
+            return true;
+        }
+        return switch (expression.type()) {
+            case AND -> matches(operand(expression.left()), metadata) && matches(operand(expression.right()), metadata);
+            case OR -> matches(operand(expression.left()), metadata) || matches(operand(expression.right()), metadata);
+            case NOT -> !matches(operand(expression.left()), metadata);
+            case EQ -> Objects.equals(normalize(value(expression, metadata)), normalize(literal(expression)));
+            case NE -> !Objects.equals(normalize(value(expression, metadata)), normalize(literal(expression)));
+            case GT -> compare(expression, metadata, result -> result > 0);
+            case GTE -> compare(expression, metadata, result -> result >= 0);
+            case LT -> compare(expression, metadata, result -> result < 0);
+            case LTE -> compare(expression, metadata, result -> result <= 0);
+            case IN -> contains(literal(expression), value(expression, metadata));
+            case NIN -> !contains(literal(expression), value(expression, metadata));
+        };
+    }
+
+    /**
+     * 从表达式中推出某个键的取值范围，用于只检索相应的分区
+     *
+     * @return 满足表达式时该键可能的取值；表达式未限定该键时返回 null
+     */
+    static Set<Object> values(Filter.Expression expression, String key) {
+        if (expression == null) {
+            return null;
+        }
+        return switch (expression.type()) {
+            case AND -> {
+                Set<Object> left = values(operand(expression.left()), key);
+                Set<Object> right = values(operand(expression.right()), key);
+                if (left == null || right == null) {
+                    yield left == null ? right : left;
+                }
+                Set<Object> both = new HashSet<>(left);
+                both.retainAll(right);
+                yield both;
+            }
+            case OR -> {
+                Set<Object> left = values(operand(expression.left()), key);
+                Set<Object> right = values(operand(expression.right()), key);
+                if (left == null || right == null) {
+                    yield null;
+                }
+                Set<Object> either = new HashSet<>(left);
+                either.addAll(right);
+                yield either;
+            }
+            case EQ, IN -> {
+                if (!key.equals(keyName(expression))) {
+                    yield null;
+                }
+                Object literal = literal(expression);
+                Collection<?> candidates = literal instanceof Collection<?> collection ? collection : List.of(literal);
+                Set<Object> result = new HashSet<>();
+                candidates.forEach(candidate -> result.add(normalize(candidate)));
+                yield result;
+            }
+            default -> null;
+        };
+    }
+
+    private static Filter.Expression operand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return group.content();
+        }
+        if (operand instanceof Filter.Expression expression) {
+            return expression;
+        }
+        throw new IllegalArgumentException("不支持的过滤条件: " + operand);
+    }
+
+    private static Object value(Filter.Expression expression, Map<String, Object> metadata) {
+        if (!(expression.left() instanceof Filter.Key)) {
+            throw new IllegalArgumentException("过滤条件左侧应为元信息键: " + expression);
+        }
+        return metadata.get(keyName(expression));
+    }
+
+    private static String keyName(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key)) {
+            return null;
+        }
+        String name = key.key();
+        // 解析文本表达式时带引号的键会保留引号
+        if (name.length() >= 2 && (name.startsWith("\"") && name.endsWith("\"") || name.startsWith("'") && name.endsWith("'"))) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+
+    private static Object literal(Filter.Expression expression) {
+        if (!(expression.right() instanceof Filter.Value value)) {
+            throw new IllegalArgumentException("过滤条件右侧应为常量: " + expression);
+        }
+        return value.value();
+    }
+
+    private static boolean contains(Object literal, Object value) {
+        Collection<?> candidates = literal instanceof Collection<?> collection ? collection : List.of(literal);
+        Object normalized = normalize(value);
+        return candidates.stream().anyMatch(candidate -> Objects.equals(normalize(candidate), normalized));
+    }
+
+    private static boolean compare(Filter.Expression expression, Map<String, Object> metadata, IntPredicate predicate) {
+        Object left = value(expression, metadata);
+        Object right = literal(expression);
+        if (left == null || right == null) {
+            // 缺失的键不满足任何大小比较
+            return false;
+        }
+        if (left instanceof Number l && right instanceof Number r) {
+            return predicate.test(Double.compare(l.doubleValue(), r.doubleValue()));
+        }
+        return predicate.test(left.toString().compareTo(right.toString()));
+    }
+
+    /**
+     * 数字统一为 double，使 1 与 1.0 视为相等
+     */
+    static Object normalize(Object value) {
+        return value instanceof Number number ? (Object) number.doubleValue() : value;
+    }
+}
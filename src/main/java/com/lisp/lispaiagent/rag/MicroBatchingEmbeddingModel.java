@@ -0,0 +1,200 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 嵌入请求合批：并发到达的少量文本（如检索时的查询文本）先进入队列，
+ * 收集满 maxBatchSize 条或自第一条起等待 maxDelay 后合并为一次模型调用，结果再按原请求拆分返回。
+ * 本身已达到批大小的请求（如知识库导入）直接调用模型，不经过队列；选项不同的请求不会合并。
+ * 等待结果超过 timeout 时请求失败，其仍在队列中的文本不再发给模型；关闭后请求直接调用模型。
+ */
+@Slf4j
+class MicroBatchingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    /**
+     * 队列中的一条待计算文本
+     */
+    private record Pending(String text, EmbeddingOptions options, CompletableFuture<float[]> result) {
+    }
+
+    private final EmbeddingModel delegate;
+
+    private final int maxBatchSize;
+
+    private final Duration maxDelay;
+
+    private final Duration timeout;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter calls;
+
+    private final DistributionSummary batchSizes;
+
+    private final Thread worker;
+
+    private volatile boolean closed;
+
+    /**
+     * @param maxBatchSize 单次模型调用的文本数上限（DashScope 为 25）
+     * @param maxDelay 第一条文本进入队列后最多等待的时间
+     * @param timeout 请求等待合批结果的最长时间
+     */
+    MicroBatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, Duration maxDelay, Duration timeout,
+                                MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelay = maxDelay;
+        this.timeout = timeout;
+        this.calls = Counter.builder("lisp.rag.embedding.batch.calls")
+                .description("合批后的嵌入模型调用次数")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("lisp.rag.embedding.batch.size")
+                .description("每次合批调用的文本数")
+                .register(meterRegistry);
+        this.worker = new Thread(this::drain, "embedding-micro-batcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        if (texts.size() >= maxBatchSize || closed) {
+            return delegate.call(request);
+        }
+        List<CompletableFuture<float[]>> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            CompletableFuture<float[]> result = new CompletableFuture<>();
+            queue.add(new Pending(text, request.getOptions(), result));
+            results.add(result);
+        }
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                embeddings.add(new Embedding(results.get(i).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS), i));
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("合批嵌入调用失败", e.getCause());
+        } catch (TimeoutException e) {
+            results.forEach(result -> result.cancel(false));
+            throw new IllegalStateException("合批嵌入调用超时: " + timeout.toMillis() + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.forEach(result -> result.cancel(false));
+            throw new IllegalStateException("等待合批嵌入结果时被中断", e);
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 停止合批线程和调用线程，队列中尚未发出的文本以失败结束
+     */
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        executor.shutdownNow();
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new IllegalStateException("合批嵌入模型已关闭"));
+        }
+    }
+
+    /**
+     * 后台线程：收集一批文本后交给虚拟线程调用模型，随即开始收集下一批
+     */
+    private void drain() {
+        while (true) {
+            List<Pending> batch = new ArrayList<>(maxBatchSize);
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelay.toNanos();
+                while (batch.size() < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                // 已超时或被取消的文本不再发给模型
+                batch.removeIf(pending -> pending.result().isDone());
+                // 模型或维度不同的文本分开调用；选项对象每次请求新建，按取值比较
+                Map<List<Object>, List<Pending>> groups = new LinkedHashMap<>();
+                batch.forEach(pending -> groups.computeIfAbsent(optionsKey(pending.options()), key -> new ArrayList<>()).add(pending));
+                groups.values().forEach(group -> executor.submit(() -> embed(group.get(0).options(), group)));
+            } catch (InterruptedException | RejectedExecutionException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.result().completeExceptionally(new IllegalStateException("合批嵌入模型已关闭")));
+                return;
+            }
+        }
+    }
+
+    private static List<Object> optionsKey(EmbeddingOptions options) {
+        return options == null ? List.of() : Arrays.asList(options.getModel(), options.getDimensions());
+    }
+
+    private void embed(EmbeddingOptions options, List<Pending> group) {
+        try {
+            calls.increment();
+            batchSizes.record(group.size());
+            List<Embedding> results = delegate.call(new EmbeddingRequest(group.stream().map(Pending::text).toList(), options))
+                    .getResults();
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).result().complete(Objects.requireNonNull(results.get(i).getOutput()));
+            }
+        } catch (RuntimeException e) {
+            log.warn("合批嵌入调用失败，{} 条文本: {}", group.size(), e.toString());
+            group.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.lisp.lispaiagent.rag;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash 签名：用固定个数的哈希函数在文本的字符 n-gram 集合上取最小值，
+ * 两个签名对应位置相等的比例近似两段文本 n-gram 集合的 Jaccard 相似度，用于快速发现近似重复的片段。
+ * 空白、标点和大小写差异不影响签名。
+ * 哈希函数为 (a * x + b) mod (2^61 - 1)，乘积用 128 位结果按梅森素数取模，不会溢出。
+ */
+class MinHash {
+
+    private static final long PRIME = (1L << 61) - 1;
+
+    private final int shingleSize;
+
+    private final long[] a;
+
+    private final long[] b;
+
+    /**
+     * @param hashes 哈希函数个数，越多估计越准
+     * @param shingleSize n-gram 的字符数
+     */
+    MinHash(int hashes, int shingleSize) {
+        this.shingleSize = shingleSize;
+        this.a = new long[hashes];
+        this.b = new long[hashes];
+        // 固定种子，不同实例的签名可以互相比较
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < hashes; i++) {
+            a[i] = random.nextLong(1, PRIME);
+            b[i] = random.nextLong(0, PRIME);
+        }
+    }
+
+    long[] signature(String text) {
+        String normalized = text == null ? "" : text.replaceAll("[\\s\\p{P}]+", "").toLowerCase();
+        long[] signature = new long[a.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        int shingles = Math.max(1, normalized.length() - shingleSize + 1);
+        for (int start = 0; start < shingles; start++) {
+            String shingle = normalized.substring(start, Math.min(normalized.length(), start + shingleSize));
+            long hash = Integer.toUnsignedLong(shingle.hashCode());
+            for (int i = 0; i < a.length; i++) {
+                long value = hash(a[i], b[i], hash);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * (a * x + b) mod (2^61 - 1)，要求 a、b 小于 2^61 - 1，x 非负。
+     * 2^61 ≡ 1，因此 128 位乘积的高、低部分可以按 61 位分段相加后再取模
+     */
+    static long hash(long a, long b, long x) {
+        long low = a * x;
+        long high = Math.multiplyHigh(a, x);
+        // high * 2^64 = high * 8 * 2^61 ≡ high * 8
+        return reduce(reduce((low & PRIME) + (low >>> 61) + (high << 3)) + b);
+    }
+
+    private static long reduce(long value) {
+        long reduced = (value & PRIME) + (value >>> 61);
+        return reduced >= PRIME ? reduced - PRIME : reduced;
+    }
+
+    /**
+     * 两个签名估计的 Jaccard 相似度
+     */
+    static double similarity(long[] left, long[] right) {
+        int equal = 0;
+        for (int i = 0; i < left.length; i++) {
+            if (left[i] == right[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / left.length;
+    }
+}
@@ -3,27 +3,65 @@ package com.lisp.lispaiagent.rag;
 import jakarta.annotation.Resource;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.transformer.KeywordMetadataEnricher;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.context.annotation.Bean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.List;
 
 @Component
 class MyKeywordEnricher {
 
+    /**
+     * 每个片段提取的关键词数
+     */
+    static final int KEYWORD_COUNT = 5;
+
     @Resource
     private ChatModel dashscopeChatModel;
 
+    /**
+     * 关键词提取方式：llm 为每个片段调用一次大模型，local 为本地 TF-IDF 提取
+     */
+    @Value("${lisp.rag.keywords.mode:llm}")
+    private String mode;
+
+    private final LocalKeywordEnricher localKeywordEnricher = new LocalKeywordEnricher(KEYWORD_COUNT);
+
+    /**
+     * 是否调用大模型，调用时导入流水线需要对其限流
+     */
+    boolean usesModel() {
+        return !"local".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * 本地提取时以整个知识库统计词频，应在 enrichDocuments 之前调用，
+     * 之后流式导入和增量更新的小批次都使用这次统计
+     */
+    void prepare(Collection<Document> corpus) {
+        if (!usesModel()) {
+            localKeywordEnricher.fit(corpus);
+        }
+    }
+
+    /**
+     * 提取方式的标识，切换方式后快照作废
+     */
+    String fingerprint() {
+        String name = usesModel() ? MyKeywordEnricher.class.getSimpleName() : LocalKeywordEnricher.class.getSimpleName();
+        return name + ":" + KEYWORD_COUNT;
+    }
+
     /**
      * 基于AI自动补充关键词元信息
      */
     List<Document> enrichDocuments(List<Document> documents) {
-        KeywordMetadataEnricher enricher = new KeywordMetadataEnricher(this.dashscopeChatModel, 5);
+        if (!usesModel()) {
+            return localKeywordEnricher.apply(documents);
+        }
+        KeywordMetadataEnricher enricher = new KeywordMetadataEnricher(this.dashscopeChatModel, KEYWORD_COUNT);
         return enricher.apply(documents);
     }
 }
-
@@ -7,17 +7,43 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 
 /**
- * 自定义基于token切词器
+ * 自定义基于token切词器。
+ * 切词器创建时要加载编码表，开销较大，这里复用同一个实例（切词器无状态，可并发使用）
  */
 @Component
 class MyTokenTextSplitter {
+
+    private final TokenTextSplitter splitter = new TokenTextSplitter();
+
+    /**
+     * 自定义切分参数：片段 token 数、片段最少字符数、最短片段长度、最大片段数、是否保留分隔符
+     */
+    private static final int CHUNK_SIZE = 200;
+
+    private static final int MIN_CHUNK_SIZE_CHARS = 100;
+
+    private static final int MIN_CHUNK_LENGTH_TO_EMBED = 10;
+
+    private static final int MAX_NUM_CHUNKS = 5000;
+
+    private static final boolean KEEP_SEPARATOR = true;
+
+    private final TokenTextSplitter customizedSplitter = new TokenTextSplitter(CHUNK_SIZE, MIN_CHUNK_SIZE_CHARS,
+            MIN_CHUNK_LENGTH_TO_EMBED, MAX_NUM_CHUNKS, KEEP_SEPARATOR);
+
     public List<Document> splitDocuments(List<Document> documents) {
-        TokenTextSplitter splitter = new TokenTextSplitter();
         return splitter.apply(documents);
     }
 
     public List<Document> splitCustomized(List<Document> documents) {
-        TokenTextSplitter splitter = new TokenTextSplitter(200, 100, 10, 5000, true);
-        return splitter.apply(documents);
+        return customizedSplitter.apply(documents);
+    }
+
+    /**
+     * 切分参数的标识，参数变化后快照作废
+     */
+    String fingerprint() {
+        return "default," + CHUNK_SIZE + "," + MIN_CHUNK_SIZE_CHARS + "," + MIN_CHUNK_LENGTH_TO_EMBED + ","
+                + MAX_NUM_CHUNKS + "," + KEEP_SEPARATOR;
     }
 }
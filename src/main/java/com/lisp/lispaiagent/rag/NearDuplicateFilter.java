@@ -0,0 +1,103 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * 导入时的近似重复片段合并：MinHash 签名按 LSH 分段（每段若干行）建桶，只与同桶的已保留片段比较，
+ * 估计的 Jaccard 相似度不低于阈值时丢弃后来的片段，并把其文件名并入保留片段的 source_filenames 元信息。
+ * 只有合并了其他文件中重复片段的保留片段才写入 source_filenames，其余片段的元信息保持不变，
+ * 其内容哈希和用于计算向量的文本都与去重前一致。
+ * 只在 scopeKey 取值相同的片段之间合并（如同一情感状态），避免按状态检索时丢失内容。
+ */
+@Slf4j
+class NearDuplicateFilter implements UnaryOperator<List<Document>> {
+
+    /**
+     * 片段内容出现在的全部文件名，只在来自多个文件时存在
+     */
+    static final String SOURCE_FILENAMES = "source_filenames";
+
+    private static final int BANDS = 16;
+
+    private static final int ROWS = 4;
+
+    private final MinHash minHash = new MinHash(BANDS * ROWS, 3);
+
+    private final double threshold;
+
+    private final String scopeKey;
+
+    /**
+     * @param threshold 视为重复的相似度下限
+     * @param scopeKey 限定合并范围的元信息键，为空时不限定
+     */
+    NearDuplicateFilter(double threshold, String scopeKey) {
+        this.threshold = threshold;
+        this.scopeKey = scopeKey;
+    }
+
+    @Override
+    public List<Document> apply(List<Document> documents) {
+        List<Document> kept = new ArrayList<>();
+        List<long[]> signatures = new ArrayList<>();
+        List<Set<String>> sources = new ArrayList<>();
+        Map<List<Object>, List<Integer>> buckets = new HashMap<>();
+        for (Document document : documents) {
+            long[] signature = minHash.signature(document.getText());
+            Object scope = scopeKey == null || scopeKey.isBlank() ? null : document.getMetadata().get(scopeKey);
+            int duplicateOf = -1;
+            List<List<Object>> keys = new ArrayList<>(BANDS);
+            for (int band = 0; band < BANDS; band++) {
+                List<Object> key = new ArrayList<>(ROWS + 2);
+                key.add(scope);
+                key.add(band);
+                for (int row = 0; row < ROWS; row++) {
+                    key.add(signature[band * ROWS + row]);
+                }
+                keys.add(key);
+                if (duplicateOf < 0) {
+                    for (int candidate : buckets.getOrDefault(key, List.of())) {
+                        if (MinHash.similarity(signatures.get(candidate), signature) >= threshold) {
+                            duplicateOf = candidate;
+                            break;
+                        }
+                    }
+                }
+            }
+            Object filename = document.getMetadata().get("filename");
+            if (duplicateOf >= 0) {
+                if (filename != null) {
+                    sources.get(duplicateOf).add(filename.toString());
+                }
+                continue;
+            }
+            int index = kept.size();
+            kept.add(document);
+            signatures.add(signature);
+            Set<String> source = new LinkedHashSet<>();
+            if (filename != null) {
+                source.add(filename.toString());
+            }
+            sources.add(source);
+            keys.forEach(key -> buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(index));
+        }
+        for (int i = 0; i < kept.size(); i++) {
+            if (sources.get(i).size() > 1) {
+                kept.get(i).getMetadata().put(SOURCE_FILENAMES, new ArrayList<>(sources.get(i)));
+            }
+        }
+        if (kept.size() < documents.size()) {
+            log.info("近似重复片段合并：{} 个片段合并为 {} 个", documents.size(), kept.size());
+        }
+        return kept;
+    }
+}
@@ -0,0 +1,156 @@
+package com.lisp.lispaiagent.rag;
+
+import cn.hutool.cache.impl.LRUCache;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 按某个元信息键（如 status）的取值分区的向量库，每个取值对应一个独立的子向量库。
+ * 过滤条件限定了该键的取值（==、in，或与其他条件的 and 组合）时只检索相应分区，
+ * 否则检索全部分区后按得分合并。缺少该键的文档放入空字符串分区。
+ * 各分区共用同一个查询向量：查询文本的向量按文本缓存少量条目，避免每个分区各调用一次嵌入模型。
+ */
+class PartitionedVectorStore implements VectorStore {
+
+    private static final String MISSING = "";
+
+    private final String key;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final Function<EmbeddingModel, VectorStore> partitionFactory;
+
+    private final Map<Object, VectorStore> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * 文档 id 到所在分区
+     */
+    private final Map<String, Object> locations = new ConcurrentHashMap<>();
+
+    /**
+     * @param key 分区所依据的元信息键
+     * @param embeddingModel 嵌入模型
+     * @param partitionFactory 创建单个分区的向量库
+     */
+    PartitionedVectorStore(String key, EmbeddingModel embeddingModel, Function<EmbeddingModel, VectorStore> partitionFactory) {
+        this.key = key;
+        this.embeddingModel = new QueryMemoEmbeddingModel(embeddingModel);
+        this.partitionFactory = partitionFactory;
+    }
+
+    @Override
+    public String getName() {
+        return PartitionedVectorStore.class.getSimpleName();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        Map<Object, List<Document>> groups = new LinkedHashMap<>();
+        for (Document document : documents) {
+            Object partition = partitionOf(document);
+            Object previous = locations.put(document.getId(), partition);
+            if (previous != null && !previous.equals(partition)) {
+                // 分区键变化的文档从原分区移除
+                partitions.get(previous).delete(List.of(document.getId()));
+            }
+            groups.computeIfAbsent(partition, value -> new ArrayList<>()).add(document);
+        }
+        groups.forEach((partition, group) ->
+                partitions.computeIfAbsent(partition, value -> partitionFactory.apply(embeddingModel)).add(group));
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        Map<Object, List<String>> groups = new HashMap<>();
+        for (String id : idList) {
+            Object partition = locations.remove(id);
+            if (partition != null) {
+                groups.computeIfAbsent(partition, value -> new ArrayList<>()).add(id);
+            }
+        }
+        groups.forEach((partition, ids) -> partitions.get(partition).delete(ids));
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Set<Object> values = MetadataFilter.values(filterExpression, key);
+        partitions.forEach((partition, store) -> {
+            if (values == null || values.contains(partition)) {
+                // 按条件删除无法得知被删的 id，位置表中残留的条目在按 id 删除时对子库是空操作
+                store.delete(filterExpression);
+            }
+        });
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        Set<Object> values = MetadataFilter.values(request.getFilterExpression(), key);
+        List<Document> results = new ArrayList<>();
+        partitions.forEach((partition, store) -> {
+            if (values == null || values.contains(partition)) {
+                results.addAll(store.similaritySearch(request));
+            }
+        });
+        results.sort(Comparator.comparing(Document::getScore, Comparator.nullsLast(Comparator.reverseOrder())));
+        return results.size() > request.getTopK() ? new ArrayList<>(results.subList(0, request.getTopK())) : results;
+    }
+
+    private Object partitionOf(Document document) {
+        Object value = document.getMetadata().get(key);
+        return value == null ? MISSING : MetadataFilter.normalize(value);
+    }
+
+    /**
+     * 缓存最近查询文本向量的嵌入模型，文档向量直接交给实际模型
+     */
+    private static final class QueryMemoEmbeddingModel implements EmbeddingModel {
+
+        private final EmbeddingModel delegate;
+
+        private final LRUCache<String, float[]> queries = new LRUCache<>(64);
+
+        private QueryMemoEmbeddingModel(EmbeddingModel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            return delegate.call(request);
+        }
+
+        @Override
+        public float[] embed(String text) {
+            float[] embedding = queries.get(text);
+            if (embedding == null) {
+                embedding = delegate.embed(text);
+                queries.put(text, embedding);
+            }
+            return embedding;
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return delegate.embed(document);
+        }
+
+        @Override
+        public int dimensions() {
+            return delegate.dimensions();
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.lisp.lispaiagent.rag;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * pgvector 批量导入：片段以 COPY 二进制格式写入事务内的临时表（不写 WAL、没有索引和约束），
+ * 写完后一条 INSERT ... ON CONFLICT 合并到正式表，同 id 的片段覆盖旧内容。
+ * HNSW 索引在导入前删除、合并后重建，避免逐行维护索引；重建时可调大 maintenance_work_mem 和并行度。
+ * 表结构与 Spring AI PgVectorStore 一致（id uuid、content text、metadata json、embedding vector），
+ * 非 UUID 的片段 id（如内容哈希）按名字派生固定的 UUID，重复导入同一语料得到相同的行。
+ *
+ * <pre>
+ * try (PgVectorBulkLoader.Session session = loader.begin()) {
+ *     streamingIngestion.ingest(locations, session);
+ *     session.commit();
+ * }
+ * </pre>
+ */
+@Slf4j
+class PgVectorBulkLoader {
+
+    /**
+     * COPY 二进制格式的文件头：签名、标志位、扩展区长度
+     */
+    private static final byte[] COPY_SIGNATURE = "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 导入与建索引配置
+     *
+     * @param dropIndex 导入前删除 HNSW 索引、合并后重建；为 false 时保留已有索引，只在缺失时创建
+     * @param hnswM 每个节点的邻居数
+     * @param hnswEfConstruction 建图时的候选队列长度
+     * @param maintenanceWorkMem 建索引时的 maintenance_work_mem，如 2GB，为空时使用服务端配置
+     * @param parallelWorkers 建索引的并行进程数，小于等于 0 时使用服务端配置
+     */
+    record Options(boolean dropIndex, int hnswM, int hnswEfConstruction, String maintenanceWorkMem, int parallelWorkers) {
+    }
+
+    private final DataSource dataSource;
+
+    private final String table;
+
+    private final String indexName;
+
+    private final int dimensions;
+
+    private final Options options;
+
+    /**
+     * @param schema 表所在的 schema
+     * @param table 表名
+     * @param dimensions 向量维度，须与嵌入模型一致
+     */
+    PgVectorBulkLoader(DataSource dataSource, String schema, String table, int dimensions, Options options) {
+        if (!IDENTIFIER.matcher(schema).matches() || !IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("表名不合法: " + schema + "." + table);
+        }
+        if (options.maintenanceWorkMem() != null && !options.maintenanceWorkMem().isBlank()
+                && !options.maintenanceWorkMem().matches("\\d+\\s*[kMGT]?B?")) {
+            throw new IllegalArgumentException("maintenance_work_mem 不合法: " + options.maintenanceWorkMem());
+        }
+        this.dataSource = dataSource;
+        this.table = schema + "." + table;
+        this.indexName = table + "_embedding_hnsw_idx";
+        this.dimensions = dimensions;
+        this.options = options;
+    }
+
+    /**
+     * 建表（已存在时跳过），需要 vector 扩展的创建权限
+     */
+    void initializeSchema() {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE EXTENSION IF NOT EXISTS vector");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + table + " (id uuid PRIMARY KEY, content text, "
+                    + "metadata json, embedding vector(" + dimensions + "))");
+        } catch (SQLException e) {
+            throw new IllegalStateException("pgvector 建表失败: " + table, e);
+        }
+    }
+
+    /**
+     * 开始一次导入：打开连接和事务、创建临时表并进入 COPY 状态
+     */
+    Session begin() {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TEMP TABLE bulk_staging (seq bigserial, id uuid, content text, metadata json, "
+                        + "embedding vector(" + dimensions + ")) ON COMMIT DROP");
+            }
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY bulk_staging (id, content, metadata, embedding) FROM STDIN (FORMAT binary)");
+            Session session = new Session(connection, copyIn);
+            session.writeHeader();
+            return session;
+        } catch (SQLException e) {
+            closeQuietly(connection);
+            throw new IllegalStateException("pgvector 批量导入启动失败: " + table, e);
+        }
+    }
+
+    /**
+     * 以流式流水线导入指定位置的文档，返回合并到正式表的行数
+     */
+    long load(StreamingIngestion ingestion, List<String> locations) {
+        try (Session session = begin()) {
+            ingestion.ingest(locations, session);
+            return session.commit();
+        }
+    }
+
+    /**
+     * 一次批量导入。写入是串行的，commit 或 close 后不可再用
+     */
+    class Session implements Consumer<List<IngestionPipeline.Embedded>>, AutoCloseable {
+
+        private final Connection connection;
+
+        private final CopyIn copyIn;
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private final DataOutputStream output = new DataOutputStream(buffer);
+
+        private long rows;
+
+        private boolean finished;
+
+        private Session(Connection connection, CopyIn copyIn) {
+            this.connection = connection;
+            this.copyIn = copyIn;
+        }
+
+        private void writeHeader() throws SQLException {
+            try {
+                output.write(COPY_SIGNATURE);
+                output.writeInt(0);
+                output.writeInt(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            flush();
+        }
+
+        @Override
+        public void accept(List<IngestionPipeline.Embedded> batch) {
+            write(batch);
+        }
+
+        /**
+         * 编码一批片段并写入 COPY 流
+         */
+        void write(List<IngestionPipeline.Embedded> batch) {
+            if (finished) {
+                throw new IllegalStateException("批量导入已结束");
+            }
+            try {
+                for (IngestionPipeline.Embedded embedded : batch) {
+                    encodeRow(output, embedded.document().getId(), embedded.document().getText(),
+                            embedded.document().getMetadata(), embedded.embedding(), dimensions);
+                }
+                flush();
+                rows += batch.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("pgvector COPY 写入失败: " + table, e);
+            }
+        }
+
+        private void flush() throws SQLException {
+            copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            buffer.reset();
+        }
+
+        /**
+         * 结束 COPY、合并到正式表并提交，然后建索引
+         *
+         * @return 合并的行数（同 id 的片段只算一行）
+         */
+        long commit() {
+            if (finished) {
+                throw new IllegalStateException("批量导入已结束");
+            }
+            finished = true;
+            long start = System.nanoTime();
+            int merged;
+            try {
+                output.writeShort(-1);
+                flush();
+                copyIn.endCopy();
+                try (Statement statement = connection.createStatement()) {
+                    if (options.dropIndex()) {
+                        statement.execute("DROP INDEX IF EXISTS " + schemaOf(table) + indexName);
+                    }
+                    // 同一批导入中 id 重复时保留最后写入的一条，否则 ON CONFLICT 会报错
+                    merged = statement.executeUpdate("INSERT INTO " + table + " (id, content, metadata, embedding) "
+                            + "SELECT DISTINCT ON (id) id, content, metadata, embedding FROM bulk_staging ORDER BY id, seq DESC "
+                            + "ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, "
+                            + "embedding = EXCLUDED.embedding");
+                }
+                connection.commit();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("pgvector 批量导入合并失败: " + table, e);
+            }
+            log.info("pgvector 批量导入 {} 行，合并 {} 行，耗时 {} ms", rows, merged, (System.nanoTime() - start) / 1_000_000);
+            createIndex(connection);
+            return merged;
+        }
+
+        /**
+         * 未提交时回滚，临时表随事务删除
+         */
+        @Override
+        public void close() {
+            try {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+            } catch (SQLException e) {
+                log.warn("pgvector 批量导入回滚失败: {}", e.toString());
+            } finally {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    /**
+     * 建 HNSW 索引（已存在时跳过）
+     */
+    private void createIndex(Connection connection) {
+        long start = System.nanoTime();
+        try {
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                if (options.maintenanceWorkMem() != null && !options.maintenanceWorkMem().isBlank()) {
+                    statement.execute("SET maintenance_work_mem = '" + options.maintenanceWorkMem() + "'");
+                }
+                if (options.parallelWorkers() > 0) {
+                    statement.execute("SET max_parallel_maintenance_workers = " + options.parallelWorkers());
+                }
+                statement.execute("CREATE INDEX IF NOT EXISTS " + indexName + " ON " + table
+                        + " USING hnsw (embedding vector_cosine_ops) WITH (m = " + options.hnswM()
+                        + ", ef_construction = " + options.hnswEfConstruction() + ")");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("pgvector 建索引失败: " + table, e);
+        }
+        log.info("pgvector 索引 {} 就绪，耗时 {} ms", indexName, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String schemaOf(String qualifiedTable) {
+        return qualifiedTable.substring(0, qualifiedTable.indexOf('.') + 1);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("pgvector 连接关闭失败: {}", e.toString());
+        }
+    }
+
+    /**
+     * 按 COPY 二进制格式编码一行：字段数，然后每个字段为长度加内容（网络字节序）
+     */
+    static void encodeRow(DataOutputStream output, String id, String content, Map<String, Object> metadata,
+                          float[] embedding, int dimensions) throws IOException {
+        if (embedding.length != dimensions) {
+            throw new IllegalArgumentException("向量维度不一致: " + embedding.length + " != " + dimensions);
+        }
+        output.writeShort(4);
+        UUID uuid = uuid(id);
+        output.writeInt(16);
+        output.writeLong(uuid.getMostSignificantBits());
+        output.writeLong(uuid.getLeastSignificantBits());
+        writeText(output, content);
+        writeText(output, json(metadata));
+        // pgvector 的二进制格式：维度、保留位，然后是 float4
+        output.writeInt(4 + 4 * embedding.length);
+        output.writeShort(embedding.length);
+        output.writeShort(0);
+        for (float value : embedding) {
+            output.writeFloat(value);
+        }
+    }
+
+    private static void writeText(DataOutputStream output, String text) throws IOException {
+        if (text == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * 片段 id 为 UUID 时直接使用，否则按名字派生
+     */
+    static UUID uuid(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String json(Map<String, Object> metadata) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(metadata == null ? Map.of() : metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("元信息无法序列化为 JSON: " + metadata, e);
+        }
+    }
+}
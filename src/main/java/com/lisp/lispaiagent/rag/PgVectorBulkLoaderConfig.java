@@ -0,0 +1,117 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import java.util.List;
+
+/**
+ * pgvector 批量导入配置：配置了 lisp.rag.pgvector.url 时生效。
+ * 批量导入是一次性操作：只有显式开启 bulk-load.enabled（建议仅在命令行传入）且配置了导入位置时，
+ * 应用启动后才在后台把这些位置的语料经流式流水线批量导入 pgvector，普通重启不会重复导入
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "lisp.rag.pgvector", name = "url")
+@Slf4j
+class PgVectorBulkLoaderConfig {
+
+    private final StreamingIngestion streamingIngestion;
+
+    @Value("${lisp.rag.pgvector.url}")
+    private String url;
+
+    @Value("${lisp.rag.pgvector.username:}")
+    private String username;
+
+    @Value("${lisp.rag.pgvector.password:}")
+    private String password;
+
+    @Value("${lisp.rag.pgvector.schema:public}")
+    private String schema;
+
+    @Value("${lisp.rag.pgvector.table:vector_store}")
+    private String table;
+
+    @Value("${lisp.rag.pgvector.dimensions:1536}")
+    private int dimensions;
+
+    @Value("${lisp.rag.pgvector.initialize-schema:true}")
+    private boolean initializeSchema;
+
+    /**
+     * 是否在本次启动时执行批量导入
+     */
+    @Value("${lisp.rag.pgvector.bulk-load.enabled:false}")
+    private boolean bulkLoadEnabled;
+
+    @Value("${lisp.rag.pgvector.bulk-load.locations:}")
+    private List<String> locations;
+
+    /**
+     * 导入期间删除并重建 HNSW 索引，合并期间表被锁定，只适合空表或停机时的首次导入
+     */
+    @Value("${lisp.rag.pgvector.bulk-load.drop-index:false}")
+    private boolean dropIndex;
+
+    @Value("${lisp.rag.pgvector.bulk-load.hnsw-m:16}")
+    private int hnswM;
+
+    @Value("${lisp.rag.pgvector.bulk-load.hnsw-ef-construction:64}")
+    private int hnswEfConstruction;
+
+    @Value("${lisp.rag.pgvector.bulk-load.maintenance-work-mem:}")
+    private String maintenanceWorkMem;
+
+    @Value("${lisp.rag.pgvector.bulk-load.parallel-workers:0}")
+    private int parallelWorkers;
+
+    PgVectorBulkLoaderConfig(StreamingIngestion streamingIngestion) {
+        this.streamingIngestion = streamingIngestion;
+    }
+
+    @Bean
+    PgVectorBulkLoader pgVectorBulkLoader() {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(url);
+        if (!username.isEmpty()) {
+            dataSource.setUser(username);
+            dataSource.setPassword(password);
+        }
+        PgVectorBulkLoader loader = new PgVectorBulkLoader(dataSource, schema, table, dimensions,
+                new PgVectorBulkLoader.Options(dropIndex, hnswM, hnswEfConstruction, maintenanceWorkMem, parallelWorkers));
+        if (initializeSchema) {
+            loader.initializeSchema();
+        }
+        return loader;
+    }
+
+    /**
+     * 开启了批量导入时，应用启动完成后在后台导入
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void startBulkLoad() {
+        if (!bulkLoadEnabled) {
+            return;
+        }
+        List<String> targets = locations.stream().map(String::strip).filter(location -> !location.isEmpty()).toList();
+        if (targets.isEmpty()) {
+            log.warn("已开启 pgvector 批量导入，但未配置导入位置（lisp.rag.pgvector.bulk-load.locations）");
+            return;
+        }
+        PgVectorBulkLoader loader = pgVectorBulkLoader();
+        Thread.ofVirtual().name("pgvector-bulk-load").start(() -> {
+            try {
+                long merged = loader.load(streamingIngestion, targets);
+                log.info("pgvector 批量导入完成，共 {} 行", merged);
+            } catch (RuntimeException e) {
+                log.error("pgvector 批量导入失败", e);
+            }
+        });
+    }
+}
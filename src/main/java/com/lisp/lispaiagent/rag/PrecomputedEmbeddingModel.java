@@ -0,0 +1,62 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 嵌入模型装饰器：按文档 id 返回预先算好的向量（来自快照或批量计算），
+ * 其余请求（如检索时的查询文本）交给实际的嵌入模型。
+ * SimpleVectorStore 会逐个文档调用 embed(Document)，经由此类即可避免逐个发起网络请求。
+ */
+class PrecomputedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final Map<String, float[]> vectors = new ConcurrentHashMap<>();
+
+    PrecomputedEmbeddingModel(EmbeddingModel delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 登记文档的预计算向量
+     */
+    void put(String documentId, float[] embedding) {
+        vectors.put(documentId, embedding);
+    }
+
+    /**
+     * 移除单个文档的预计算向量
+     */
+    void remove(String documentId) {
+        vectors.remove(documentId);
+    }
+
+    /**
+     * 文档写入向量库后清空，避免重复占用内存
+     */
+    void clear() {
+        vectors.clear();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        float[] embedding = vectors.get(document.getId());
+        return embedding != null ? embedding : delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
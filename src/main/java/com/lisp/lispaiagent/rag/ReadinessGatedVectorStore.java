@@ -0,0 +1,60 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 在后台导入完成前对检索进行门控的向量库。
+ * 导入未完成时检索最多等待指定时间，超时仍未就绪则返回空结果，
+ * 检索增强退化为普通对话，而不是阻塞请求或报错。
+ */
+@Slf4j
+class ReadinessGatedVectorStore implements VectorStore {
+
+    private final VectorStore delegate;
+
+    private final IngestionStatus status;
+
+    private final Duration waitTimeout;
+
+    ReadinessGatedVectorStore(VectorStore delegate, IngestionStatus status, Duration waitTimeout) {
+        this.delegate = delegate;
+        this.status = status;
+        this.waitTimeout = waitTimeout;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (!status.awaitReady(waitTimeout)) {
+            log.warn("知识库尚未就绪（{}），本次检索返回空结果", status.getState());
+            return List.of();
+        }
+        return delegate.similaritySearch(request);
+    }
+}
@@ -0,0 +1,55 @@
+package com.lisp.lispaiagent.rag;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 Vector API 的点积实现，只在 jdk.incubator.vector 模块可用时由 {@link VectorKernels} 加载。
+ * 该文件在 pom 中由单独的编译步骤带 --add-modules jdk.incubator.vector 编译
+ */
+final class SimdVectorKernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    /**
+     * 与浮点向量通道数相同的字节向量，用于 int8 到 float 的转换
+     */
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(FLOATS.length() * Byte.SIZE));
+
+    private SimdVectorKernels() {
+    }
+
+    static float dot(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        int bound = FLOATS.loopBound(a.length);
+        for (; i < bound; i += FLOATS.length()) {
+            sum = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    static float dot(float[] a, byte[] codes) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        int bound = FLOATS.loopBound(a.length);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector decoded = (FloatVector) ByteVector.fromArray(BYTES, codes, i)
+                    .convertShape(VectorOperators.B2F, FLOATS, 0);
+            sum = FloatVector.fromArray(FLOATS, a, i).fma(decoded, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * codes[i];
+        }
+        return result;
+    }
+}
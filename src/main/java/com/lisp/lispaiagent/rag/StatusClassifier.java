@@ -0,0 +1,50 @@
+package com.lisp.lispaiagent.rag;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 按用户问题中的词语判断其情感状态（单身、恋爱、已婚），对应知识库文档的 status 元信息。
+ * 只做词表匹配：命中词最多的状态唯一时返回该状态，没有命中或难以区分时返回空，由调用方检索全部文档。
+ */
+class StatusClassifier {
+
+    private static final Map<String, List<String>> LEXICON = new LinkedHashMap<>();
+
+    static {
+        LEXICON.put("单身", List.of("单身", "脱单", "表白", "暗恋", "相亲", "追求", "追她", "追他", "心动", "喜欢的人", "搭讪", "告白", "母胎"));
+        LEXICON.put("恋爱", List.of("男朋友", "女朋友", "男友", "女友", "对象", "约会", "异地恋", "分手", "吵架", "冷战", "复合", "热恋", "恋爱中", "见家长"));
+        LEXICON.put("已婚", List.of("老公", "老婆", "婚后", "结婚", "夫妻", "婆媳", "婆婆", "岳父", "岳母", "孩子", "配偶", "家务", "婚姻", "丈夫", "妻子", "离婚", "出轨"));
+    }
+
+    /**
+     * @param text 用户问题
+     * @return 判断出的状态，无法判断时为空
+     */
+    Optional<String> classify(String text) {
+        if (text == null || text.isBlank()) {
+            return Optional.empty();
+        }
+        String best = null;
+        int bestHits = 0;
+        boolean tie = false;
+        for (Map.Entry<String, List<String>> entry : LEXICON.entrySet()) {
+            int hits = 0;
+            for (String word : entry.getValue()) {
+                if (text.contains(word)) {
+                    hits++;
+                }
+            }
+            if (hits > bestHits) {
+                best = entry.getKey();
+                bestHits = hits;
+                tie = false;
+            } else if (hits > 0 && hits == bestHits) {
+                tie = true;
+            }
+        }
+        return tie ? Optional.empty() : Optional.ofNullable(best);
+    }
+}
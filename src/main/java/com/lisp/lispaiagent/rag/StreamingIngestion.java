@@ -0,0 +1,88 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.FileSystemResource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 流式知识库导入：读取、切分、补充关键词、计算向量、写入向量库五个阶段串成一条 Reactor 流水线。
+ * 各阶段并行执行且在途数据有上限，下游处理不过来时上游暂停读取文件，
+ * 流水线自身在途的只有若干批片段。整体内存占用取决于 sink：写入 pgvector（{@link PgVectorBulkLoader}）
+ * 时可以导入远大于堆内存的语料；写入本地知识库时片段和向量都留在进程内，仍受堆内存和堆外映射的限制。
+ * 片段 id 为内容哈希，重复导入同一语料时写入的是相同的 id。
+ */
+@Slf4j
+class StreamingIngestion {
+
+    private final LoveAppDocumentLoader documentLoader;
+
+    private final MyTokenTextSplitter textSplitter;
+
+    private final IngestionPipeline pipeline;
+
+    private final int readParallelism;
+
+    private final int storeBatchSize;
+
+    /**
+     * @param readParallelism 同时读取和切分的文件数
+     * @param storeBatchSize 每次写入向量库的片段数
+     */
+    StreamingIngestion(LoveAppDocumentLoader documentLoader, MyTokenTextSplitter textSplitter, IngestionPipeline pipeline,
+                       int readParallelism, int storeBatchSize) {
+        this.documentLoader = documentLoader;
+        this.textSplitter = textSplitter;
+        this.pipeline = pipeline;
+        this.readParallelism = readParallelism;
+        this.storeBatchSize = storeBatchSize;
+    }
+
+    /**
+     * 导入指定位置的全部文档，阻塞直到完成
+     *
+     * @param locations 文档位置，格式见 {@link LoveAppDocumentLoader#stream}
+     * @param sink 按批写入计算过向量的片段，调用是串行的
+     * @return 写入的片段数
+     */
+    long ingest(List<String> locations, Consumer<List<IngestionPipeline.Embedded>> sink) {
+        long start = System.nanoTime();
+        Flux<Document> chunks = documentLoader.stream(locations, readParallelism)
+                .flatMapSequential(document -> Mono.fromCallable(() -> split(document))
+                        .subscribeOn(Schedulers.parallel()), Math.max(1, readParallelism), 1)
+                .flatMapIterable(Function.identity(), 1);
+        Long count = pipeline.embed(pipeline.enrich(chunks))
+                .buffer(Math.max(1, storeBatchSize))
+                .concatMap(batch -> Mono.fromRunnable(() -> sink.accept(batch)).thenReturn(batch.size()), 1)
+                .reduce(0L, Long::sum)
+                .block();
+        log.info("流式导入 {} 完成，{} 个片段，耗时 {} ms", locations, count, (System.nanoTime() - start) / 1_000_000);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 读取并切分单个文件，与流式导入得到的片段相同
+     */
+    List<Document> chunks(Path file) {
+        return documentLoader.read(new FileSystemResource(file)).stream()
+                .flatMap(document -> split(document).stream())
+                .toList();
+    }
+
+    /**
+     * 切分单个文档，片段以内容哈希为 id
+     */
+    private List<Document> split(Document document) {
+        return textSplitter.splitDocuments(List.of(document)).stream()
+                .map(chunk -> Document.builder().id(EmbeddingSnapshot.contentHash(chunk)).text(chunk.getText())
+                        .metadata(chunk.getMetadata()).build())
+                .toList();
+    }
+}
@@ -0,0 +1,101 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * 向量点积计算。启动参数包含 --add-modules jdk.incubator.vector 时使用 Vector API 的 SIMD 实现，
+ * 否则退化为标量循环，两者结果仅有浮点舍入上的差异。
+ * 打包后的 jar 需以 java --add-modules jdk.incubator.vector -jar ... 启动才会启用 SIMD。
+ *
+ * SIMD 实现 {@link SimdVectorKernels} 在 pom 中单独编译，这里通过方法句柄调用，
+ * 其余代码编译时不依赖孵化模块，也就不会输出孵化模块警告。
+ */
+@Slf4j
+final class VectorKernels {
+
+    private static final MethodHandle SIMD_DOT = simdDot(float[].class);
+
+    private static final MethodHandle SIMD_DOT_CODES = simdDot(byte[].class);
+
+    /**
+     * 是否使用 SIMD 实现
+     */
+    static final boolean SIMD = SIMD_DOT != null && SIMD_DOT_CODES != null;
+
+    static {
+        if (SIMD) {
+            log.info("向量距离计算使用 Vector API SIMD 实现");
+        } else {
+            log.info("向量距离计算使用标量实现，启动参数加上 --add-modules jdk.incubator.vector 可启用 SIMD");
+        }
+    }
+
+    private VectorKernels() {
+    }
+
+    private static MethodHandle simdDot(Class<?> secondArgument) {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().findStatic(Class.forName("com.lisp.lispaiagent.rag.SimdVectorKernels"), "dot",
+                    MethodType.methodType(float.class, float[].class, secondArgument));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("SIMD 点积实现加载失败，使用标量实现", e);
+            return null;
+        }
+    }
+
+    /**
+     * 两个浮点向量的点积
+     */
+    static float dot(float[] a, float[] b) {
+        return SIMD ? simdDot(a, b) : scalarDot(a, b);
+    }
+
+    /**
+     * 浮点向量与 int8 量化向量的点积（未乘量化比例）
+     */
+    static float dot(float[] a, byte[] codes) {
+        return SIMD ? simdDot(a, codes) : scalarDot(a, codes);
+    }
+
+    /**
+     * SIMD 实现的点积，只能在 {@link #SIMD} 为 true 时调用
+     */
+    static float simdDot(float[] a, float[] b) {
+        try {
+            return (float) SIMD_DOT.invokeExact(a, b);
+        } catch (Throwable e) {
+            throw new IllegalStateException("SIMD 点积计算失败", e);
+        }
+    }
+
+    static float simdDot(float[] a, byte[] codes) {
+        try {
+            return (float) SIMD_DOT_CODES.invokeExact(a, codes);
+        } catch (Throwable e) {
+            throw new IllegalStateException("SIMD 点积计算失败", e);
+        }
+    }
+
+    static float scalarDot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static float scalarDot(float[] a, byte[] codes) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * codes[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,293 @@
+package com.lisp.lispaiagent.rag;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 堆外向量存储：向量按固定长度的槽位写入内存映射文件，不占用 Java 堆，也不产生 GC 压力。
+ *
+ * 可选量化：FLOAT16 每维 2 字节，INT8 每维 1 字节（每个向量一个对称量化比例），
+ * 检索时用量化向量计算近似相似度，再由调用方对少量候选用全精度向量重新打分。
+ * 全精度向量保存在单独的文件中，只在重新打分时被访问，量化后常驻内存的只有量化向量。
+ * 文件按块映射（每块 64 MiB），容量不足时追加新块；文件随 close 或进程退出删除。
+ * JDK 21 没有公开的解除映射接口，映射的内存要等缓冲区被 GC 回收后才释放，
+ * 因此需要清空重建时使用 {@link #reset()} 复用已映射的块，而不是关闭后新建。
+ */
+class VectorStorage implements AutoCloseable {
+
+    enum Encoding {
+        /**
+         * 不量化，近似相似度即全精度相似度
+         */
+        FLOAT32(Float.BYTES),
+        /**
+         * 半精度浮点
+         */
+        FLOAT16(Short.BYTES),
+        /**
+         * 对称 int8 量化
+         */
+        INT8(Byte.BYTES);
+
+        private final int bytesPerDimension;
+
+        Encoding(int bytesPerDimension) {
+            this.bytesPerDimension = bytesPerDimension;
+        }
+    }
+
+    private static final long CHUNK_BYTES = 64L << 20;
+
+    private final int dimensions;
+
+    private final Encoding encoding;
+
+    private final Region full;
+
+    /**
+     * 量化向量，FLOAT32 时为 null
+     */
+    private final Region codes;
+
+    /**
+     * INT8 每个向量的量化比例
+     */
+    private float[] scales = new float[0];
+
+    private int size;
+
+    private final ThreadLocal<float[]> floatScratch;
+
+    private final ThreadLocal<short[]> shortScratch;
+
+    private final ThreadLocal<byte[]> byteScratch;
+
+    /**
+     * @param directory 映射文件所在目录
+     * @param dimensions 向量维度
+     * @param encoding 检索时使用的编码
+     */
+    VectorStorage(Path directory, int dimensions, Encoding encoding) {
+        this.dimensions = dimensions;
+        this.encoding = encoding;
+        try {
+            Files.createDirectories(directory);
+            this.full = new Region(directory, ".f32", (long) dimensions * Float.BYTES);
+            this.codes = encoding == Encoding.FLOAT32 ? null
+                    : new Region(directory, "." + encoding.name().toLowerCase(), (long) dimensions * encoding.bytesPerDimension);
+        } catch (IOException e) {
+            throw new UncheckedIOException("向量存储文件创建失败: " + directory, e);
+        }
+        this.floatScratch = ThreadLocal.withInitial(() -> new float[dimensions]);
+        this.shortScratch = ThreadLocal.withInitial(() -> new short[dimensions]);
+        this.byteScratch = ThreadLocal.withInitial(() -> new byte[dimensions]);
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    Encoding encoding() {
+        return encoding;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 写入一个向量，返回其槽位。写入需由调用方串行化
+     */
+    int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量维度不一致: " + vector.length + " != " + dimensions);
+        }
+        int slot = size;
+        full.floats(slot).put(full.index(slot) / Float.BYTES, vector);
+        switch (encoding) {
+            case FLOAT16 -> {
+                short[] halves = new short[dimensions];
+                for (int i = 0; i < dimensions; i++) {
+                    halves[i] = Float.floatToFloat16(vector[i]);
+                }
+                codes.shorts(slot).put(codes.index(slot) / Short.BYTES, halves);
+            }
+            case INT8 -> {
+                float max = 0;
+                for (float value : vector) {
+                    max = Math.max(max, Math.abs(value));
+                }
+                float scale = max == 0 ? 1 : max / 127;
+                byte[] quantized = new byte[dimensions];
+                for (int i = 0; i < dimensions; i++) {
+                    quantized[i] = (byte) Math.round(vector[i] / scale);
+                }
+                codes.buffer(slot).put(codes.index(slot), quantized);
+                if (slot >= scales.length) {
+                    scales = Arrays.copyOf(scales, Math.max(16, scales.length * 2));
+                }
+                scales[slot] = scale;
+            }
+            default -> {
+            }
+        }
+        size++;
+        return slot;
+    }
+
+    /**
+     * 读取全精度向量
+     */
+    float[] get(int slot) {
+        float[] vector = new float[dimensions];
+        full.floats(slot).get(full.index(slot) / Float.BYTES, vector);
+        return vector;
+    }
+
+    /**
+     * 查询向量与槽位向量的全精度点积
+     */
+    float exact(float[] query, int slot) {
+        float[] vector = floatScratch.get();
+        full.floats(slot).get(full.index(slot) / Float.BYTES, vector);
+        return VectorKernels.dot(query, vector);
+    }
+
+    /**
+     * 查询向量与槽位向量按检索编码计算的点积
+     */
+    float approximate(float[] query, int slot) {
+        return switch (encoding) {
+            case FLOAT32 -> exact(query, slot);
+            case FLOAT16 -> {
+                short[] halves = shortScratch.get();
+                codes.shorts(slot).get(codes.index(slot) / Short.BYTES, halves);
+                float[] vector = floatScratch.get();
+                for (int i = 0; i < dimensions; i++) {
+                    vector[i] = Float.float16ToFloat(halves[i]);
+                }
+                yield VectorKernels.dot(query, vector);
+            }
+            case INT8 -> {
+                byte[] quantized = byteScratch.get();
+                codes.buffer(slot).get(codes.index(slot), quantized);
+                yield VectorKernels.dot(query, quantized) * scales[slot];
+            }
+        };
+    }
+
+    /**
+     * 清空所有向量，已映射的块保留，由之后的写入覆盖
+     */
+    void reset() {
+        size = 0;
+    }
+
+    /**
+     * 常驻内存的映射字节数（检索时访问的编码），FLOAT32 时即全精度向量
+     */
+    long searchBytes() {
+        return (long) size * dimensions * encoding.bytesPerDimension;
+    }
+
+    /**
+     * 关闭并删除映射文件，映射的内存在缓冲区被回收后释放
+     */
+    @Override
+    public void close() {
+        full.close();
+        if (codes != null) {
+            codes.close();
+        }
+    }
+
+    /**
+     * 一个按块映射、按需扩展的文件
+     */
+    private static final class Region {
+
+        private final Path file;
+
+        private final FileChannel channel;
+
+        private final long slotBytes;
+
+        private final int slotsPerChunk;
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+
+        private final List<FloatBuffer> floatViews = new ArrayList<>();
+
+        private final List<ShortBuffer> shortViews = new ArrayList<>();
+
+        private Region(Path directory, String suffix, long slotBytes) throws IOException {
+            this.file = Files.createTempFile(directory, "vectors-", suffix);
+            file.toFile().deleteOnExit();
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.slotBytes = slotBytes;
+            this.slotsPerChunk = (int) Math.max(1, CHUNK_BYTES / slotBytes);
+        }
+
+        /**
+         * 槽位在所属块内的字节偏移
+         */
+        private int index(int slot) {
+            return (int) ((slot % slotsPerChunk) * slotBytes);
+        }
+
+        private ByteBuffer buffer(int slot) {
+            int chunk = slot / slotsPerChunk;
+            while (chunks.size() <= chunk) {
+                map(chunks.size());
+            }
+            return chunks.get(chunk);
+        }
+
+        private FloatBuffer floats(int slot) {
+            buffer(slot);
+            return floatViews.get(slot / slotsPerChunk);
+        }
+
+        private ShortBuffer shorts(int slot) {
+            buffer(slot);
+            return shortViews.get(slot / slotsPerChunk);
+        }
+
+        private void map(int chunk) {
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE,
+                        chunk * slotsPerChunk * slotBytes, slotsPerChunk * slotBytes);
+                ByteBuffer buffer = mapped.order(ByteOrder.nativeOrder());
+                chunks.add(buffer);
+                floatViews.add(buffer.asFloatBuffer());
+                shortViews.add(buffer.asShortBuffer());
+            } catch (IOException e) {
+                throw new UncheckedIOException("向量存储文件映射失败: " + file, e);
+            }
+        }
+
+        private void close() {
+            chunks.clear();
+            floatViews.clear();
+            shortViews.clear();
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("向量存储文件删除失败: " + file, e);
+            }
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.lisp.lispaiagent.tools;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.http.HttpUtil;
 import com.lisp.lispaiagent.constant.FileConstant;
+import com.lisp.lispaiagent.http.OutboundHttpClient;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
-import java.io.File;
+import java.nio.file.Path;
 
 public class ResourceDownloadTool {
 
+    private final OutboundHttpClient httpClient;
+
+    public ResourceDownloadTool() {
+        this(OutboundHttpClient.shared());
+    }
+
+    public ResourceDownloadTool(OutboundHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
     @Tool(description = "Download a resource from a given URL")
     public String downloadResource(@ToolParam(description = "URL of the resource to download") String url, @ToolParam(description = "Name of the file to save the downloaded resource") String fileName) {
         String fileDir = FileConstant.FILE_SAVE_DIR + "/download";
@@ -17,8 +27,8 @@ public class ResourceDownloadTool {
         try {
             // 创建目录
             FileUtil.mkdir(fileDir);
-            // 使用 Hutool 的 downloadFile 方法下载资源
-            HttpUtil.downloadFile(url, new File(filePath));
+            // 使用共享客户端下载资源
+            httpClient.download(url, Path.of(filePath));
             return "Resource downloaded successfully to: " + filePath;
         } catch (Exception e) {
             return "Error downloading resource: " + e.getMessage();
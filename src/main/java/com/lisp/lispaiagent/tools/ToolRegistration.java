@@ -1,5 +1,6 @@
 package com.lisp.lispaiagent.tools;
 
+import com.lisp.lispaiagent.http.OutboundHttpClient;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbacks;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,11 +14,11 @@ public class ToolRegistration {
     private String searchApiKey;
 
     @Bean
-    public ToolCallback[] allTools() {
+    public ToolCallback[] allTools(OutboundHttpClient outboundHttpClient) {
         FileOperationTool fileOperationTool = new FileOperationTool();
-        WebSearchTool webSearchTool = new WebSearchTool(searchApiKey);
-        WebScrapingTool webScrapingTool = new WebScrapingTool();
-        ResourceDownloadTool resourceDownloadTool = new ResourceDownloadTool();
+        WebSearchTool webSearchTool = new WebSearchTool(searchApiKey, outboundHttpClient);
+        WebScrapingTool webScrapingTool = new WebScrapingTool(outboundHttpClient);
+        ResourceDownloadTool resourceDownloadTool = new ResourceDownloadTool(outboundHttpClient);
         TerminalOperationTool terminalOperationTool = new TerminalOperationTool();
         PDFGenerationTool pdfGenerationTool = new PDFGenerationTool();
         TerminateTool terminateTool = new TerminateTool();
@@ -1,19 +1,34 @@
 package com.lisp.lispaiagent.tools;
 
+import com.lisp.lispaiagent.http.OutboundHttpClient;
 import org.jsoup.Jsoup;
 
 import org.jsoup.nodes.Document;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Map;
 
 public class WebScrapingTool {
 
+    private final OutboundHttpClient httpClient;
+
+    public WebScrapingTool() {
+        this(OutboundHttpClient.shared());
+    }
+
+    public WebScrapingTool(OutboundHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
     @Tool(description = "Scrape the content of a web page")
     public String scrapeWebPage(@ToolParam(description = "URL of the web page to scrape") String url) {
         try {
-            Document document = Jsoup.connect(url).get();
+            // 通过共享客户端获取页面，由 Jsoup 根据页面声明识别字符集
+            byte[] html = httpClient.getBytes(url, Map.of());
+            Document document = Jsoup.parse(new ByteArrayInputStream(html), null, url);
             return document.html();
         } catch (IOException e) {
             return "Error scraping web page: " + e.getMessage();
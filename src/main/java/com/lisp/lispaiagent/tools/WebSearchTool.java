@@ -4,9 +4,11 @@ import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.lisp.lispaiagent.http.OutboundHttpClient;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,8 +21,15 @@ public class WebSearchTool {
 
     private final String apiKey;
 
+    private final OutboundHttpClient httpClient;
+
     public WebSearchTool(String apiKey) {
+        this(apiKey, OutboundHttpClient.shared());
+    }
+
+    public WebSearchTool(String apiKey, OutboundHttpClient httpClient) {
         this.apiKey = apiKey;
+        this.httpClient = httpClient;
     }
 
     @Tool(description = "Search for information from Baidu Search Engine")
@@ -31,7 +40,8 @@ public class WebSearchTool {
         paramMap.put("api_key", apiKey);
         paramMap.put("engine", "baidu");
         try {
-            String response = HttpUtil.get(SEARCH_API_URL, paramMap);
+            String url = HttpUtil.urlWithForm(SEARCH_API_URL, paramMap, StandardCharsets.UTF_8, true);
+            String response = httpClient.getString(url, Map.of());
             // 取出返回结果的前 5 条
             JSONObject jsonObject = JSONUtil.parseObj(response);
             // 提取 organic_results 部分
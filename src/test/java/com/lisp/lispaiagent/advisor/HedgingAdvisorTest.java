@@ -0,0 +1,71 @@
+package com.lisp.lispaiagent.advisor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+import java.util.Map;
+
+class HedgingAdvisorTest {
+
+    @Test
+    void slowPrimaryIsHedged() {
+        ChatModel fast = prompt -> response("hedge");
+        HedgingAdvisor advisor = new HedgingAdvisor(true, fast, 0.95, 10, 100, 1.0, 50);
+        long start = System.currentTimeMillis();
+        AdvisedResponse advisedResponse = advisor.aroundCall(request(fast), advisedRequest -> {
+            sleep(3000);
+            return new AdvisedResponse(response("primary"), Map.of());
+        });
+        Assertions.assertEquals("hedge", advisedResponse.response().getResult().getOutput().getText());
+        Assertions.assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    void hedgedCallsStillSampleThePrimaryLatency() {
+        ChatModel fast = prompt -> response("hedge");
+        HedgingAdvisor advisor = new HedgingAdvisor(true, fast, 0.95, 10, 50, 1.0, 50);
+        for (int i = 0; i < 30; i++) {
+            advisor.aroundCall(request(fast), advisedRequest -> {
+                sleep(3000);
+                return new AdvisedResponse(response("primary"), Map.of());
+            });
+        }
+        // 每次都是对冲胜出，窗口中记录的是主请求被取消时已等待的时长，不低于初始对冲阈值
+        Assertions.assertTrue(advisor.hedgeDelayMillis() >= 50, String.valueOf(advisor.hedgeDelayMillis()));
+        advisor.close();
+    }
+
+    @Test
+    void budgetLimitsHedging() {
+        ChatModel fast = prompt -> response("hedge");
+        HedgingAdvisor advisor = new HedgingAdvisor(true, fast, 0.95, 10, 50, 0.0, 50);
+        AdvisedResponse advisedResponse = advisor.aroundCall(request(fast), advisedRequest -> {
+            sleep(200);
+            return new AdvisedResponse(response("primary"), Map.of());
+        });
+        Assertions.assertEquals("primary", advisedResponse.response().getResult().getOutput().getText());
+    }
+
+    private static AdvisedRequest request(ChatModel chatModel) {
+        return AdvisedRequest.builder().chatModel(chatModel).userText("你好").build();
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.lisp.lispaiagent.advisor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class MyLoggerAdvisorTest {
+
+    @Test
+    void redactsAndTruncatesUnsampledText() {
+        MyLoggerAdvisor advisor = new MyLoggerAdvisor(0, 10, List.of("1[3-9]\\d{9}"), 16);
+        String json = advisor.format(new MyLoggerAdvisor.LogEvent("call", "chat-1", "qwen-plus", 12,
+                5, 7, 12, false, "我的手机号是13812345678", "a".repeat(50), null));
+        Assertions.assertTrue(json.contains("\"conversationId\":\"chat-1\""));
+        Assertions.assertTrue(json.contains("\"totalTokens\":12"));
+        Assertions.assertFalse(json.contains("13812345678"));
+        Assertions.assertTrue(json.contains("aaaaaaaaaa...(50 chars)"));
+    }
+
+    @Test
+    void sampledEventKeepsFullText() {
+        MyLoggerAdvisor advisor = new MyLoggerAdvisor(1, 10, List.of(), 16);
+        String json = advisor.format(new MyLoggerAdvisor.LogEvent("call", null, null, 1,
+                null, null, null, true, "q", "a".repeat(50), null));
+        Assertions.assertTrue(json.contains("a".repeat(50) + "\""));
+    }
+
+    @Test
+    void fullQueueDropsOldestEvent() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncLogWriter<Integer> writer = new AsyncLogWriter<>("test-log-writer", 2, event -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.submit(0);
+        Assertions.assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        for (int i = 1; i <= 4; i++) {
+            writer.submit(i);
+        }
+        Assertions.assertEquals(2, writer.getDropped());
+        release.countDown();
+    }
+
+    @Test
+    void redactPatternsBindAsListWithoutSplittingOnCommas() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("lisp.ai.logging.redact-patterns[0]", "\\d{16,19}")
+                .withProperty("lisp.ai.logging.redact-patterns[1]", "1[3-9]\\d{9}");
+        try (MyLoggerAdvisor advisor = new AdvisorConfig().myLoggerAdvisor(environment)) {
+            String json = advisor.format(new MyLoggerAdvisor.LogEvent("call", null, null, 1,
+                    null, null, null, true, "卡号6222021234567890123，手机13812345678", null, null));
+            Assertions.assertTrue(json.contains("卡号***，手机***"), json);
+        }
+    }
+
+    @Test
+    void closeStopsWorkerAndFlushesRemainingEvents() throws InterruptedException {
+        List<Integer> written = new ArrayList<>();
+        CountDownLatch blocked = new CountDownLatch(1);
+        AsyncLogWriter<Integer> writer = new AsyncLogWriter<>("closing-log-writer", 4, event -> {
+            synchronized (written) {
+                written.add(event);
+            }
+            blocked.countDown();
+        });
+        writer.submit(0);
+        Assertions.assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        writer.close();
+        writer.submit(1);
+        writer.close();
+        Assertions.assertEquals(List.of(0, 1), written);
+        Assertions.assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().equals("closing-log-writer")));
+    }
+}
@@ -0,0 +1,89 @@
+package com.lisp.lispaiagent.advisor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RelevantChatMemoryAdvisorTest {
+
+    /**
+     * 按关键词出现与否生成向量的嵌入模型，统计被嵌入的文本数
+     */
+    private static class KeywordEmbeddingModel implements EmbeddingModel {
+
+        private static final List<String> KEYWORDS = List.of("生日", "礼物", "吵架", "天气", "电影");
+
+        private final AtomicInteger embedded = new AtomicInteger();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embedded.incrementAndGet();
+                float[] vector = new float[KEYWORDS.size()];
+                for (int i = 0; i < KEYWORDS.size(); i++) {
+                    vector[i] = text.contains(KEYWORDS.get(i)) ? 1 : 0;
+                }
+                embeddings.add(new Embedding(vector, embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    }
+
+    private static void turn(ChatMemory memory, String user, String assistant) {
+        memory.add("c1", List.of(new UserMessage(user), new AssistantMessage(assistant)));
+    }
+
+    @Test
+    void recallsRelevantOldTurnPlusRecentTurns() {
+        ChatMemory memory = new InMemoryChatMemory();
+        turn(memory, "她下个月生日", "可以提前准备礼物");
+        turn(memory, "今天天气不错", "适合出去走走");
+        turn(memory, "周末看电影吗", "可以看看爱情片");
+        turn(memory, "晚饭吃什么", "火锅");
+        turn(memory, "好的", "祝你愉快");
+        KeywordEmbeddingModel embeddingModel = new KeywordEmbeddingModel();
+        RelevantChatMemoryAdvisor advisor = new RelevantChatMemoryAdvisor(memory, embeddingModel, 1, 2, 0.5, 10);
+
+        List<Message> recalled = advisor.recall("c1", "送什么生日礼物好");
+
+        List<String> texts = recalled.stream().map(Message::getText).toList();
+        Assertions.assertEquals(List.of("她下个月生日", "可以提前准备礼物", "晚饭吃什么", "火锅", "好的", "祝你愉快"), texts);
+        // 3 个较早的轮次 + 1 个问题
+        Assertions.assertEquals(4, embeddingModel.embedded.get());
+
+        turn(memory, "再见", "再见");
+        advisor.recall("c1", "生日");
+        // 只为新移出窗口的 1 个轮次和问题计算向量
+        Assertions.assertEquals(6, embeddingModel.embedded.get());
+    }
+
+    @Test
+    void shortConversationSkipsEmbedding() {
+        ChatMemory memory = new InMemoryChatMemory();
+        turn(memory, "你好", "你好，有什么可以帮你");
+        KeywordEmbeddingModel embeddingModel = new KeywordEmbeddingModel();
+        RelevantChatMemoryAdvisor advisor = new RelevantChatMemoryAdvisor(memory, embeddingModel, 4, 3, 0.5, 10);
+
+        Assertions.assertEquals(2, advisor.recall("c1", "生日").size());
+        Assertions.assertEquals(0, embeddingModel.embedded.get());
+    }
+}
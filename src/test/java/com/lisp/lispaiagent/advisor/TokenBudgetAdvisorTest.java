@@ -0,0 +1,83 @@
+package com.lisp.lispaiagent.advisor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+class TokenBudgetAdvisorTest {
+
+    private static final ChatModel CHAT_MODEL = prompt -> null;
+
+    @Test
+    void withinBudgetIsUntouched() {
+        TokenBudgetAdvisor advisor = new TokenBudgetAdvisor(10_000);
+        AdvisedRequest request = AdvisedRequest.builder().chatModel(CHAT_MODEL).userText("hello").build();
+        Assertions.assertSame(request, advisor.fit(request));
+    }
+
+    @Test
+    void dropsOldestMemoryFirst() {
+        List<Message> memory = List.of(new UserMessage("old ".repeat(200)), new AssistantMessage("recent answer"));
+        AdvisedRequest request = AdvisedRequest.builder().chatModel(CHAT_MODEL)
+                .userText("question").messages(memory).build();
+        TokenBudgetAdvisor advisor = new TokenBudgetAdvisor(50);
+
+        AdvisedRequest fitted = advisor.fit(request);
+
+        Assertions.assertEquals(1, fitted.messages().size());
+        Assertions.assertEquals("recent answer", fitted.messages().get(0).getText());
+        TokenBudgetAdvisor.Report report = (TokenBudgetAdvisor.Report) fitted.adviseContext().get(TokenBudgetAdvisor.REPORT_KEY);
+        Assertions.assertEquals(1, report.droppedMessages());
+        Assertions.assertTrue(report.tokensAfter() <= 50);
+    }
+
+    @Test
+    void dropsLowestScoredDocumentFirst() {
+        Document good = Document.builder().text("good context ".repeat(20)).score(0.9).build();
+        Document weak = Document.builder().text("weak context ".repeat(60)).score(0.1).build();
+        String augmented = "Context:\n" + good.getText() + "\n" + weak.getText() + "\nQuery: 怎么约会";
+        AdvisedRequest request = AdvisedRequest.builder().chatModel(CHAT_MODEL)
+                .userText(augmented)
+                .adviseContext(Map.of(RetrievalAugmentationAdvisor.DOCUMENT_CONTEXT, List.of(good, weak)))
+                .build();
+        TokenBudgetAdvisor advisor = new TokenBudgetAdvisor(100);
+
+        AdvisedRequest fitted = advisor.fit(request);
+
+        Assertions.assertTrue(fitted.userText().contains(good.getText()));
+        Assertions.assertFalse(fitted.userText().contains(weak.getText()));
+        Assertions.assertEquals(List.of(good), fitted.adviseContext().get(RetrievalAugmentationAdvisor.DOCUMENT_CONTEXT));
+        TokenBudgetAdvisor.Report report = (TokenBudgetAdvisor.Report) fitted.adviseContext().get(TokenBudgetAdvisor.REPORT_KEY);
+        Assertions.assertEquals(1, report.droppedDocuments());
+        Assertions.assertFalse(report.droppedReRead());
+    }
+
+    @Test
+    void dropsReReadDuplicationLast() {
+        AdvisedRequest request = AdvisedRequest.builder().chatModel(CHAT_MODEL)
+                .userText("{re2_input_query}\n" + ReReadingAdvisor.RE_READ_LINE + "\n")
+                .userParams(Map.of(ReReadingAdvisor.INPUT_QUERY_PARAM, "我和女朋友吵架了 ".repeat(10)))
+                .messages(List.of(new UserMessage("你好")))
+                .build();
+        int budget = new TokenBudgetAdvisor(0).count(request) - 10;
+        TokenBudgetAdvisor advisor = new TokenBudgetAdvisor(budget);
+
+        AdvisedRequest fitted = advisor.fit(request);
+
+        Assertions.assertTrue(fitted.messages().isEmpty());
+        Assertions.assertFalse(fitted.userText().contains(ReReadingAdvisor.RE_READ_LINE));
+        Assertions.assertTrue(fitted.userText().contains("{re2_input_query}"));
+        TokenBudgetAdvisor.Report report = (TokenBudgetAdvisor.Report) fitted.adviseContext().get(TokenBudgetAdvisor.REPORT_KEY);
+        Assertions.assertTrue(report.droppedReRead());
+        Assertions.assertTrue(report.tokensAfter() <= budget);
+    }
+}
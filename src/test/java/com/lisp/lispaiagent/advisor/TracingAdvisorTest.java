@@ -0,0 +1,83 @@
+package com.lisp.lispaiagent.advisor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+class TracingAdvisorTest {
+
+    @Test
+    void recordsSelfTimeExcludingDownstream() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        AdvisorTracing tracing = new AdvisorTracing(observationRegistry, meterRegistry);
+
+        CallAroundAdvisor slowBefore = new CallAroundAdvisor() {
+            @Override
+            public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+                sleep(50);
+                return chain.nextAroundCall(advisedRequest);
+            }
+
+            @Override
+            public String getName() {
+                return "SlowBefore";
+            }
+
+            @Override
+            public int getOrder() {
+                return 0;
+            }
+        };
+        CallAroundAdvisor traced = (CallAroundAdvisor) tracing.trace(slowBefore);
+        CallAroundAdvisor modelStage = (CallAroundAdvisor) tracing.modelStage();
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(new AssistantMessage("ok"))),
+                ChatResponseMetadata.builder().usage(new DefaultUsage(10, 20)).build());
+        // 下游：模型阶段，模拟模型耗时 100ms
+        CallAroundAdvisorChain model = request -> {
+            sleep(100);
+            return new AdvisedResponse(chatResponse, Map.of());
+        };
+
+        traced.aroundCall(request(), request -> modelStage.aroundCall(request, model));
+
+        Timer self = meterRegistry.get("lisp.ai.advisor.self").tag("advisor", "SlowBefore").timer();
+        Timer total = meterRegistry.get("lisp.ai.advisor").tag("advisor", "SlowBefore").timer();
+        Assertions.assertTrue(self.totalTime(TimeUnit.MILLISECONDS) < 100);
+        Assertions.assertTrue(total.totalTime(TimeUnit.MILLISECONDS) >= 150);
+        Assertions.assertEquals(20, meterRegistry.get("lisp.ai.tokens").tag("type", "completion").summary().totalAmount());
+    }
+
+    private static AdvisedRequest request() {
+        ChatModel chatModel = prompt -> null;
+        return AdvisedRequest.builder().chatModel(chatModel).userText("hi").build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.List;
 import java.util.UUID;
 
 @SpringBootTest
@@ -40,6 +41,17 @@ class LoveAppTest {
         Assertions.assertNotNull(loveReport);
     }
 
+    @Test
+    void doChatWithReportStream() {
+        String chatId = UUID.randomUUID().toString();
+        String message = "你好，我是李四，我想让另一半（张三）更爱我，但我不知道该怎么做";
+        List<LoveApp.LoveReportEvent> events = loveApp.doChatWithReportStream(message, chatId)
+                .collectList()
+                .block();
+        Assertions.assertNotNull(events);
+        Assertions.assertInstanceOf(LoveApp.LoveReportEvent.Completed.class, events.get(events.size() - 1));
+    }
+
     @Test
     void testDoChat() {
     }
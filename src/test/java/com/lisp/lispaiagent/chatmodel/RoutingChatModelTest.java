@@ -0,0 +1,75 @@
+package com.lisp.lispaiagent.chatmodel;
+
+import com.alibaba.cloud.ai.dashscope.api.DashScopeResponseFormat;
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class RoutingChatModelTest {
+
+    @Test
+    void shortPromptGoesLocal() {
+        RoutingChatModel router = new RoutingChatModel(reply("cloud"), reply("local"), true, 100, 0, 3, 30000);
+        Assertions.assertEquals("local", text(router.call(new Prompt("你好"))));
+    }
+
+    @Test
+    void longPromptGoesCloud() {
+        RoutingChatModel router = new RoutingChatModel(reply("cloud"), reply("local"), true, 10, 0, 3, 30000);
+        Assertions.assertEquals("cloud", text(router.call(new Prompt("我想让我的对象张三更爱我，应该怎么做呢？"))));
+    }
+
+    @Test
+    void failsOverWhenLocalIsDown() {
+        ChatModel broken = prompt -> {
+            throw new IllegalStateException("connection refused");
+        };
+        RoutingChatModel router = new RoutingChatModel(reply("cloud"), broken, true, 100, 0, 1, 30000);
+        Assertions.assertEquals("cloud", text(router.call(new Prompt("你好"))));
+        // 熔断后直接路由到云端
+        Assertions.assertEquals("cloud", text(router.call(new Prompt("你好"))));
+    }
+
+    @Test
+    void promptNamingToolsGoesCloud() {
+        RoutingChatModel router = new RoutingChatModel(reply("cloud"), reply("local"), true, 100, 0, 3, 30000);
+        Prompt prompt = new Prompt("你好", ToolCallingChatOptions.builder().toolNames(Set.of("searchWeb")).build());
+        Assertions.assertEquals("cloud", text(router.call(prompt)));
+    }
+
+    @Test
+    void structuredOutputGoesCloud() {
+        RoutingChatModel router = new RoutingChatModel(reply("cloud"), reply("local"), true, 10000, 0, 3, 30000);
+        String format = new BeanOutputConverter<>(Map.class).getFormat();
+        Assertions.assertEquals("cloud", text(router.call(new Prompt("生成恋爱报告\n" + format))));
+
+        DashScopeChatOptions options = DashScopeChatOptions.builder().build();
+        options.setResponseFormat(new DashScopeResponseFormat(DashScopeResponseFormat.Type.JSON_OBJECT));
+        Assertions.assertEquals("cloud", text(router.call(new Prompt("生成恋爱报告", options))));
+    }
+
+    @Test
+    void localIsSkippedWhenDisabled() {
+        RoutingChatModel router = new RoutingChatModel(reply("cloud"), reply("local"), false, 100, 0, 3, 30000);
+        Assertions.assertEquals("cloud", text(router.call(new Prompt("你好"))));
+    }
+
+    private static ChatModel reply(String text) {
+        return prompt -> new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult().getOutput().getText();
+    }
+}
@@ -0,0 +1,40 @@
+package com.lisp.lispaiagent.converter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class StreamingJsonParserTest {
+
+    @Test
+    void emitsFieldsAsSoonAsTheyComplete() {
+        StreamingJsonParser parser = new StreamingJsonParser();
+        List<StreamingJsonParser.CompletedValue> values = new ArrayList<>();
+        values.addAll(parser.feed("```json\n{\"title\": \"李四的恋"));
+        Assertions.assertTrue(values.isEmpty());
+        values.addAll(parser.feed("爱报告\", \"suggestions\": [\"多沟通\", \"学会"));
+        Assertions.assertEquals(2, values.size());
+        Assertions.assertEquals("title", values.get(0).path());
+        Assertions.assertEquals("李四的恋爱报告", values.get(0).as(String.class));
+        Assertions.assertEquals("suggestions[0]", values.get(1).path());
+        Assertions.assertEquals("多沟通", values.get(1).as(String.class));
+        values.addAll(parser.feed("倾听\\\"对方\\\"\"], \"score\": 90}\n```"));
+        Assertions.assertEquals("suggestions[1]", values.get(2).path());
+        Assertions.assertEquals("学会倾听\"对方\"", values.get(2).as(String.class));
+        Assertions.assertEquals("suggestions", values.get(3).path());
+        Assertions.assertEquals("score", values.get(4).path());
+        Assertions.assertEquals(90, values.get(4).as(Integer.class));
+        Assertions.assertTrue(parser.isComplete());
+        Assertions.assertTrue(parser.getJson().startsWith("{") && parser.getJson().endsWith("}"));
+    }
+
+    @Test
+    void incompleteJsonIsRejected() {
+        StreamingJsonParser parser = new StreamingJsonParser();
+        parser.feed("{\"title\": \"未完");
+        Assertions.assertFalse(parser.isComplete());
+        Assertions.assertThrows(IllegalStateException.class, parser::getJson);
+    }
+}
@@ -0,0 +1,110 @@
+package com.lisp.lispaiagent.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+class OutboundHttpClientTest {
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("恋爱大师".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(compressed.toByteArray());
+            }
+        });
+        server.createContext("/upgrade", exchange -> {
+            byte[] upgrade = String.valueOf(exchange.getRequestHeaders().getFirst("Upgrade")).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, upgrade.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(upgrade);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void decodesGzipResponse() throws IOException {
+        OutboundHttpClient client = new OutboundHttpClient(Duration.ofSeconds(2), Duration.ofSeconds(5), 2, false);
+        Assertions.assertEquals("恋爱大师", client.getString(baseUrl + "/gzip", Map.of()));
+    }
+
+    @Test
+    void errorStatusThrows() {
+        OutboundHttpClient client = new OutboundHttpClient(Duration.ofSeconds(2), Duration.ofSeconds(5), 2, false);
+        Assertions.assertThrows(IOException.class, () -> client.getString(baseUrl + "/missing", Map.of()));
+    }
+
+    @Test
+    void plainHttpNeverUpgradesToHttp2() throws IOException {
+        OutboundHttpClient client = new OutboundHttpClient(Duration.ofSeconds(2), Duration.ofSeconds(5), 2, true);
+        Assertions.assertEquals(HttpClient.Version.HTTP_1_1, client.clientFor(URI.create(baseUrl)).version());
+        Assertions.assertEquals(HttpClient.Version.HTTP_2, client.clientFor(URI.create("https://dashscope.aliyuncs.com")).version());
+        Assertions.assertEquals("null", client.getString(baseUrl + "/upgrade", Map.of()));
+    }
+
+    @Test
+    void restClientUsesPlainClientAndReleasesHostPermits() {
+        OutboundHttpClient client = new OutboundHttpClient(Duration.ofSeconds(2), Duration.ofSeconds(5), 1, true);
+        RestClient restClient = RestClient.builder()
+                .requestFactory(HttpClientConfig.requestFactory(client, Duration.ofSeconds(5)))
+                .requestInterceptor(new HostPermitInterceptor(client))
+                .build();
+        // 每个主机只有一个许可，若响应关闭后未归还，第二次请求会等待许可超时而失败
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals("null", restClient.get().uri(baseUrl + "/upgrade").retrieve().body(String.class));
+        }
+        Assertions.assertEquals(1, client.permits("127.0.0.1").availablePermits());
+        Assertions.assertThrows(Exception.class, () -> restClient.get().uri(baseUrl + "/missing").retrieve().toBodilessEntity());
+        Assertions.assertEquals(1, client.permits("127.0.0.1").availablePermits());
+    }
+
+    @Test
+    void failsWhenHostPermitIsNotReleasedWithinConnectTimeout() throws IOException {
+        OutboundHttpClient client = new OutboundHttpClient(Duration.ofMillis(50), Duration.ofSeconds(5), 1, false);
+        client.acquirePermit(URI.create(baseUrl));
+        try {
+            IOException e = Assertions.assertThrows(IOException.class, () -> client.getString(baseUrl + "/gzip", Map.of()));
+            Assertions.assertTrue(e.getMessage().startsWith("等待连接许可超过"), e.getMessage());
+        } finally {
+            client.permits("127.0.0.1").release();
+        }
+        Assertions.assertEquals("恋爱大师", client.getString(baseUrl + "/gzip", Map.of()));
+    }
+}
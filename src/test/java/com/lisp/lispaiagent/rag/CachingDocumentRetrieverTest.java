@@ -0,0 +1,47 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class CachingDocumentRetrieverTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private List<Document> retrieve(Query query) {
+        calls.incrementAndGet();
+        return List.of(new Document(query.text()));
+    }
+
+    @Test
+    void reusesResultsForNormalizedQueries() {
+        CachingDocumentRetriever retriever = new CachingDocumentRetriever(this::retrieve, 16, Duration.ofMinutes(1));
+
+        List<Document> first = retriever.retrieve(new Query("怎么 表白？"));
+        List<Document> second = retriever.retrieve(new Query("  怎么   表白 "));
+        retriever.retrieve(new Query("怎么约会"));
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertEquals("how to date", CachingDocumentRetriever.normalize(" How  to DATE?! "));
+    }
+
+    @Test
+    void expiresAfterTtlAndEvictsBeyondCapacity() throws InterruptedException {
+        CachingDocumentRetriever retriever = new CachingDocumentRetriever(this::retrieve, 1, Duration.ofMillis(50));
+
+        retriever.retrieve(new Query("a"));
+        retriever.retrieve(new Query("b"));
+        retriever.retrieve(new Query("a"));
+        Assertions.assertEquals(3, calls.get());
+
+        Thread.sleep(100);
+        retriever.retrieve(new Query("a"));
+        Assertions.assertEquals(4, calls.get());
+    }
+}
@@ -0,0 +1,108 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class CachingEmbeddingModelTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 记录每次请求文本的嵌入模型，向量为文本长度和首字符
+     */
+    private static class RecordingEmbeddingModel implements EmbeddingModel {
+
+        private final List<List<String>> requests = new ArrayList<>();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requests.add(request.getInstructions());
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(new float[]{text.length(), text.charAt(0)}, embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final RecordingEmbeddingModel delegate = new RecordingEmbeddingModel();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CachingEmbeddingModel cache(String namespace) {
+        return new CachingEmbeddingModel(delegate, namespace, directory, 2, meterRegistry);
+    }
+
+    @Test
+    void sendsOnlyMissesAndKeepsOrder() {
+        try (CachingEmbeddingModel model = cache("v1-default")) {
+            model.embed(List.of("a", "bb"));
+
+            List<float[]> vectors = model.embed(List.of("bb", "ccc", "a"));
+
+            Assertions.assertEquals(List.of(List.of("a", "bb"), List.of("ccc")), delegate.requests);
+            Assertions.assertArrayEquals(new float[]{2, 'b'}, vectors.get(0));
+            Assertions.assertArrayEquals(new float[]{3, 'c'}, vectors.get(1));
+            Assertions.assertArrayEquals(new float[]{1, 'a'}, vectors.get(2));
+            Assertions.assertEquals(2.0 / 5, model.hitRatio(), 1e-9);
+            Assertions.assertEquals(3.0, meterRegistry.get("lisp.rag.embedding.cache").tag("result", "miss").counter().count());
+        }
+    }
+
+    @Test
+    void requestOptionsArePartOfTheKey() {
+        try (CachingEmbeddingModel model = cache("v1-default")) {
+            model.embed(List.of("a"));
+            // 空选项与不带选项共用缓存
+            model.call(new EmbeddingRequest(List.of("a"), EmbeddingOptionsBuilder.builder().build()));
+            model.call(new EmbeddingRequest(List.of("a"), EmbeddingOptionsBuilder.builder().withDimensions(512).build()));
+            model.call(new EmbeddingRequest(List.of("a"), EmbeddingOptionsBuilder.builder().withModel("text-embedding-v3").build()));
+            model.call(new EmbeddingRequest(List.of("a"), EmbeddingOptionsBuilder.builder().withDimensions(512).build()));
+
+            Assertions.assertEquals(List.of(List.of("a"), List.of("a"), List.of("a")), delegate.requests);
+        }
+    }
+
+    @Test
+    void survivesRestartAndIsolatesNamespaces() throws IOException {
+        try (CachingEmbeddingModel model = cache("v1-default")) {
+            model.embed(List.of("a", "bb", "ccc"));
+        }
+        // 模拟写入中途退出留下的不完整记录
+        Path file = directory.resolve("v1-default.embeddings");
+        Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (CachingEmbeddingModel model = cache("v1-default")) {
+            Assertions.assertArrayEquals(new float[]{3, 'c'}, model.embed("ccc"));
+            Assertions.assertArrayEquals(new float[]{1, 'a'}, model.embed("a"));
+            Assertions.assertEquals(1, delegate.requests.size());
+            Assertions.assertEquals(2.0, meterRegistry.get("lisp.rag.embedding.cache").tag("result", "disk").counter().count());
+        }
+        try (CachingEmbeddingModel model = cache("v3-1024")) {
+            model.embed("a");
+            Assertions.assertEquals(2, delegate.requests.size());
+        }
+    }
+}
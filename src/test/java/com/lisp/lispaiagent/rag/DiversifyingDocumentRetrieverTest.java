@@ -0,0 +1,69 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.List;
+
+class DiversifyingDocumentRetrieverTest {
+
+    private static Document document(String id, String text, double score) {
+        return Document.builder().id(id).text(text).score(score).build();
+    }
+
+    private static final String QUARREL = "恋爱中如何有效处理双方的争吵？先冷静情绪，再倾听对方的想法，最后一起寻找解决办法。";
+
+    private static final List<Document> CANDIDATES = List.of(
+            document("quarrel", QUARREL, 0.9),
+            // 同一段问答出现在另一篇文档中，只有标点和空白不同
+            document("quarrel-copy", QUARREL.replace("，", " , "), 0.89),
+            document("quarrel-variant", "恋爱中如何有效处理双方的争吵？先冷静情绪，再倾听对方的想法，最后一起想办法。", 0.88),
+            document("surprise", "怎样给恋爱中的对方制造浪漫惊喜？策划一场特别的约会。", 0.6),
+            document("single", "单身时如何提升自身魅力，吸引潜在伴侣？", 0.5));
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    @Test
+    void estimatesJaccardSimilarity() {
+        MinHash minHash = new MinHash(128, 3);
+
+        Assertions.assertEquals(1.0, MinHash.similarity(minHash.signature(QUARREL), minHash.signature(QUARREL.replace("，", " ， "))), 0.2);
+        Assertions.assertTrue(MinHash.similarity(minHash.signature(QUARREL), minHash.signature(CANDIDATES.get(4).getText())) < 0.2);
+    }
+
+    @Test
+    void dropsDuplicatesAndPrefersDiverseChunks() {
+        DiversifyingDocumentRetriever retriever = new DiversifyingDocumentRetriever(query -> CANDIDATES, 0.8, 0.5, 3,
+                10_000, new JTokkitTokenCountEstimator());
+
+        List<Document> results = retriever.retrieve(new Query("吵架了怎么办"));
+
+        Assertions.assertEquals(List.of("quarrel", "surprise", "single"), ids(results));
+    }
+
+    @Test
+    void relevanceOnlyKeepsNearDuplicatesBelowThreshold() {
+        DiversifyingDocumentRetriever retriever = new DiversifyingDocumentRetriever(query -> CANDIDATES, 0.95, 1.0, 3,
+                10_000, new JTokkitTokenCountEstimator());
+
+        Assertions.assertEquals(List.of("quarrel", "quarrel-variant", "surprise"), ids(retriever.retrieve(new Query("吵架"))));
+    }
+
+    @Test
+    void capsContextTokens() {
+        JTokkitTokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+        int budget = estimator.estimate(QUARREL) + estimator.estimate(CANDIDATES.get(4).getText());
+        DiversifyingDocumentRetriever retriever = new DiversifyingDocumentRetriever(query -> CANDIDATES, 0.8, 0.5, 5,
+                budget, estimator);
+
+        List<Document> results = retriever.retrieve(new Query("吵架了怎么办"));
+
+        Assertions.assertEquals(List.of("quarrel", "single"), ids(results));
+        Assertions.assertTrue(results.stream().mapToInt(document -> estimator.estimate(document.getText())).sum() <= budget);
+    }
+}
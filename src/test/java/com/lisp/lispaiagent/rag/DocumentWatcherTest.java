@@ -0,0 +1,124 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class DocumentWatcherTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 模拟的知识库内容：片段 id 到文本
+     */
+    private final Map<String, String> store = new ConcurrentHashMap<>();
+
+    private final List<Integer> writes = new ArrayList<>();
+
+    /**
+     * 每行一个片段，id 为文件名与行文本的组合
+     */
+    private static List<Document> chunks(Path file) {
+        try {
+            return Files.readAllLines(file).stream()
+                    .filter(line -> !line.isBlank())
+                    .map(line -> Document.builder().id(file.getFileName() + "#" + line).text(line).build())
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private DocumentWatcher watcher() {
+        return new DocumentWatcher(List.of(directory), DocumentWatcherTest::chunks, (added, removedIds) -> {
+            writes.add(added.size());
+            added.forEach(document -> store.put(document.getId(), document.getText()));
+            removedIds.forEach(store::remove);
+        }, Duration.ofMillis(50));
+    }
+
+    @Test
+    void updatesOnlyChangedChunks() throws IOException {
+        Path faq = directory.resolve("faq.md");
+        Files.writeString(faq, "a\nb\nc\n");
+        DocumentWatcher watcher = watcher();
+        watcher.index();
+        chunks(faq).forEach(document -> store.put(document.getId(), document.getText()));
+
+        Files.writeString(faq, "a\nb\nd\n");
+        Assertions.assertEquals(new DocumentWatcher.Change(1, 1), watcher.refresh(faq));
+        Assertions.assertEquals(Map.of("faq.md#a", "a", "faq.md#b", "b", "faq.md#d", "d"), store);
+
+        // 内容未变化的事件不触发写入
+        Assertions.assertEquals(new DocumentWatcher.Change(0, 0), watcher.refresh(faq));
+        Assertions.assertEquals(List.of(1), writes);
+    }
+
+    @Test
+    void handlesAddedAndDeletedFiles() throws IOException {
+        DocumentWatcher watcher = watcher();
+        watcher.index();
+        Path nested = Files.createDirectories(directory.resolve("nested"));
+        Files.writeString(nested.resolve("new.md"), "x\ny\n");
+        Files.writeString(nested.resolve("ignored.pdf"), "z\n");
+
+        Assertions.assertEquals(new DocumentWatcher.Change(2, 0), watcher.rescan());
+        Assertions.assertEquals(2, store.size());
+
+        Files.delete(nested.resolve("new.md"));
+        Files.delete(nested.resolve("ignored.pdf"));
+        Files.delete(nested);
+        Assertions.assertEquals(new DocumentWatcher.Change(0, 2), watcher.refresh(nested));
+        Assertions.assertTrue(store.isEmpty());
+    }
+
+    @Test
+    void picksUpChangesFromFileSystemEvents() throws Exception {
+        DocumentWatcher watcher = watcher();
+        watcher.index();
+        watcher.start();
+        try {
+            Files.writeString(directory.resolve("live.md"), "hello\n");
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (!store.containsKey("live.md#hello") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Assertions.assertEquals(Map.of("live.md#hello", "hello"), store);
+        } finally {
+            watcher.close();
+        }
+    }
+
+    @Test
+    void picksUpChangesMadeBeforeStart() throws Exception {
+        Path faq = directory.resolve("faq.md");
+        Files.writeString(faq, "a\n");
+        DocumentWatcher watcher = watcher();
+        watcher.open();
+        watcher.index();
+        try {
+            // 模拟导入后、开始处理事件前修改的文件：知识库中仍是导入时读到的旧内容
+            chunks(faq).forEach(document -> store.put(document.getId(), document.getText()));
+            Files.writeString(faq, "b\n");
+            watcher.start();
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (!store.containsKey("faq.md#b") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Assertions.assertEquals(Map.of("faq.md#b", "b"), store);
+        } finally {
+            watcher.close();
+        }
+    }
+}
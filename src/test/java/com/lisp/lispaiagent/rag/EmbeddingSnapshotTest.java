@@ -0,0 +1,55 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+class EmbeddingSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripsEntries() throws IOException {
+        Path file = tempDir.resolve("store.snapshot");
+        EmbeddingSnapshot.Entry entry = new EmbeddingSnapshot.Entry("id-1", "单身怎么拓展社交圈",
+                Map.of("status", "单身", "excerpt_keywords", "社交,兴趣"), new float[]{0.1f, -0.2f, 0.3f});
+        EmbeddingSnapshot.write(file, "embedding=v1", List.of(entry));
+
+        Map<String, EmbeddingSnapshot.Entry> loaded = EmbeddingSnapshot.load(file, "embedding=v1");
+
+        EmbeddingSnapshot.Entry read = loaded.get("id-1");
+        Assertions.assertEquals(entry.text(), read.text());
+        Assertions.assertEquals(entry.metadata(), read.metadata());
+        Assertions.assertArrayEquals(entry.embedding(), read.embedding());
+    }
+
+    @Test
+    void fingerprintMismatchOrCorruptFileIsIgnored() throws IOException {
+        Path file = tempDir.resolve("store.snapshot");
+        EmbeddingSnapshot.write(file, "embedding=v1", List.of(
+                new EmbeddingSnapshot.Entry("id-1", "text", Map.of(), new float[]{1f})));
+
+        Assertions.assertTrue(EmbeddingSnapshot.load(file, "embedding=v2").isEmpty());
+
+        Files.write(file, new byte[]{1, 2, 3});
+        Assertions.assertTrue(EmbeddingSnapshot.load(file, "embedding=v1").isEmpty());
+    }
+
+    @Test
+    void contentHashIsStableAndSensitiveToMetadata() {
+        Document a = Document.builder().text("内容").metadata(Map.of("status", "单身", "filename", "a.md")).build();
+        Document b = Document.builder().text("内容").metadata(Map.of("filename", "a.md", "status", "单身")).build();
+        Document c = Document.builder().text("内容").metadata(Map.of("filename", "a.md", "status", "已婚")).build();
+
+        Assertions.assertEquals(EmbeddingSnapshot.contentHash(a), EmbeddingSnapshot.contentHash(b));
+        Assertions.assertNotEquals(EmbeddingSnapshot.contentHash(a), EmbeddingSnapshot.contentHash(c));
+    }
+}
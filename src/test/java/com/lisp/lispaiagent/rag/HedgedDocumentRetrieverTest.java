@@ -0,0 +1,93 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class HedgedDocumentRetrieverTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final AtomicInteger fallbackCalls = new AtomicInteger();
+
+    private final DocumentRetriever fallback = query -> {
+        fallbackCalls.incrementAndGet();
+        return List.of(new Document("local"));
+    };
+
+    private static DocumentRetriever slow(long millis, String text) {
+        return query -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(new Document(text));
+        };
+    }
+
+    private static String text(List<Document> documents) {
+        return documents.get(0).getText();
+    }
+
+    @Test
+    void usesPrimaryWithinBudget() {
+        HedgedDocumentRetriever retriever = new HedgedDocumentRetriever(slow(0, "cloud"), fallback, Duration.ofMillis(500), TIMEOUT);
+
+        Assertions.assertEquals("cloud", text(retriever.retrieve(new Query("q"))));
+        Assertions.assertEquals(0, fallbackCalls.get());
+    }
+
+    @Test
+    void racesFallbackWhenPrimaryIsSlow() {
+        HedgedDocumentRetriever retriever = new HedgedDocumentRetriever(slow(2000, "cloud"), fallback, Duration.ofMillis(50), TIMEOUT);
+
+        long start = System.nanoTime();
+        Assertions.assertEquals("local", text(retriever.retrieve(new Query("q"))));
+        Assertions.assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+    }
+
+    @Test
+    void fallsBackImmediatelyWhenPrimaryFails() {
+        HedgedDocumentRetriever retriever = new HedgedDocumentRetriever(query -> {
+            throw new IllegalStateException("cloud down");
+        }, fallback, Duration.ofSeconds(5), TIMEOUT);
+
+        long start = System.nanoTime();
+        Assertions.assertEquals("local", text(retriever.retrieve(new Query("q"))));
+        Assertions.assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+    }
+
+    @Test
+    void failsWhenBothFail() {
+        HedgedDocumentRetriever retriever = new HedgedDocumentRetriever(query -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("cloud down");
+        }, query -> {
+            throw new IllegalStateException("local down");
+        }, Duration.ofMillis(10), TIMEOUT);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> retriever.retrieve(new Query("q")));
+    }
+
+    @Test
+    void failsWhenNeitherReturnsWithinTimeout() {
+        try (HedgedDocumentRetriever retriever = new HedgedDocumentRetriever(slow(5000, "cloud"), slow(5000, "local"),
+                Duration.ofMillis(10), Duration.ofMillis(50))) {
+            IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+                    () -> retriever.retrieve(new Query("q")));
+            Assertions.assertInstanceOf(TimeoutException.class, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+@Slf4j
+class HnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 32;
+
+    /**
+     * 以文本哈希为种子生成固定随机向量的嵌入模型
+     */
+    private static class HashingEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vector(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
+
+        private static float[] vector(String text) {
+            Random random = new Random(text.hashCode());
+            float[] vector = new float[DIMENSIONS];
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+            return vector;
+        }
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(Document.builder().id("doc-" + i).text("文档 " + i)
+                    .metadata(Map.of("status", i % 3 == 0 ? "单身" : "恋爱", "rank", i)).build());
+        }
+        return documents;
+    }
+
+    private static Set<String> ids(List<Document> documents) {
+        Set<String> ids = new HashSet<>();
+        documents.forEach(document -> ids.add(document.getId()));
+        return ids;
+    }
+
+    @Test
+    void findsExactNeighbourAndScoresLikeSimpleVectorStore() {
+        EmbeddingModel embeddingModel = new HashingEmbeddingModel();
+        HnswVectorStore store = new HnswVectorStore(embeddingModel, 8, 64, 32);
+        store.add(documents(200));
+
+        List<Document> results = store.similaritySearch(SearchRequest.builder().query("文档 42").topK(3).build());
+
+        Assertions.assertEquals("doc-42", results.get(0).getId());
+        Assertions.assertEquals(1.0, results.get(0).getScore(), 1e-5);
+        Assertions.assertEquals(3, results.size());
+    }
+
+    @Test
+    void supportsDeletesUpsertsAndFilters() {
+        EmbeddingModel embeddingModel = new HashingEmbeddingModel();
+        HnswVectorStore store = new HnswVectorStore(embeddingModel, 8, 64, 32);
+        SimpleVectorStore exact = SimpleVectorStore.builder(embeddingModel).build();
+        for (var target : List.of(store, exact)) {
+            target.add(documents(100));
+            target.delete(List.of("doc-42"));
+            target.add(List.of(Document.builder().id("doc-7").text("文档 42").metadata(Map.of("status", "已婚")).build()));
+        }
+
+        Assertions.assertEquals("doc-7", store.similaritySearch(SearchRequest.builder().query("文档 42").topK(1).build())
+                .get(0).getId());
+        Assertions.assertEquals(99, store.size());
+
+        // 过滤检索的结果与 SimpleVectorStore 一致
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        SearchRequest filtered = SearchRequest.builder().query("文档 1").topK(10)
+                .filterExpression(b.and(b.eq("status", "单身"), b.lt("rank", 30)).build()).build();
+        List<Document> single = store.similaritySearch(filtered);
+        Assertions.assertFalse(single.isEmpty());
+        Assertions.assertEquals(ids(exact.similaritySearch(filtered)), ids(single));
+        single.forEach(document -> {
+            Assertions.assertEquals("单身", document.getMetadata().get("status"));
+            Assertions.assertTrue(((Number) document.getMetadata().get("rank")).intValue() < 30);
+        });
+        List<Document> parsed = store.similaritySearch(SearchRequest.builder().query("文档 42").topK(10)
+                .filterExpression("status in ['已婚']").build());
+        Assertions.assertEquals(List.of("doc-7"), parsed.stream().map(Document::getId).toList());
+
+        store.delete(b.eq("status", "恋爱").build());
+        Assertions.assertEquals(34, store.size());
+        Assertions.assertTrue(store.similaritySearch(SearchRequest.builder().query("文档 2").topK(50).build()).stream()
+                .noneMatch(document -> "恋爱".equals(document.getMetadata().get("status"))));
+    }
+
+    @Test
+    void persistsAndReloadsGraph(@TempDir Path dir) throws Exception {
+        EmbeddingModel embeddingModel = new HashingEmbeddingModel();
+        HnswVectorStore store = new HnswVectorStore(embeddingModel, 8, 64, 32);
+        store.add(documents(300));
+        store.delete(List.of("doc-5"));
+        Path file = dir.resolve("love-app.hnsw");
+        store.save(file, "fingerprint");
+
+        HnswVectorStore reloaded = new HnswVectorStore(embeddingModel, 8, 64, 32);
+        Assertions.assertTrue(reloaded.load(file, "fingerprint"));
+        Assertions.assertEquals(299, reloaded.size());
+        SearchRequest request = SearchRequest.builder().query("文档 123").topK(5).build();
+        Assertions.assertEquals(store.similaritySearch(request).stream().map(Document::getId).toList(),
+                reloaded.similaritySearch(request).stream().map(Document::getId).toList());
+        Assertions.assertEquals(Map.of("status", "单身", "rank", 123),
+                reloaded.similaritySearch(request).get(0).getMetadata());
+        // 指纹或 m 不一致时拒绝加载
+        Assertions.assertFalse(new HnswVectorStore(embeddingModel, 8, 64, 32).load(file, "other"));
+        Assertions.assertFalse(new HnswVectorStore(embeddingModel, 16, 64, 32).load(file, "fingerprint"));
+    }
+
+    @Test
+    void int8QuantizationKeepsRecallWithRescoring(@TempDir Path dir) {
+        EmbeddingModel embeddingModel = new HashingEmbeddingModel();
+        List<Document> documents = documents(2000);
+        SimpleVectorStore exact = SimpleVectorStore.builder(embeddingModel).build();
+        exact.add(documents);
+        HnswVectorStore hnsw = new HnswVectorStore(embeddingModel, 16, 100, 64, dir, VectorStorage.Encoding.INT8);
+        hnsw.add(documents);
+
+        int hits = 0;
+        for (int i = 0; i < 100; i++) {
+            SearchRequest request = SearchRequest.builder().query("查询 " + i).topK(10).build();
+            Set<String> expected = ids(exact.similaritySearch(request));
+            List<Document> actual = hnsw.similaritySearch(request);
+            hits += (int) actual.stream().filter(document -> expected.contains(document.getId())).count();
+        }
+        Assertions.assertTrue(hits >= 900, "recall@10 = " + hits / 1000.0);
+
+        // 重新打分后的得分是全精度相似度
+        SearchRequest request = SearchRequest.builder().query("查询 0").topK(10).build();
+        Map<String, Double> exactScores = new HashMap<>();
+        exact.similaritySearch(request).forEach(document -> exactScores.put(document.getId(), document.getScore()));
+        for (Document document : hnsw.similaritySearch(request)) {
+            if (exactScores.containsKey(document.getId())) {
+                Assertions.assertEquals(exactScores.get(document.getId()), document.getScore(), 1e-5);
+            }
+        }
+        Assertions.assertEquals(2000L * DIMENSIONS, hnsw.offHeapBytes());
+    }
+
+    /**
+     * 召回率与延迟基准：以 SimpleVectorStore 的精确结果为准计算 recall@10，延迟只记录日志
+     */
+    @Test
+    void benchmarkRecallAndLatencyAgainstSimpleVectorStore() {
+        EmbeddingModel embeddingModel = new HashingEmbeddingModel();
+        List<Document> documents = documents(5000);
+        SimpleVectorStore exact = SimpleVectorStore.builder(embeddingModel).build();
+        exact.add(documents);
+        HnswVectorStore hnsw = new HnswVectorStore(embeddingModel, 16, 200, 100);
+        long buildStart = System.nanoTime();
+        hnsw.add(documents);
+        long buildNanos = System.nanoTime() - buildStart;
+
+        int queries = 200;
+        int k = 10;
+        int hits = 0;
+        long exactNanos = 0;
+        long hnswNanos = 0;
+        for (int i = 0; i < queries; i++) {
+            SearchRequest request = SearchRequest.builder().query("查询 " + i).topK(k).build();
+            long start = System.nanoTime();
+            Set<String> expected = ids(exact.similaritySearch(request));
+            exactNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<Document> actual = hnsw.similaritySearch(request);
+            hnswNanos += System.nanoTime() - start;
+            hits += (int) actual.stream().filter(document -> expected.contains(document.getId())).count();
+        }
+        double recall = (double) hits / (queries * k);
+        // 延迟只作参考输出，不做断言，避免在繁忙的构建机上误报
+        log.info("hnsw benchmark: {} docs, build {} ms, recall@{} {}, simple {} ms/query, hnsw {} ms/query",
+                documents.size(), buildNanos / 1_000_000, k, String.format("%.3f", recall),
+                String.format("%.3f", exactNanos / 1e6 / queries), String.format("%.3f", hnswNanos / 1e6 / queries));
+        Assertions.assertTrue(recall >= 0.9, "recall@10 = " + recall);
+    }
+}
@@ -0,0 +1,127 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.List;
+import java.util.Map;
+
+class HybridDocumentRetrieverTest {
+
+    private static Document document(String id, String text, String status) {
+        return Document.builder().id(id).text(text).metadata(Map.of("status", status)).build();
+    }
+
+    private static final List<Document> DOCUMENTS = List.of(
+            document("quarrel", "恋爱中如何有效处理双方的争吵？先冷静情绪，再倾听对方。", "恋爱"),
+            document("surprise", "怎样给恋爱中的对方制造浪漫惊喜？策划一场特别约会。", "恋爱"),
+            document("single", "单身时如何提升自身魅力，吸引潜在伴侣？", "单身"),
+            document("cold-war", "冷战三天了对方还不回消息，应该主动打破冷战吗？", "已婚"));
+
+    /**
+     * 按给定顺序返回结果的向量库
+     */
+    private static VectorStore fixedVectorStore(List<String> ids) {
+        return new VectorStore() {
+            @Override
+            public void add(List<Document> documents) {
+            }
+
+            @Override
+            public void delete(List<String> idList) {
+            }
+
+            @Override
+            public void delete(Filter.Expression filterExpression) {
+            }
+
+            @Override
+            public List<Document> similaritySearch(SearchRequest request) {
+                return ids.stream()
+                        .map(id -> DOCUMENTS.stream().filter(document -> document.getId().equals(id)).findFirst().orElseThrow())
+                        .filter(document -> MetadataFilter.matches(request.getFilterExpression(), document.getMetadata()))
+                        .limit(request.getTopK())
+                        .toList();
+            }
+        };
+    }
+
+    @Test
+    void tokenizesHanBigramsAndWords() {
+        Assertions.assertEquals(List.of("冷战", "战三", "三天", "爱", "ai", "2025"), Bm25Index.tokenize("冷战三天，爱 AI 2025"));
+    }
+
+    @Test
+    void bm25RanksExactPhraseMatchesFirst() {
+        Bm25Index index = new Bm25Index();
+        index.add(DOCUMENTS);
+
+        List<Document> results = index.search("冷战了怎么办", 2, null);
+
+        Assertions.assertEquals("cold-war", results.get(0).getId());
+        Assertions.assertTrue(results.get(0).getScore() > 0);
+        Assertions.assertEquals(List.of(), index.search("冷战", 2, new Filter.Expression(Filter.ExpressionType.EQ,
+                new Filter.Key("status"), new Filter.Value("恋爱"))));
+
+        index.delete(List.of("cold-war"));
+        index.add(List.of(document("quarrel", "冷战以后如何和好", "恋爱")));
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(List.of("quarrel"), index.search("冷战", 5, null).stream().map(Document::getId).toList());
+    }
+
+    @Test
+    void bm25ReclaimsSlotsAfterRepeatedUpdates() {
+        Bm25Index index = new Bm25Index();
+        index.add(DOCUMENTS);
+        for (int i = 0; i < 100; i++) {
+            index.add(List.of(document("temporary", "冷战以后如何和好 " + i, "恋爱")));
+            index.delete(List.of("temporary"));
+        }
+
+        Assertions.assertEquals(DOCUMENTS.size(), index.size());
+        Assertions.assertTrue(index.slots() <= 2 * DOCUMENTS.size(), "slots = " + index.slots());
+        Assertions.assertEquals("cold-war", index.search("冷战了怎么办", 2, null).get(0).getId());
+    }
+
+    @Test
+    void fusesVectorAndKeywordRankings() {
+        Bm25Index index = new Bm25Index();
+        index.add(DOCUMENTS);
+        // 向量检索没有召回包含原词的文档，关键词检索补上
+        HybridDocumentRetriever retriever = new HybridDocumentRetriever(
+                fixedVectorStore(List.of("quarrel", "surprise", "single")), index, 2, 10, 60, 0.0);
+
+        List<Document> results = retriever.retrieve(new Query("冷战三天怎么办"));
+
+        // 两路的第一名得分相同，均为 1 / (60 + 1)
+        Assertions.assertEquals(List.of("quarrel", "cold-war"), results.stream().map(Document::getId).toList());
+        results.forEach(document -> Assertions.assertEquals(1.0 / 61, document.getScore(), 1e-9));
+    }
+
+    @Test
+    void rrfRewardsAgreementBetweenRankings() {
+        List<Document> fused = HybridDocumentRetriever.fuse(List.of(
+                List.of(DOCUMENTS.get(0), DOCUMENTS.get(1), DOCUMENTS.get(2)),
+                List.of(DOCUMENTS.get(2), DOCUMENTS.get(1))), 60, 3);
+
+        Assertions.assertEquals(List.of("single", "surprise", "quarrel"), fused.stream().map(Document::getId).toList());
+    }
+
+    @Test
+    void appliesFilterFromQueryContextToBothRetrievers() {
+        Bm25Index index = new Bm25Index();
+        index.add(DOCUMENTS);
+        HybridDocumentRetriever retriever = new HybridDocumentRetriever(
+                fixedVectorStore(List.of("quarrel", "single", "cold-war")), index, 4, 10, 60, 0.0);
+
+        List<Document> results = retriever.retrieve(Query.builder().text("冷战 争吵")
+                .context(Map.of(HybridDocumentRetriever.FILTER_EXPRESSION, "status == '恋爱'")).build());
+
+        Assertions.assertEquals(List.of("quarrel"), results.stream().map(Document::getId).toList());
+    }
+}
@@ -0,0 +1,112 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+class IngestionPipelineTest {
+
+    /**
+     * 以文本长度为向量的嵌入模型，前 failures 次调用失败
+     */
+    private static class FlakyEmbeddingModel implements EmbeddingModel {
+
+        private final AtomicInteger failures;
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        FlakyEmbeddingModel(int failures) {
+            this.failures = new AtomicInteger(failures);
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            calls.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("rate limited");
+            }
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(new float[]{text.length()}, embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static List<Document> documents(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Document.builder().id("doc-" + i).text("x".repeat(i + 1)).build())
+                .toList();
+    }
+
+    private static IngestionPipeline pipeline(EmbeddingModel embeddingModel, MeterRegistry meterRegistry) {
+        return new IngestionPipeline(batch -> {
+            batch.forEach(document -> document.getMetadata().put("excerpt_keywords", "k" + document.getId()));
+            return batch;
+        }, embeddingModel,
+                new IngestionPipeline.StageOptions(4, 3),
+                new IngestionPipeline.StageOptions(3, 4),
+                new IngestionPipeline.RetryOptions(3, Duration.ofMillis(1), Duration.ofMillis(5)),
+                0, meterRegistry);
+    }
+
+    @Test
+    void enrichAndEmbedKeepInputOrder() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FlakyEmbeddingModel embeddingModel = new FlakyEmbeddingModel(0);
+        IngestionPipeline pipeline = pipeline(embeddingModel, meterRegistry);
+        List<Document> documents = documents(10);
+
+        List<Document> enriched = pipeline.enrich(documents);
+        Map<String, float[]> vectors = pipeline.embed(enriched);
+
+        Assertions.assertEquals(documents.stream().map(Document::getId).toList(),
+                enriched.stream().map(Document::getId).toList());
+        Assertions.assertEquals("kdoc-3", enriched.get(3).getMetadata().get("excerpt_keywords"));
+        Assertions.assertEquals(10, vectors.size());
+        // 10 个片段按每批 4 个计算向量
+        Assertions.assertEquals(3, embeddingModel.calls.get());
+        Assertions.assertEquals(10, meterRegistry.get("lisp.rag.ingestion.documents").tag("stage", "embed")
+                .counter().count());
+    }
+
+    @Test
+    void retriesFailedBatchesWithBackoff() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IngestionPipeline pipeline = pipeline(new FlakyEmbeddingModel(2), meterRegistry);
+
+        Map<String, float[]> vectors = pipeline.embed(documents(4));
+
+        Assertions.assertEquals(4, vectors.size());
+        Assertions.assertEquals(2, meterRegistry.get("lisp.rag.ingestion.retries").tag("stage", "embed")
+                .counter().count());
+    }
+
+    @Test
+    void rateLimiterSpacesPermits() {
+        IngestionPipeline.RateLimiter limiter = new IngestionPipeline.RateLimiter(100);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire(1);
+        }
+        Assertions.assertTrue(System.nanoTime() - start >= Duration.ofMillis(45).toNanos());
+    }
+}
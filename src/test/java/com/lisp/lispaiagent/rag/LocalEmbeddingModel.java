@@ -0,0 +1,82 @@
+package com.lisp.lispaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不联网的确定性嵌入模型：把文本的字符一元组和二元组按哈希映射到固定维度（特征哈希），
+ * 词频取对数后归一化为单位向量。同一文本在任何进程中得到相同向量，字面重合越多相似度越高，
+ * 供离线评测代替 DashScope 使用，语义效果不代表真实模型。
+ */
+class LocalEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+
+    LocalEmbeddingModel(int dimensions) {
+        if (dimensions < 1) {
+            throw new IllegalArgumentException("向量维度不合法: " + dimensions);
+        }
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<Embedding> embeddings = new ArrayList<>();
+        for (String text : request.getInstructions()) {
+            embeddings.add(new Embedding(vector(text), embeddings.size()));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    /**
+     * 与 DashScope 一致，嵌入包含元信息的格式化文本
+     */
+    @Override
+    public float[] embed(Document document) {
+        return vector(document.getFormattedContent(MetadataMode.EMBED));
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    float[] vector(String text) {
+        String normalized = text == null ? "" : text.replaceAll("[\\s\\p{P}]+", "").toLowerCase();
+        Map<String, Integer> frequency = new HashMap<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            frequency.merge(normalized.substring(i, i + 1), 1, Integer::sum);
+            if (i + 2 <= normalized.length()) {
+                frequency.merge(normalized.substring(i, i + 2), 1, Integer::sum);
+            }
+        }
+        float[] vector = new float[dimensions];
+        frequency.forEach((gram, count) -> {
+            // 用 String.hashCode 保证跨进程一致；高位决定符号，减小哈希冲突带来的偏差
+            int hash = gram.hashCode() * 0x9E3779B9;
+            int slot = Math.floorMod(hash, dimensions);
+            float weight = (float) (1 + Math.log(count)) * gram.length();
+            vector[slot] += hash < 0 ? -weight : weight;
+        });
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,154 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.KeywordMetadataEnricher;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Slf4j
+class LocalKeywordEnricherTest {
+
+    /**
+     * 人工标注的参考关键词，以片段标题定位
+     */
+    private static final Map<String, Set<String>> REFERENCE = Map.of(
+            "恋爱中如何有效处理双方的争吵？", Set.of("争吵", "沟通", "倾听", "冷静", "情绪"),
+            "怎样给恋爱中的对方制造浪漫惊喜？", Set.of("浪漫", "惊喜", "约会", "喜好", "情书"),
+            "如何提升自身魅力吸引潜在伴侣？", Set.of("魅力", "形象", "兴趣爱好", "社交", "自信"),
+            "婚后如何平衡工作与家庭责任？", Set.of("工作", "家庭", "家务分工", "日程", "配偶"));
+
+    /**
+     * 模拟一次大模型调用的耗时
+     */
+    private static final long SIMULATED_LLM_LATENCY_MILLIS = 20;
+
+    @Test
+    void writesTopicalKeywordsToMetadata() {
+        LocalKeywordEnricher enricher = new LocalKeywordEnricher(5);
+        List<Document> documents = List.of(
+                new Document("争吵发生时，先冷静情绪。之后倾听对方，争吵后共同寻找争吵根源，约定沟通方式。"),
+                new Document("策划一场浪漫约会，在对方喜欢的海边看日出，给对方制造浪漫惊喜。"));
+
+        enricher.apply(documents);
+
+        Set<String> first = LocalKeywordEnricher.parse(documents.get(0).getMetadata()
+                .get(LocalKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+        Set<String> second = LocalKeywordEnricher.parse(documents.get(1).getMetadata()
+                .get(LocalKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+        Assertions.assertTrue(first.contains("争吵"), first.toString());
+        Assertions.assertTrue(second.contains("浪漫"), second.toString());
+        Assertions.assertTrue(first.size() <= 5 && second.size() <= 5);
+    }
+
+    @Test
+    void smallBatchesReuseCorpusStatistics() {
+        List<Document> corpus = new LoveAppDocumentLoader(new PathMatchingResourcePatternResolver()).loadMarkdowns();
+        LocalKeywordEnricher enricher = new LocalKeywordEnricher(MyKeywordEnricher.KEYWORD_COUNT);
+        enricher.fit(corpus);
+        List<Document> whole = enricher.apply(copy(corpus));
+
+        // 逐个片段补充关键词（如 enrich.batch-size 为 1 的流式导入）时结果与整批一致，不会以单个片段重新统计
+        for (int i = 0; i < corpus.size(); i++) {
+            Document single = enricher.apply(copy(corpus.subList(i, i + 1))).get(0);
+            Assertions.assertEquals(whole.get(i).getMetadata().get(LocalKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY),
+                    single.getMetadata().get(LocalKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+        }
+    }
+
+    @Test
+    void splitsHanRunsAndAsciiWords() {
+        Assertions.assertEquals(List.of("恋爱", "爱篇", "恋爱篇", "spring", "ai"), LocalKeywordEnricher.terms("恋爱篇 Spring-AI"));
+        // 含虚词的候选词被丢弃
+        Assertions.assertEquals(List.of(), LocalKeywordEnricher.terms("我的"));
+    }
+
+    /**
+     * 离线基准：本地提取命中人工标注参考关键词的比例，以及与逐片段调用模型的流程相比的耗时。
+     * 大模型以桩代替，直接返回人工标注的参考关键词并固定休眠模拟调用耗时，
+     * 因此这里只验证 KeywordMetadataEnricher 的调用流程和写入格式，不衡量真实大模型的提取质量和延迟。
+     */
+    @Test
+    void benchmarkAgainstLlmEnricher() {
+        List<Document> corpus = new LoveAppDocumentLoader(new PathMatchingResourcePatternResolver()).loadMarkdowns();
+        Assertions.assertFalse(corpus.isEmpty());
+
+        LocalKeywordEnricher local = new LocalKeywordEnricher(MyKeywordEnricher.KEYWORD_COUNT);
+        long localStart = System.nanoTime();
+        local.fit(corpus);
+        List<Document> localResult = local.apply(copy(corpus));
+        long localNanos = System.nanoTime() - localStart;
+
+        List<Document> labelled = corpus.stream().filter(document -> reference(document) != null).toList();
+        Assertions.assertEquals(REFERENCE.size(), labelled.size());
+        ChatModel oracle = prompt -> {
+            try {
+                Thread.sleep(SIMULATED_LLM_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String text = prompt.getContents();
+            String keywords = labelled.stream().filter(document -> text.contains(document.getText()))
+                    .findFirst().map(document -> String.join(", ", reference(document))).orElse("");
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(keywords))));
+        };
+        long llmStart = System.nanoTime();
+        List<Document> llmResult = new KeywordMetadataEnricher(oracle, MyKeywordEnricher.KEYWORD_COUNT).apply(copy(labelled));
+        long llmNanos = System.nanoTime() - llmStart;
+
+        int hits = 0;
+        int total = 0;
+        for (Document document : localResult) {
+            Set<String> expected = reference(document);
+            if (expected == null) {
+                continue;
+            }
+            Set<String> actual = LocalKeywordEnricher.parse(document.getMetadata()
+                    .get(LocalKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY));
+            for (String keyword : expected) {
+                total++;
+                if (actual.stream().anyMatch(candidate -> candidate.contains(keyword) || keyword.contains(candidate))) {
+                    hits++;
+                }
+            }
+        }
+        for (Document document : llmResult) {
+            Assertions.assertEquals(reference(document), LocalKeywordEnricher.parse(document.getMetadata()
+                    .get(LocalKeywordEnricher.EXCERPT_KEYWORDS_METADATA_KEY)));
+        }
+        double localMillisPerChunk = localNanos / 1e6 / corpus.size();
+        double llmMillisPerChunk = llmNanos / 1e6 / labelled.size();
+        // 耗时只作参考输出，不做断言，避免在繁忙的构建机上误报
+        log.info("keywords benchmark: {} chunks, local {} ms/chunk, llm(stub, {} ms latency) {} ms/chunk, local hit rate {}/{}",
+                corpus.size(), String.format("%.3f", localMillisPerChunk), SIMULATED_LLM_LATENCY_MILLIS,
+                String.format("%.3f", llmMillisPerChunk), hits, total);
+        Assertions.assertTrue(hits * 5 >= total * 2, "本地关键词命中率过低: " + hits + "/" + total);
+    }
+
+    private static Set<String> reference(Document document) {
+        return REFERENCE.entrySet().stream()
+                .filter(entry -> document.getText().contains(entry.getKey())
+                        || entry.getKey().equals(document.getMetadata().get("title")))
+                .map(Map.Entry::getValue)
+                .findFirst().orElse(null);
+    }
+
+    private static List<Document> copy(List<Document> documents) {
+        List<Document> copies = new ArrayList<>();
+        for (Document document : documents) {
+            copies.add(Document.builder().id(document.getId()).text(document.getText())
+                    .metadata(Map.copyOf(document.getMetadata())).build());
+        }
+        return copies;
+    }
+}
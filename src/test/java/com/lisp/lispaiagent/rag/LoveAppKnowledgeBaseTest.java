@@ -0,0 +1,62 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+class LoveAppKnowledgeBaseTest {
+
+    @TempDir
+    Path directory;
+
+    private LoveAppKnowledgeBase knowledgeBase(String model, String dimensions) {
+        return new LoveAppKnowledgeBase(null, new MyKeywordEnricher(), null, null, new MyTokenTextSplitter(),
+                UnaryOperator.identity(), List.of(), embeddingModel -> SimpleVectorStore.builder(embeddingModel).build(),
+                new LocalEmbeddingModel(8), directory.resolve("love-app.snapshot").toString(), model, dimensions, 10);
+    }
+
+    @Test
+    void fingerprintChangesWithEmbeddingDimensions() {
+        String fingerprint = knowledgeBase("text-embedding-v3", "1024").fingerprint();
+
+        Assertions.assertEquals(fingerprint, knowledgeBase("text-embedding-v3", "1024").fingerprint());
+        Assertions.assertNotEquals(fingerprint, knowledgeBase("text-embedding-v3", "512").fingerprint());
+        Assertions.assertNotEquals(fingerprint, knowledgeBase("text-embedding-v2", "1024").fingerprint());
+        Assertions.assertTrue(fingerprint.contains("splitter=" + new MyTokenTextSplitter().fingerprint()), fingerprint);
+    }
+
+    @Test
+    void reusesSavedHnswGraphWhenNothingChanged() throws IOException {
+        int count = hnswKnowledgeBase().ingest();
+        Path graph = directory.resolve("love-app.snapshot.hnsw");
+        Assertions.assertTrue(Files.isRegularFile(graph));
+        Object saved = Files.readAttributes(graph, BasicFileAttributes.class).fileKey();
+
+        // 片段和配置都未变化时直接加载图文件，不重新构图和保存
+        Assertions.assertEquals(count, hnswKnowledgeBase().ingest());
+        Assertions.assertEquals(saved, Files.readAttributes(graph, BasicFileAttributes.class).fileKey());
+    }
+
+    private LoveAppKnowledgeBase hnswKnowledgeBase() {
+        LocalEmbeddingModel embeddingModel = new LocalEmbeddingModel(8);
+        IngestionPipeline pipeline = new IngestionPipeline(UnaryOperator.identity(), embeddingModel,
+                new IngestionPipeline.StageOptions(1, 16), new IngestionPipeline.StageOptions(1, 16),
+                new IngestionPipeline.RetryOptions(1, Duration.ofMillis(1), Duration.ofMillis(1)), 0,
+                new SimpleMeterRegistry());
+        return new LoveAppKnowledgeBase(new LoveAppDocumentLoader(new PathMatchingResourcePatternResolver()),
+                new MyKeywordEnricher(), pipeline, null, new MyTokenTextSplitter(), UnaryOperator.identity(), List.of(),
+                model -> new HnswVectorStore(model, 8, 64, 32, directory, VectorStorage.Encoding.FLOAT32),
+                embeddingModel, directory.resolve("love-app.snapshot").toString(), "local", "8", 10);
+    }
+}
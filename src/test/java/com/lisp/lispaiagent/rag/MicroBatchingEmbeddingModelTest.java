@@ -0,0 +1,115 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class MicroBatchingEmbeddingModelTest {
+
+    /**
+     * 记录每次调用批大小的嵌入模型，向量为文本对应的数字；文本为 "fail" 时调用失败，为 "slow" 时等到 release 后返回
+     */
+    private static class RecordingEmbeddingModel implements EmbeddingModel {
+
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            batches.add(request.getInstructions().size());
+            if (request.getInstructions().contains("slow")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted");
+                }
+                return new EmbeddingResponse(List.of(new Embedding(new float[]{0}, 0)));
+            }
+            if (request.getInstructions().contains("fail")) {
+                throw new IllegalStateException("quota exceeded");
+            }
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(new float[]{Float.parseFloat(text)}, embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final RecordingEmbeddingModel delegate = new RecordingEmbeddingModel();
+
+    @Test
+    void batchesConcurrentQueries() throws Exception {
+        int requests = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<float[]>> results = new ArrayList<>();
+        try (MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, 8, Duration.ofMillis(200),
+                Duration.ofSeconds(5), new SimpleMeterRegistry());
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                String text = String.valueOf(i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return model.embed(text);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < requests; i++) {
+                Assertions.assertArrayEquals(new float[]{i}, results.get(i).get());
+            }
+        }
+
+        Assertions.assertEquals(requests, delegate.batches.stream().mapToInt(Integer::intValue).sum());
+        Assertions.assertTrue(delegate.batches.size() <= 4, "调用次数: " + delegate.batches);
+        Assertions.assertTrue(delegate.batches.stream().allMatch(size -> size <= 8));
+    }
+
+    @Test
+    void passesLargeRequestsThroughAndPropagatesFailures() {
+        try (MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, 2, Duration.ofMillis(1),
+                Duration.ofSeconds(5), new SimpleMeterRegistry())) {
+            Assertions.assertEquals(3, model.embed(List.of("1", "2", "3")).size());
+            Assertions.assertEquals(List.of(3), delegate.batches);
+            Assertions.assertThrows(IllegalStateException.class, () -> model.embed("fail"));
+        }
+    }
+
+    @Test
+    void timesOutAndStopsOnClose() {
+        MicroBatchingEmbeddingModel model = new MicroBatchingEmbeddingModel(delegate, 8, Duration.ofMillis(1),
+                Duration.ofMillis(200), new SimpleMeterRegistry());
+        try {
+            IllegalStateException timeout = Assertions.assertThrows(IllegalStateException.class, () -> model.embed("slow"));
+            Assertions.assertTrue(timeout.getMessage().contains("超时"), timeout.getMessage());
+        } finally {
+            model.close();
+            delegate.release.countDown();
+        }
+
+        // 关闭后不再经过队列
+        Assertions.assertArrayEquals(new float[]{7}, model.embed("7"));
+        Assertions.assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .noneMatch(thread -> thread.getName().equals("embedding-micro-batcher")));
+    }
+}
@@ -0,0 +1,40 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.SplittableRandom;
+
+class MinHashTest {
+
+    private static final long PRIME = (1L << 61) - 1;
+
+    @Test
+    void hashMatchesExactModularArithmetic() {
+        SplittableRandom random = new SplittableRandom(7);
+        long[][] cases = {{PRIME - 1, PRIME - 1, 0xFFFFFFFFL}, {1, 0, 0}, {PRIME - 1, 0, PRIME - 1}};
+        for (long[] values : cases) {
+            assertExact(values[0], values[1], values[2]);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertExact(random.nextLong(1, PRIME), random.nextLong(0, PRIME), random.nextLong(0, 1L << 32));
+        }
+    }
+
+    private static void assertExact(long a, long b, long x) {
+        long expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(x)).add(BigInteger.valueOf(b))
+                .mod(BigInteger.valueOf(PRIME)).longValueExact();
+        Assertions.assertEquals(expected, MinHash.hash(a, b, x), a + " * " + x + " + " + b);
+    }
+
+    @Test
+    void similarityTracksJaccard() {
+        MinHash minHash = new MinHash(256, 3);
+        String text = "恋爱中遇到争吵时，先冷静下来，再认真倾听对方的想法，最后一起商量解决办法";
+        Assertions.assertEquals(1.0, MinHash.similarity(minHash.signature(text), minHash.signature(text + "。")));
+        Assertions.assertTrue(MinHash.similarity(minHash.signature(text),
+                minHash.signature(text.replace("认真", "耐心"))) > 0.6);
+        Assertions.assertTrue(MinHash.similarity(minHash.signature(text), minHash.signature("婚后如何平衡工作与家庭责任")) < 0.1);
+    }
+}
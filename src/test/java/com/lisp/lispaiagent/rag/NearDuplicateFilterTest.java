@@ -0,0 +1,54 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class NearDuplicateFilterTest {
+
+    private static final String TEMPLATE = "遇到这种情况，建议先冷静下来，真诚地和对方沟通彼此的感受，必要时可以寻求专业的情感咨询帮助。";
+
+    private static Document document(String text, String filename, String status) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("filename", filename);
+        metadata.put("status", status);
+        return Document.builder().text(text).metadata(metadata).build();
+    }
+
+    @Test
+    void collapsesTemplatedAnswersAndRecordsSources() {
+        List<Document> documents = List.of(
+                document("问：吵架了怎么办？" + TEMPLATE, "a.md", "恋爱"),
+                document("问：吵架了怎么办？ " + TEMPLATE.replace("，", ","), "b.md", "恋爱"),
+                document("问：吵架了怎么办？" + TEMPLATE, "c.md", "恋爱"),
+                document("问：如何制造浪漫惊喜？策划一场特别的约会，准备一份用心的小礼物。", "a.md", "恋爱"));
+
+        List<Document> kept = new NearDuplicateFilter(0.9, "status").apply(new ArrayList<>(documents));
+
+        Assertions.assertEquals(2, kept.size());
+        Assertions.assertEquals(List.of("a.md", "b.md", "c.md"), kept.get(0).getMetadata().get(NearDuplicateFilter.SOURCE_FILENAMES));
+        // 没有合并其他片段的元信息不变
+        Assertions.assertFalse(kept.get(1).getMetadata().containsKey(NearDuplicateFilter.SOURCE_FILENAMES));
+        Assertions.assertEquals(EmbeddingSnapshot.contentHash(document(documents.get(3).getText(), "a.md", "恋爱")),
+                EmbeddingSnapshot.contentHash(kept.get(1)));
+    }
+
+    @Test
+    void keepsDuplicatesAcrossScopesAndDistinctAnswers() {
+        List<Document> documents = new ArrayList<>();
+        documents.add(document("问：吵架了怎么办？" + TEMPLATE, "恋爱篇.md", "恋爱"));
+        documents.add(document("问：吵架了怎么办？" + TEMPLATE, "已婚篇.md", "已婚"));
+        for (int i = 0; i < 50; i++) {
+            documents.add(document("问题 " + i + "：第 " + i + " 种情况下应该怎么做？答案 " + (i * 7919) + "。", "faq.md", "单身"));
+        }
+
+        List<Document> kept = new NearDuplicateFilter(0.9, "status").apply(documents);
+
+        Assertions.assertEquals(52, kept.size());
+    }
+}
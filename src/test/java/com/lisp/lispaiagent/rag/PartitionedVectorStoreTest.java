@@ -0,0 +1,173 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class PartitionedVectorStoreTest {
+
+    /**
+     * 按字符编码生成向量、并统计查询次数的嵌入模型
+     */
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            calls.incrementAndGet();
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vector(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 8;
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[8];
+            text.chars().forEach(c -> vector[c % 8] += 1);
+            return vector;
+        }
+    }
+
+    private static Document document(String id, String text, String status) {
+        return Document.builder().id(id).text(text).metadata(Map.of("status", status)).build();
+    }
+
+    private final CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+
+    /**
+     * 每个分区的查询次数
+     */
+    private final Map<VectorStore, AtomicInteger> searches = new HashMap<>();
+
+    private final PartitionedVectorStore store = new PartitionedVectorStore("status", embeddingModel, model -> {
+        VectorStore partition = SimpleVectorStore.builder(model).build();
+        AtomicInteger counter = new AtomicInteger();
+        searches.put(partition, counter);
+        return new CountingVectorStore(partition, counter);
+    });
+
+    /**
+     * 记录查询次数的委托向量库
+     */
+    private record CountingVectorStore(VectorStore delegate, AtomicInteger counter) implements VectorStore {
+
+        @Override
+        public void add(List<Document> documents) {
+            delegate.add(documents);
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+            delegate.delete(idList);
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+            delegate.delete(filterExpression);
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            counter.incrementAndGet();
+            return delegate.similaritySearch(request);
+        }
+    }
+
+    private void addDocuments() {
+        store.add(List.of(
+                document("s1", "单身如何脱单", "单身"),
+                document("s2", "单身如何表白", "单身"),
+                document("l1", "恋爱中如何约会", "恋爱"),
+                document("m1", "婚后如何相处", "已婚")));
+    }
+
+    private int totalSearches() {
+        return searches.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    @Test
+    void searchesOnlyTheMatchingPartition() {
+        addDocuments();
+
+        List<Document> results = store.similaritySearch(SearchRequest.builder().query("如何").topK(10)
+                .filterExpression("status == '单身'").build());
+
+        Assertions.assertEquals(Set.of("s1", "s2"), Set.copyOf(results.stream().map(Document::getId).toList()));
+        Assertions.assertEquals(1, totalSearches());
+    }
+
+    @Test
+    void mergesAllPartitionsByScoreWithoutFilter() {
+        addDocuments();
+        int before = embeddingModel.calls.get();
+
+        List<Document> results = store.similaritySearch(SearchRequest.builder().query("婚后如何相处").topK(2).build());
+
+        Assertions.assertEquals(2, results.size());
+        Assertions.assertEquals("m1", results.get(0).getId());
+        Assertions.assertTrue(results.get(0).getScore() >= results.get(1).getScore());
+        Assertions.assertEquals(3, totalSearches());
+        // 三个分区共用一次查询向量计算
+        Assertions.assertEquals(1, embeddingModel.calls.get() - before);
+    }
+
+    @Test
+    void deletesFromTheOwningPartition() {
+        addDocuments();
+
+        store.delete(List.of("s1", "m1"));
+
+        List<Document> results = store.similaritySearch(SearchRequest.builder().query("如何").topK(10).build());
+        Assertions.assertEquals(Set.of("s2", "l1"), Set.copyOf(results.stream().map(Document::getId).toList()));
+    }
+
+    @Test
+    void derivesPartitionValuesFromFilter() {
+        FilterExpressionTextParser parser = new FilterExpressionTextParser();
+
+        Assertions.assertEquals(Set.of("恋爱"), MetadataFilter.values(parser.parse("status == '恋爱' && year > 2020"), "status"));
+        Assertions.assertEquals(Set.of("恋爱", "已婚"), MetadataFilter.values(parser.parse("status in ['恋爱', '已婚']"), "status"));
+        Assertions.assertEquals(Set.of(), MetadataFilter.values(parser.parse("status == '恋爱' && status == '已婚'"), "status"));
+        Assertions.assertNull(MetadataFilter.values(parser.parse("status == '恋爱' || year > 2020"), "status"));
+        Assertions.assertNull(MetadataFilter.values(null, "status"));
+    }
+
+    @Test
+    void classifiesQueryStatus() {
+        StatusClassifier classifier = new StatusClassifier();
+
+        Assertions.assertEquals(Optional.of("单身"), classifier.classify("单身三年了，怎么才能脱单？"));
+        Assertions.assertEquals(Optional.of("恋爱"), classifier.classify("和男朋友吵架冷战了怎么办"));
+        Assertions.assertEquals(Optional.of("已婚"), classifier.classify("婚后和婆婆相处不好"));
+        Assertions.assertEquals(Optional.empty(), classifier.classify("怎样提升沟通能力"));
+    }
+}
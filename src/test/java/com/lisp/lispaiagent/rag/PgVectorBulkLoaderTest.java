@@ -0,0 +1,157 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.springframework.ai.document.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+class PgVectorBulkLoaderTest {
+
+    private static final int DIMENSIONS = 8;
+
+    private static final PgVectorBulkLoader.Options OPTIONS = new PgVectorBulkLoader.Options(true, 16, 64, "64MB", 0);
+
+    private static float[] vector(int seed) {
+        float[] vector = new float[DIMENSIONS];
+        vector[seed % DIMENSIONS] = 1;
+        vector[(seed / DIMENSIONS) % DIMENSIONS] += 0.5f;
+        return vector;
+    }
+
+    private static String readText(DataInputStream input) throws Exception {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void encodesRowsInCopyBinaryFormat() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        float[] embedding = vector(3);
+        PgVectorBulkLoader.encodeRow(new DataOutputStream(bytes), "hash-1", "先冷静情绪", Map.of("status", "恋爱"),
+                embedding, DIMENSIONS);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assertions.assertEquals(4, input.readShort());
+        Assertions.assertEquals(16, input.readInt());
+        UUID uuid = new UUID(input.readLong(), input.readLong());
+        Assertions.assertEquals(PgVectorBulkLoader.uuid("hash-1"), uuid);
+        Assertions.assertEquals("先冷静情绪", readText(input));
+        Assertions.assertEquals("{\"status\":\"恋爱\"}", readText(input));
+        Assertions.assertEquals(4 + 4 * DIMENSIONS, input.readInt());
+        Assertions.assertEquals(DIMENSIONS, input.readShort());
+        Assertions.assertEquals(0, input.readShort());
+        for (float value : embedding) {
+            Assertions.assertEquals(value, input.readFloat());
+        }
+        Assertions.assertEquals(0, input.available());
+    }
+
+    @Test
+    void keepsUuidIdsAndDerivesStableUuidsForOthers() {
+        String id = UUID.randomUUID().toString();
+        Assertions.assertEquals(id, PgVectorBulkLoader.uuid(id).toString());
+        Assertions.assertEquals(PgVectorBulkLoader.uuid("a1b2"), PgVectorBulkLoader.uuid("a1b2"));
+        Assertions.assertNotEquals(PgVectorBulkLoader.uuid("a1b2"), PgVectorBulkLoader.uuid("a1b3"));
+    }
+
+    @Test
+    void rejectsUnsafeIdentifiersAndMismatchedDimensions() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new PgVectorBulkLoader(new PGSimpleDataSource(), "public", "vector_store; DROP TABLE x", DIMENSIONS, OPTIONS));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PgVectorBulkLoader(new PGSimpleDataSource(),
+                "public", "vector_store", DIMENSIONS, new PgVectorBulkLoader.Options(true, 16, 64, "1GB'; --", 0)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PgVectorBulkLoader.encodeRow(
+                new DataOutputStream(new ByteArrayOutputStream()), "id", "text", Map.of(), new float[3], DIMENSIONS));
+    }
+
+    /**
+     * 需要安装了 pgvector 扩展的本地 PostgreSQL，例如
+     * LISP_PGVECTOR_TEST_URL=jdbc:postgresql://localhost:5432/postgres LISP_PGVECTOR_TEST_USER=postgres LISP_PGVECTOR_TEST_PASSWORD=postgres
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "LISP_PGVECTOR_TEST_URL", matches = ".+")
+    void bulkLoadsMergesAndBuildsIndexAgainstLocalPostgres() throws Exception {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(System.getenv("LISP_PGVECTOR_TEST_URL"));
+        dataSource.setUser(System.getenv().getOrDefault("LISP_PGVECTOR_TEST_USER", "postgres"));
+        dataSource.setPassword(System.getenv().getOrDefault("LISP_PGVECTOR_TEST_PASSWORD", "postgres"));
+        String table = "bulk_load_test_" + Long.toHexString(System.nanoTime());
+        PgVectorBulkLoader loader = new PgVectorBulkLoader(dataSource, "public", table, DIMENSIONS, OPTIONS);
+        loader.initializeSchema();
+        try {
+            try (PgVectorBulkLoader.Session session = loader.begin()) {
+                for (int batch = 0; batch < 10; batch++) {
+                    List<IngestionPipeline.Embedded> embedded = new ArrayList<>();
+                    for (int i = batch * 500; i < (batch + 1) * 500; i++) {
+                        embedded.add(new IngestionPipeline.Embedded(Document.builder().id("chunk-" + i).text("片段 " + i)
+                                .metadata(Map.of("rank", i)).build(), vector(i)));
+                    }
+                    session.write(embedded);
+                }
+                Assertions.assertEquals(5000, session.commit());
+            }
+
+            // 再次导入：已有 id 覆盖内容，同一批中重复的 id 以最后一条为准
+            try (PgVectorBulkLoader.Session session = loader.begin()) {
+                session.write(List.of(
+                        new IngestionPipeline.Embedded(Document.builder().id("chunk-1").text("旧内容").build(), vector(1)),
+                        new IngestionPipeline.Embedded(Document.builder().id("chunk-1").text("新内容").build(), vector(1)),
+                        new IngestionPipeline.Embedded(Document.builder().id("chunk-new").text("新增").build(),
+                                new float[]{1, 1, 1, 1, 1, 1, 1, 1})));
+                Assertions.assertEquals(2, session.commit());
+            }
+
+            // 未提交的导入回滚
+            try (PgVectorBulkLoader.Session session = loader.begin()) {
+                session.write(List.of(new IngestionPipeline.Embedded(
+                        Document.builder().id("chunk-rollback").text("回滚").build(), vector(2))));
+            }
+
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                try (ResultSet rows = statement.executeQuery("SELECT count(*) FROM public." + table)) {
+                    rows.next();
+                    Assertions.assertEquals(5001, rows.getLong(1));
+                }
+                try (ResultSet index = statement.executeQuery("SELECT indexdef FROM pg_indexes WHERE tablename = '"
+                        + table + "' AND indexname = '" + table + "_embedding_hnsw_idx'")) {
+                    Assertions.assertTrue(index.next());
+                    Assertions.assertTrue(index.getString(1).contains("hnsw"));
+                }
+                try (PreparedStatement query = connection.prepareStatement("SELECT content, metadata::text FROM public." + table
+                        + " WHERE id = ?")) {
+                    query.setObject(1, PgVectorBulkLoader.uuid("chunk-1"));
+                    try (ResultSet row = query.executeQuery()) {
+                        Assertions.assertTrue(row.next());
+                        Assertions.assertEquals("新内容", row.getString(1));
+                        Assertions.assertEquals("{}", row.getString(2));
+                    }
+                }
+                try (ResultSet nearest = statement.executeQuery("SELECT content FROM public." + table
+                        + " ORDER BY embedding <=> '[1,1,1,1,1,1,1,1]' LIMIT 1")) {
+                    Assertions.assertTrue(nearest.next());
+                    Assertions.assertEquals("新增", nearest.getString(1));
+                }
+            }
+        } finally {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS public." + table);
+            }
+        }
+    }
+}
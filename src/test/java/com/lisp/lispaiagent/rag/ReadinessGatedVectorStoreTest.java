@@ -0,0 +1,73 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.List;
+
+class ReadinessGatedVectorStoreTest {
+
+    private static final List<Document> RESULT = List.of(Document.builder().text("约会建议").build());
+
+    private static final VectorStore DELEGATE = new VectorStore() {
+        @Override
+        public void add(List<Document> documents) {
+        }
+
+        @Override
+        public void delete(List<String> idList) {
+        }
+
+        @Override
+        public void delete(Filter.Expression filterExpression) {
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return RESULT;
+        }
+    };
+
+    @Test
+    void returnsEmptyWhenIngestionNotReadyInTime() {
+        IngestionStatus status = new IngestionStatus();
+        status.start();
+        VectorStore store = new ReadinessGatedVectorStore(DELEGATE, status, Duration.ofMillis(50));
+
+        long start = System.nanoTime();
+        Assertions.assertTrue(store.similaritySearch("约会").isEmpty());
+        Assertions.assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+    }
+
+    @Test
+    void waitsForIngestionToFinish() {
+        IngestionStatus status = new IngestionStatus();
+        status.start();
+        VectorStore store = new ReadinessGatedVectorStore(DELEGATE, status, Duration.ofSeconds(5));
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            status.ready(1);
+        });
+
+        Assertions.assertEquals(RESULT, store.similaritySearch("约会"));
+        Assertions.assertEquals(IngestionStatus.State.READY, status.getState());
+    }
+
+    @Test
+    void failedIngestionFallsBackImmediately() {
+        IngestionStatus status = new IngestionStatus();
+        status.fail(new IllegalStateException("embedding unavailable"));
+        VectorStore store = new ReadinessGatedVectorStore(DELEGATE, status, Duration.ofSeconds(5));
+
+        Assertions.assertTrue(store.similaritySearch("约会").isEmpty());
+    }
+}
@@ -0,0 +1,203 @@
+package com.lisp.lispaiagent.rag;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 检索效果与性能的离线评测：用一组标注好的查询评估检索器，输出 recall@k、MRR、延迟分位数和内存占用。
+ * 片段是否相关按文本是否包含标注的原文片段判断，与切分方式和文档 id 无关，
+ * 因此可以用同一份标注对比不同的切分参数、关键词补充方式和向量库类型。
+ * 每次评测的结果以一行追加到 CSV 报告中，便于前后对比。
+ * 只在测试中使用（测量内存时会触发 GC），不随应用打包。
+ */
+@Slf4j
+class RetrievalBenchmark {
+
+    static final String REPORT_HEADER = "timestamp,name,queries,k,recall_at_k,mrr,p50_millis,p99_millis,heap_bytes,off_heap_bytes";
+
+    /**
+     * 一条标注查询
+     *
+     * @param query 查询文本
+     * @param relevant 相关片段应包含的原文片段，任意一个片段命中即视为找到该条
+     */
+    record LabelledQuery(String query, Set<String> relevant) {
+    }
+
+    /**
+     * 一次评测的结果
+     *
+     * @param recallAtK 前 k 个结果找到的标注片段比例，按查询取平均
+     * @param mrr 第一个相关结果名次倒数的平均值，未命中记 0
+     * @param heapBytes 构建检索器前后的堆内存增量
+     * @param offHeapBytes 构建检索器前后直接内存和内存映射文件的增量
+     */
+    record Result(String name, int queries, int k, double recallAtK, double mrr, double p50Millis, double p99Millis,
+                  long heapBytes, long offHeapBytes) {
+
+        String toCsv(Instant timestamp) {
+            return String.format(Locale.ROOT, "%s,%s,%d,%d,%.4f,%.4f,%.3f,%.3f,%d,%d", timestamp, name.replace(',', ';'),
+                    queries, k, recallAtK, mrr, p50Millis, p99Millis, heapBytes, offHeapBytes);
+        }
+    }
+
+    /**
+     * 预热轮数，让 JIT 编译和缓存就绪后再计时
+     */
+    private final int warmupRounds;
+
+    RetrievalBenchmark(int warmupRounds) {
+        this.warmupRounds = warmupRounds;
+    }
+
+    /**
+     * 读取 JSON 数组格式的标注查询
+     */
+    static List<LabelledQuery> load(InputStream json) {
+        try {
+            return new ObjectMapper().readValue(json, new TypeReference<List<LabelledQuery>>() {
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("标注查询读取失败", e);
+        }
+    }
+
+    /**
+     * 构建检索器并评测，内存占用统计的是构建过程（导入文档、建索引）新增的部分
+     *
+     * @param name 本次配置的名称，写入报告
+     * @param setup 构建检索器，通常包括导入文档
+     * @param k 每个查询取的结果数
+     */
+    Result run(String name, Supplier<DocumentRetriever> setup, List<LabelledQuery> queries, int k) {
+        long heapBefore = usedHeap();
+        long offHeapBefore = usedOffHeap();
+        DocumentRetriever retriever = setup.get();
+        long heapBytes = Math.max(0, usedHeap() - heapBefore);
+        long offHeapBytes = Math.max(0, usedOffHeap() - offHeapBefore);
+        return evaluate(name, retriever, queries, k, heapBytes, offHeapBytes);
+    }
+
+    /**
+     * 评测已构建好的检索器，不统计内存占用
+     */
+    Result run(String name, DocumentRetriever retriever, List<LabelledQuery> queries, int k) {
+        return evaluate(name, retriever, queries, k, 0, 0);
+    }
+
+    private Result evaluate(String name, DocumentRetriever retriever, List<LabelledQuery> queries, int k,
+                            long heapBytes, long offHeapBytes) {
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("标注查询为空");
+        }
+        for (int round = 0; round < warmupRounds; round++) {
+            queries.forEach(labelled -> retriever.retrieve(new Query(labelled.query())));
+        }
+        double recall = 0;
+        double reciprocalRank = 0;
+        long[] latencies = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            LabelledQuery labelled = queries.get(i);
+            long start = System.nanoTime();
+            List<Document> results = retriever.retrieve(new Query(labelled.query()));
+            latencies[i] = System.nanoTime() - start;
+            List<Document> top = results.subList(0, Math.min(k, results.size()));
+            recall += recall(top, labelled.relevant());
+            reciprocalRank += reciprocalRank(top, labelled.relevant());
+        }
+        Arrays.sort(latencies);
+        Result result = new Result(name, queries.size(), k, recall / queries.size(), reciprocalRank / queries.size(),
+                percentile(latencies, 0.5) / 1e6, percentile(latencies, 0.99) / 1e6, heapBytes, offHeapBytes);
+        log.info("检索评测 {}: recall@{}={}, MRR={}, p50={} ms, p99={} ms, 堆 {} 字节, 堆外 {} 字节", name, k,
+                String.format(Locale.ROOT, "%.4f", result.recallAtK()), String.format(Locale.ROOT, "%.4f", result.mrr()),
+                String.format(Locale.ROOT, "%.3f", result.p50Millis()), String.format(Locale.ROOT, "%.3f", result.p99Millis()),
+                heapBytes, offHeapBytes);
+        return result;
+    }
+
+    static double recall(List<Document> results, Set<String> relevant) {
+        if (relevant.isEmpty()) {
+            return 1;
+        }
+        long found = relevant.stream()
+                .filter(fragment -> results.stream().anyMatch(document -> isRelevant(document, Set.of(fragment))))
+                .count();
+        return (double) found / relevant.size();
+    }
+
+    static double reciprocalRank(List<Document> results, Set<String> relevant) {
+        for (int i = 0; i < results.size(); i++) {
+            if (isRelevant(results.get(i), relevant)) {
+                return 1.0 / (i + 1);
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isRelevant(Document document, Set<String> relevant) {
+        String text = document.getText();
+        return text != null && relevant.stream().anyMatch(text::contains);
+    }
+
+    /**
+     * 最近秩法取分位数，输入须已排序
+     */
+    static long percentile(long[] sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /**
+     * 把结果追加到 CSV 报告，文件不存在时先写表头
+     */
+    static void write(Path report, List<Result> results) {
+        Instant timestamp = Instant.now();
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(report)) {
+            lines.add(REPORT_HEADER);
+        }
+        results.forEach(result -> lines.add(result.toCsv(timestamp)));
+        try {
+            if (report.getParent() != null) {
+                Files.createDirectories(report.getParent());
+            }
+            Files.write(report, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("评测报告写入失败: " + report, e);
+        }
+    }
+
+    private static long usedHeap() {
+        // 先触发 GC，尽量只统计仍被引用的对象
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedOffHeap() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
@@ -0,0 +1,135 @@
+package com.lisp.lispaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+class RetrievalBenchmarkTest {
+
+    private static final int K = 3;
+
+    @TempDir
+    Path tempDir;
+
+    private static List<RetrievalBenchmark.LabelledQuery> queries() throws Exception {
+        try (InputStream json = RetrievalBenchmarkTest.class.getResourceAsStream("/rag-benchmark/queries.json")) {
+            return RetrievalBenchmark.load(json);
+        }
+    }
+
+    @Test
+    void computesRecallReciprocalRankAndPercentiles() {
+        List<Document> results = List.of(
+                Document.builder().id("a").text("无关的片段").build(),
+                Document.builder().id("b").text("争吵发生时，先冷静情绪").build(),
+                Document.builder().id("c").text("了解对方喜好是关键").build());
+
+        Assertions.assertEquals(0.5, RetrievalBenchmark.recall(results, Set.of("先冷静情绪", "定期安排二人世界")), 1e-9);
+        Assertions.assertEquals(0.5, RetrievalBenchmark.reciprocalRank(results, Set.of("先冷静情绪", "对方喜好")), 1e-9);
+        Assertions.assertEquals(0, RetrievalBenchmark.reciprocalRank(results, Set.of("定期安排二人世界")), 1e-9);
+
+        long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = i + 1;
+        }
+        Assertions.assertEquals(50, RetrievalBenchmark.percentile(latencies, 0.5));
+        Assertions.assertEquals(99, RetrievalBenchmark.percentile(latencies, 0.99));
+        Assertions.assertEquals(7, RetrievalBenchmark.percentile(new long[]{7}, 0.99));
+    }
+
+    @Test
+    void localEmbeddingModelIsDeterministicAndFavoursOverlappingText() {
+        LocalEmbeddingModel first = new LocalEmbeddingModel(256);
+        LocalEmbeddingModel second = new LocalEmbeddingModel(256);
+        float[] quarrel = first.embed("恋爱中如何有效处理双方的争吵？");
+
+        Assertions.assertArrayEquals(quarrel, second.embed("恋爱中如何有效处理双方的争吵？"));
+        Assertions.assertEquals(1.0, VectorKernels.dot(quarrel, quarrel), 1e-5);
+        Assertions.assertTrue(VectorKernels.dot(quarrel, first.embed("双方争吵时怎样有效处理"))
+                > VectorKernels.dot(quarrel, first.embed("婚后理财规划")));
+    }
+
+    @Test
+    void benchmarksConfigurationsAndAppendsReport() throws Exception {
+        List<RetrievalBenchmark.LabelledQuery> queries = queries();
+        List<Document> markdowns = new LoveAppDocumentLoader(new PathMatchingResourcePatternResolver()).loadMarkdowns();
+        MyTokenTextSplitter splitter = new MyTokenTextSplitter();
+        Map<String, Supplier<List<Document>>> corpora = new LinkedHashMap<>();
+        corpora.put("markdown", () -> markdowns);
+        corpora.put("split-customized", () -> splitter.splitCustomized(markdowns));
+
+        EmbeddingModel embeddingModel = new LocalEmbeddingModel(256);
+        Map<String, Supplier<VectorStore>> stores = new LinkedHashMap<>();
+        stores.put("simple", () -> SimpleVectorStore.builder(embeddingModel).build());
+        stores.put("hnsw", () -> new HnswVectorStore(embeddingModel, 16, 100, 64, tempDir, VectorStorage.Encoding.FLOAT32));
+        stores.put("hnsw-int8", () -> new HnswVectorStore(embeddingModel, 16, 100, 64, tempDir, VectorStorage.Encoding.INT8));
+
+        JTokkitTokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+        Map<String, Function<VectorStore, Function<Bm25Index, DocumentRetriever>>> retrievers = new LinkedHashMap<>();
+        retrievers.put("vector", store -> index -> VectorStoreDocumentRetriever.builder().vectorStore(store).topK(K).build());
+        retrievers.put("hybrid", store -> index -> new HybridDocumentRetriever(store, index, K, 20, 60, 0.0));
+        retrievers.put("hybrid-diversify", store -> index -> new DiversifyingDocumentRetriever(
+                new HybridDocumentRetriever(store, index, 10, 20, 60, 0.0), 0.9, 0.7, K, 1500, estimator));
+
+        RetrievalBenchmark benchmark = new RetrievalBenchmark(2);
+        List<RetrievalBenchmark.Result> results = new ArrayList<>();
+        corpora.forEach((corpusName, corpus) -> stores.forEach((storeName, store) -> retrievers.forEach((retrieverName, retriever) ->
+                results.add(benchmark.run(corpusName + "/" + storeName + "/" + retrieverName, () -> {
+                    // 每次都重新复制片段，避免关键词元信息在不同配置间共享
+                    List<Document> documents = corpus.get().stream()
+                            .map(document -> Document.builder().text(document.getText())
+                                    .metadata(new LinkedHashMap<>(document.getMetadata())).build())
+                            .toList();
+                    UnaryOperator<List<Document>> enricher = new LocalKeywordEnricher(5);
+                    documents = enricher.apply(new ArrayList<>(documents));
+                    VectorStore vectorStore = store.get();
+                    vectorStore.add(documents);
+                    Bm25Index index = new Bm25Index();
+                    index.add(documents);
+                    return retriever.apply(vectorStore).apply(index);
+                }, queries, K)))));
+
+        Path report = tempDir.resolve("report.csv");
+        RetrievalBenchmark.write(report, results);
+        RetrievalBenchmark.write(report, results.subList(0, 1));
+        // 同时写到构建目录，便于对比不同提交的评测结果
+        RetrievalBenchmark.write(Path.of("target", "rag-benchmark", "report.csv"), results);
+
+        List<String> lines = Files.readAllLines(report);
+        Assertions.assertEquals(RetrievalBenchmark.REPORT_HEADER, lines.get(0));
+        Assertions.assertEquals(results.size() + 2, lines.size());
+        Assertions.assertEquals(18, results.size());
+        for (RetrievalBenchmark.Result result : results) {
+            Assertions.assertEquals(queries.size(), result.queries());
+            Assertions.assertTrue(result.recallAtK() >= 0 && result.recallAtK() <= 1, result.toString());
+            Assertions.assertTrue(result.mrr() >= 0 && result.mrr() <= 1, result.toString());
+            Assertions.assertTrue(result.p99Millis() >= result.p50Millis(), result.toString());
+        }
+        // 本地嵌入只看字面重合，混合检索仍应在大多数标注查询上找到答案
+        RetrievalBenchmark.Result hybrid = results.stream()
+                .filter(result -> result.name().equals("markdown/simple/hybrid"))
+                .findFirst().orElseThrow();
+        Assertions.assertTrue(hybrid.recallAtK() >= 0.5, hybrid.toString());
+        Assertions.assertTrue(hybrid.mrr() >= 0.4, hybrid.toString());
+    }
+}
@@ -0,0 +1,118 @@
+package com.lisp.lispaiagent.rag;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class StreamingIngestionTest {
+
+    private static final int FILES = 100;
+
+    private static final int SECTIONS = 10;
+
+    /**
+     * 以文本长度为向量的嵌入模型
+     */
+    private static class LengthEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(new float[]{text.length()}, embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @TempDir
+    Path corpus;
+
+    /**
+     * 已补充关键词的片段数
+     */
+    private final AtomicInteger enriched = new AtomicInteger();
+
+    private StreamingIngestion ingestion() {
+        IngestionPipeline pipeline = new IngestionPipeline(batch -> {
+            enriched.addAndGet(batch.size());
+            return batch;
+        }, new LengthEmbeddingModel(),
+                new IngestionPipeline.StageOptions(2, 4, false),
+                new IngestionPipeline.StageOptions(2, 8),
+                new IngestionPipeline.RetryOptions(1, Duration.ofMillis(1), Duration.ofMillis(1)),
+                0, new SimpleMeterRegistry());
+        return new StreamingIngestion(new LoveAppDocumentLoader(new PathMatchingResourcePatternResolver()),
+                new MyTokenTextSplitter(), pipeline, 2, 16);
+    }
+
+    private void writeCorpus() throws IOException {
+        Files.createDirectories(corpus.resolve("nested"));
+        for (int i = 0; i < FILES; i++) {
+            StringBuilder markdown = new StringBuilder();
+            for (int j = 0; j < SECTIONS; j++) {
+                markdown.append("第 ").append(i).append(" 篇第 ").append(j).append(" 节：如何经营一段感情。\n\n---\n\n");
+            }
+            Path directory = i % 2 == 0 ? corpus : corpus.resolve("nested");
+            Files.writeString(directory.resolve("corpus-" + i + ".md"), markdown);
+        }
+        Files.writeString(corpus.resolve("notes.txt"), "一段纯文本笔记");
+    }
+
+    @Test
+    void ingestsEveryChunkFromDirectory() throws IOException {
+        writeCorpus();
+        Set<String> ids = new HashSet<>();
+
+        long count = ingestion().ingest(List.of(corpus.toString()), batch -> batch.forEach(embedded -> {
+            Assertions.assertTrue(embedded.embedding()[0] > 0);
+            ids.add(embedded.document().getId());
+        }));
+
+        Assertions.assertEquals(FILES * SECTIONS + 1, count);
+        Assertions.assertEquals(count, ids.size());
+    }
+
+    @Test
+    void boundsInFlightChunks() throws IOException {
+        writeCorpus();
+        AtomicInteger stored = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        ingestion().ingest(List.of(corpus.toString()), batch -> {
+            maxInFlight.accumulateAndGet(enriched.get() - stored.get(), Math::max);
+            try {
+                // 写入较慢时上游应暂停读取，而不是把整个语料读入内存
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stored.addAndGet(batch.size());
+        });
+
+        Assertions.assertEquals(FILES * SECTIONS + 1, stored.get());
+        Assertions.assertTrue(maxInFlight.get() < FILES * SECTIONS / 4, "在途片段数: " + maxInFlight.get());
+    }
+}
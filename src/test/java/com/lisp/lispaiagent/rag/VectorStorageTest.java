@@ -0,0 +1,163 @@
+package com.lisp.lispaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+@Slf4j
+class VectorStorageTest {
+
+    private static final int DIMENSIONS = 1536;
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static float[] gaussian(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static byte[] codes(Random random, int length) {
+        byte[] codes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            codes[i] = (byte) (random.nextInt(255) - 127);
+        }
+        return codes;
+    }
+
+    @Test
+    void dotMatchesScalar() {
+        Random random = new Random(1);
+        float[] a = gaussian(random, 1001);
+        float[] b = gaussian(random, 1001);
+        byte[] codes = codes(random, 1001);
+        Assertions.assertEquals(VectorKernels.scalarDot(a, b), VectorKernels.dot(a, b), 1e-3);
+        Assertions.assertEquals(VectorKernels.scalarDot(a, codes), VectorKernels.dot(a, codes), 1e-2);
+    }
+
+    /**
+     * 只在运行时带 --add-modules jdk.incubator.vector 时执行（surefire 默认带上）
+     */
+    @Test
+    void simdKernelsMatchScalar() {
+        Assumptions.assumeTrue(VectorKernels.SIMD, "jdk.incubator.vector 模块不可用");
+        Random random = new Random(2);
+        // 覆盖不足一个向量宽度的尾部
+        for (int length : new int[]{1, 7, 16, 1001, 1536}) {
+            float[] a = gaussian(random, length);
+            float[] b = gaussian(random, length);
+            byte[] codes = codes(random, length);
+            Assertions.assertEquals(VectorKernels.scalarDot(a, b), VectorKernels.simdDot(a, b), 1e-3);
+            Assertions.assertEquals(VectorKernels.scalarDot(a, codes), VectorKernels.simdDot(a, codes), 1e-2);
+        }
+    }
+
+    @Test
+    void quantizedSimilarityStaysCloseToFullPrecision(@TempDir Path dir) throws Exception {
+        Random random = new Random(7);
+        float[] query = randomUnitVector(random);
+        try (VectorStorage fp32 = new VectorStorage(dir, DIMENSIONS, VectorStorage.Encoding.FLOAT32);
+             VectorStorage fp16 = new VectorStorage(dir, DIMENSIONS, VectorStorage.Encoding.FLOAT16);
+             VectorStorage int8 = new VectorStorage(dir, DIMENSIONS, VectorStorage.Encoding.INT8)) {
+            for (int i = 0; i < 100; i++) {
+                float[] vector = randomUnitVector(random);
+                Assertions.assertEquals(i, fp32.add(vector));
+                fp16.add(vector);
+                int8.add(vector);
+                float exact = VectorKernels.scalarDot(query, vector);
+                Assertions.assertArrayEquals(vector, int8.get(i));
+                Assertions.assertEquals(exact, fp32.approximate(query, i), 1e-5);
+                Assertions.assertEquals(exact, fp16.approximate(query, i), 1e-3);
+                Assertions.assertEquals(exact, int8.approximate(query, i), 1e-2);
+                Assertions.assertEquals(exact, int8.exact(query, i), 1e-5);
+            }
+            Assertions.assertEquals(fp32.searchBytes(), 2 * fp16.searchBytes());
+            Assertions.assertEquals(fp32.searchBytes(), 4 * int8.searchBytes());
+        }
+        try (var files = Files.list(dir)) {
+            Assertions.assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void resetReusesMappedSlots(@TempDir Path dir) {
+        Random random = new Random(5);
+        try (VectorStorage int8 = new VectorStorage(dir, DIMENSIONS, VectorStorage.Encoding.INT8)) {
+            for (int i = 0; i < 3; i++) {
+                int8.add(randomUnitVector(random));
+            }
+            int8.reset();
+            Assertions.assertEquals(0, int8.size());
+            Assertions.assertEquals(0, int8.searchBytes());
+            float[] vector = randomUnitVector(random);
+            Assertions.assertEquals(0, int8.add(vector));
+            Assertions.assertArrayEquals(vector, int8.get(0));
+            Assertions.assertEquals(VectorKernels.scalarDot(vector, vector), int8.approximate(vector, 0), 1e-2);
+        }
+    }
+
+    /**
+     * 扫描基准：堆上 float[][] 标量扫描与堆外存储各编码的扫描
+     */
+    @Test
+    void benchmarkScan(@TempDir Path dir) {
+        Random random = new Random(3);
+        int count = 5000;
+        float[][] heap = new float[count][];
+        float[] query = randomUnitVector(random);
+        try (VectorStorage fp32 = new VectorStorage(dir, DIMENSIONS, VectorStorage.Encoding.FLOAT32);
+             VectorStorage int8 = new VectorStorage(dir, DIMENSIONS, VectorStorage.Encoding.INT8)) {
+            for (int i = 0; i < count; i++) {
+                heap[i] = randomUnitVector(random);
+                fp32.add(heap[i]);
+                int8.add(heap[i]);
+            }
+            long heapNanos = Long.MAX_VALUE;
+            long fp32Nanos = Long.MAX_VALUE;
+            long int8Nanos = Long.MAX_VALUE;
+            float sink = 0;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                for (float[] vector : heap) {
+                    sink += VectorKernels.scalarDot(query, vector);
+                }
+                heapNanos = Math.min(heapNanos, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    sink += fp32.approximate(query, i);
+                }
+                fp32Nanos = Math.min(fp32Nanos, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    sink += int8.approximate(query, i);
+                }
+                int8Nanos = Math.min(int8Nanos, System.nanoTime() - start);
+            }
+            // 耗时只作参考输出，不做断言
+            log.info("scan benchmark: {} x {}, heap scalar {} ms, off-heap fp32 {} ms, off-heap int8 {} ms, "
+                            + "search bytes fp32 {} / int8 {} (simd {}, sink {})",
+                    count, DIMENSIONS, String.format("%.2f", heapNanos / 1e6), String.format("%.2f", fp32Nanos / 1e6),
+                    String.format("%.2f", int8Nanos / 1e6), fp32.searchBytes(), int8.searchBytes(), VectorKernels.SIMD, sink);
+            Assertions.assertEquals(4 * int8.searchBytes(), fp32.searchBytes());
+        }
+    }
+}